@@ -0,0 +1,311 @@
+package com.abhinavmehta.confx.sdk;
+
+import com.abhinavmehta.confx.sdk.dto.EvaluatedConfig;
+import com.abhinavmehta.confx.sdk.dto.EvaluationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Evaluates ConfX configs locally, against an in-memory copy of one project/environment.
+ * <p>
+ * The client downloads the environment's binary snapshot and the project's dependencies, and keeps them current by
+ * listening to the server's update stream (SSE). Any update event triggers a revalidation of both, by ETag, so
+ * each is only downloaded again if it changed; a periodic poll (cheap, answered with 304s while nothing changed)
+ * covers missed events. Evaluations never block on the network and cost no more than the rule expressions they run.
+ * <p>
+ * Construction starts loading asynchronously; until the first snapshot arrives {@link #isInitialized()} is false
+ * and the typed getters return their defaults.
+ */
+@Slf4j
+public class ConfXClient implements AutoCloseable {
+
+    private static final String CONNECTION_ESTABLISHED_EVENT = "connection_established";
+
+    private final ConfXSDKConfig config;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SnapshotDecoder snapshotDecoder = new SnapshotDecoder();
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Thread streamThread;
+
+    private volatile LocalSnapshot snapshot; // Null until the first successful load
+    private volatile boolean closed;
+    private volatile InputStream currentStream;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final Object refreshLock = new Object();
+    private String snapshotETag; // Guarded by refreshLock
+    private String dependenciesETag; // Guarded by refreshLock
+
+    public ConfXClient(ConfXSDKConfig config) {
+        this.config = config;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(config.getRequestTimeoutMs()))
+                .build();
+        if (config.getExecutorService() != null) {
+            this.executor = config.getExecutorService();
+            this.ownsExecutor = false;
+        } else {
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> daemonThread(r, "confx-sdk-refresh"));
+            this.ownsExecutor = true;
+        }
+
+        executor.execute(() -> initialLoad(1));
+        executor.scheduleWithFixedDelay(this::requestRefresh, config.getPollIntervalMs(), config.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+        this.streamThread = daemonThread(this::runUpdateStream, "confx-sdk-stream");
+        streamThread.start();
+    }
+
+    public boolean isInitialized() {
+        return snapshot != null;
+    }
+
+    /**
+     * Evaluates a config like the server's evaluation endpoint does, but in-process.
+     * @throws ConfXException if the SDK is not initialized yet, the key is unknown, or the config (or one of its
+     *                        prerequisites) has no active version in the environment.
+     */
+    public EvaluatedConfig evaluate(String configKey, EvaluationContext context) {
+        LocalSnapshot current = snapshot;
+        if (current == null) {
+            throw new ConfXException("ConfX SDK is not initialized yet");
+        }
+        return current.evaluate(configKey, context != null ? context.getAttributes() : null);
+    }
+
+    public boolean getBooleanValue(String configKey, EvaluationContext context, boolean defaultValue) {
+        return typedValue(configKey, context, Boolean.class, defaultValue);
+    }
+
+    public String getStringValue(String configKey, EvaluationContext context, String defaultValue) {
+        return typedValue(configKey, context, String.class, defaultValue);
+    }
+
+    public Integer getIntegerValue(String configKey, EvaluationContext context, Integer defaultValue) {
+        return typedValue(configKey, context, Integer.class, defaultValue);
+    }
+
+    public Double getDoubleValue(String configKey, EvaluationContext context, Double defaultValue) {
+        return typedValue(configKey, context, Double.class, defaultValue);
+    }
+
+    public JsonNode getJsonValue(String configKey, EvaluationContext context, JsonNode defaultValue) {
+        return typedValue(configKey, context, JsonNode.class, defaultValue);
+    }
+
+    // The default is returned when the SDK is not ready, evaluation fails, or the value is null or of another type.
+    private <T> T typedValue(String configKey, EvaluationContext context, Class<T> type, T defaultValue) {
+        if (snapshot == null) {
+            return defaultValue;
+        }
+        try {
+            Object value = evaluate(configKey, context).getValue();
+            return type.isInstance(value) ? type.cast(value) : defaultValue;
+        } catch (RuntimeException e) {
+            log.debug("Returning default value for config '{}': {}", configKey, e.getMessage());
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        streamThread.interrupt();
+        InputStream stream = currentStream;
+        if (stream != null) {
+            try {
+                stream.close(); // Unblocks the stream thread's read
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Retries are scheduled rather than waited for, so the executor stays free for other work meanwhile.
+    private void initialLoad(int attempt) {
+        if (closed || snapshot != null) {
+            return;
+        }
+        try {
+            refresh();
+            log.info("ConfX SDK initialized for Project: {}, Environment: {} at revision {}",
+                     config.getProjectId(), config.getEnvironmentId(), snapshot.getRevision());
+        } catch (RuntimeException e) {
+            log.warn("Initial ConfX snapshot load failed (attempt {} of {}): {}", attempt, config.getMaxRetries(), e.getMessage());
+            if (attempt >= config.getMaxRetries() || closed) {
+                return; // The next update event or poll tries again
+            }
+            try {
+                executor.schedule(() -> initialLoad(attempt + 1), config.getSseReconnectTimeMs(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                log.debug("Not retrying the initial load, the executor is shut down.");
+            }
+        }
+    }
+
+    // Coalesces bursts of update events into a single refresh.
+    private void requestRefresh() {
+        if (closed || !refreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            refreshQueued.set(false);
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                log.warn("ConfX snapshot refresh failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void refresh() {
+        synchronized (refreshLock) {
+            LocalSnapshot current = snapshot;
+            SnapshotDecoder.DecodedSnapshot source = current != null ? current.getSource() : null;
+
+            HttpRequest.Builder snapshotRequest = request("/api/v1" + environmentPath() + "/all-active-configs")
+                    .header("Accept", SnapshotDecoder.MEDIA_TYPE);
+            if (source != null && snapshotETag != null) {
+                snapshotRequest.header("If-None-Match", snapshotETag);
+            }
+            HttpResponse<byte[]> snapshotResponse = send(snapshotRequest.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (snapshotResponse.statusCode() == 200) {
+                source = snapshotDecoder.decode(snapshotResponse.body());
+                snapshotETag = snapshotResponse.headers().firstValue("ETag").orElse(null);
+            } else if (snapshotResponse.statusCode() != 304 || source == null) {
+                throw new ConfXException("Snapshot request failed with status " + snapshotResponse.statusCode());
+            }
+
+            // Dependencies are not part of the environment revision; they have their own ETag.
+            JsonNode dependencies = current != null ? current.getDependencies() : null;
+            HttpRequest.Builder dependencyRequest = request("/api/v1/projects/" + config.getProjectId() + "/dependencies/all")
+                    .header("Accept", "application/json");
+            if (dependencies != null && dependenciesETag != null) {
+                dependencyRequest.header("If-None-Match", dependenciesETag);
+            }
+            HttpResponse<byte[]> dependencyResponse = send(dependencyRequest.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (dependencyResponse.statusCode() == 200) {
+                try {
+                    dependencies = objectMapper.readTree(dependencyResponse.body());
+                } catch (IOException e) {
+                    throw new ConfXException("Invalid dependency response", e);
+                }
+                dependenciesETag = dependencyResponse.headers().firstValue("ETag").orElse(null);
+            } else if (dependencyResponse.statusCode() != 304 || dependencies == null) {
+                throw new ConfXException("Dependency request failed with status " + dependencyResponse.statusCode());
+            }
+
+            if (current != null && current.getSource() == source && current.getDependencies() == dependencies) {
+                return; // Nothing changed, keep the compiled snapshot
+            }
+            snapshot = LocalSnapshot.build(source, dependencies);
+            log.debug("ConfX snapshot updated to revision {}", source.revision());
+        }
+    }
+
+    private void runUpdateStream() {
+        while (!closed) {
+            try {
+                HttpResponse<InputStream> response = httpClient.send(
+                        HttpRequest.newBuilder(URI.create(config.getServerUrl() + "/api/v1/stream" + environmentPath()))
+                                .header("Accept", "text/event-stream")
+                                .GET()
+                                .build(),
+                        HttpResponse.BodyHandlers.ofInputStream());
+                if (response.statusCode() != 200) {
+                    response.body().close();
+                    throw new IOException("Update stream request failed with status " + response.statusCode());
+                }
+                currentStream = response.body();
+                readEvents(response.body());
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("ConfX update stream disconnected: {}. Reconnecting in {} ms.", e.getMessage(), config.getSseReconnectTimeMs());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                currentStream = null;
+            }
+            sleep(config.getSseReconnectTimeMs());
+        }
+    }
+
+    // Minimal text/event-stream reader: only event names matter, the payload is re-read through the snapshot.
+    private void readEvents(InputStream body) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String eventName = null;
+            String line;
+            while (!closed && (line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    if (CONNECTION_ESTABLISHED_EVENT.equals(eventName)) {
+                        requestRefresh(); // Catches up on anything missed while disconnected
+                    } else if (eventName != null) {
+                        log.debug("ConfX update event received: {}", eventName);
+                        requestRefresh();
+                    }
+                    eventName = null;
+                } else if (line.startsWith("event:")) {
+                    eventName = line.substring("event:".length()).trim();
+                }
+                // data, id and comment (heartbeat) lines need no handling
+            }
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(config.getServerUrl() + path))
+                .timeout(Duration.ofMillis(config.getRequestTimeoutMs()))
+                .GET();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        try {
+            return httpClient.send(request, bodyHandler);
+        } catch (IOException e) {
+            throw new ConfXException("Request to " + request.uri() + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConfXException("Interrupted while requesting " + request.uri(), e);
+        }
+    }
+
+    private String environmentPath() {
+        return "/projects/" + config.getProjectId() + "/environments/" + config.getEnvironmentId();
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread daemonThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
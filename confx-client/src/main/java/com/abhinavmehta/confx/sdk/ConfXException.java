@@ -0,0 +1,16 @@
+package com.abhinavmehta.confx.sdk;
+
+/**
+ * Thrown when a config cannot be evaluated locally (unknown key, no active version, SDK not initialized) or when
+ * communication with the ConfX server fails.
+ */
+public class ConfXException extends RuntimeException {
+
+    public ConfXException(String message) {
+        super(message);
+    }
+
+    public ConfXException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
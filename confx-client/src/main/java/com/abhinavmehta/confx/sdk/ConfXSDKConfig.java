@@ -0,0 +1,39 @@
+package com.abhinavmehta.confx.sdk;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+@Getter
+@Builder
+public class ConfXSDKConfig {
+
+    @Builder.Default
+    private final String serverUrl = "http://localhost:8080";
+
+    @NonNull
+    private final Long projectId;
+
+    @NonNull
+    private final Long environmentId;
+
+    // Runs snapshot downloads and polling. If null, the client creates (and on close shuts down) its own.
+    private final ScheduledExecutorService executorService;
+
+    // Delay before reconnecting a dropped update stream, and between retries of a failed initial load
+    @Builder.Default
+    private final long sseReconnectTimeMs = 5000;
+
+    // Attempts of the initial snapshot download before giving up until the next update or poll
+    @Builder.Default
+    private final int maxRetries = 5;
+
+    // Safety net next to the update stream: the snapshot and dependencies are revalidated (ETags, usually 304s) at this interval
+    @Builder.Default
+    private final long pollIntervalMs = 60_000;
+
+    @Builder.Default
+    private final long requestTimeoutMs = 10_000;
+}
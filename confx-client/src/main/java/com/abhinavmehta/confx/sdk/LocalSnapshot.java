@@ -0,0 +1,326 @@
+package com.abhinavmehta.confx.sdk;
+
+import com.abhinavmehta.confx.sdk.dto.EvaluatedConfig;
+import com.abhinavmehta.confx.sdk.model.ConfigDataType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Immutable, pre-processed view of one environment, evaluated entirely in memory. Everything that does not depend
+ * on the evaluation context is done once when the snapshot is built: rule expressions are parsed, values are
+ * converted to their data type, prerequisites are linked and cycles are flagged. The evaluation semantics are
+ * those of the server's ConfigEvaluationService and RuleEvaluationService.
+ */
+@Slf4j
+class LocalSnapshot {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final SpelExpressionParser PARSER =
+            new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED, LocalSnapshot.class.getClassLoader()));
+
+    private final SnapshotDecoder.DecodedSnapshot source;
+    private final JsonNode dependencies;
+    private final Map<String, Node> nodesByKey;
+
+    private LocalSnapshot(SnapshotDecoder.DecodedSnapshot source, JsonNode dependencies, Map<String, Node> nodesByKey) {
+        this.source = source;
+        this.dependencies = dependencies;
+        this.nodesByKey = nodesByKey;
+    }
+
+    long getRevision() {
+        return source.revision();
+    }
+
+    SnapshotDecoder.DecodedSnapshot getSource() {
+        return source;
+    }
+
+    JsonNode getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * @param dependencies The project's dependencies as returned by {@code GET /api/v1/projects/{projectId}/dependencies/all}.
+     */
+    static LocalSnapshot build(SnapshotDecoder.DecodedSnapshot source, JsonNode dependencies) {
+        Map<Long, Node> nodesById = new HashMap<>();
+        for (SnapshotDecoder.DecodedConfig config : source.configs()) {
+            Node node = new Node(config.configKey(), config.dataType());
+            node.activeConfig = new ActiveConfig(config);
+            nodesById.put(config.configItemId(), node);
+        }
+
+        // Prerequisites in the order the server checks them (by dependency id). Items without an active version in
+        // this environment only appear here; evaluating them fails like it does on the server.
+        List<JsonNode> edges = new ArrayList<>();
+        dependencies.forEach(edges::add);
+        edges.sort(Comparator.comparingLong(edge -> edge.path("id").asLong()));
+        Map<Node, List<Prerequisite>> prerequisites = new HashMap<>();
+        for (JsonNode edge : edges) {
+            Node dependent = nodesById.computeIfAbsent(edge.path("dependentConfigItemId").asLong(),
+                    id -> new Node(edge.path("dependentConfigKey").asText(), null));
+            Node prerequisite = nodesById.computeIfAbsent(edge.path("prerequisiteConfigItemId").asLong(),
+                    id -> new Node(edge.path("prerequisiteConfigKey").asText(),
+                            ConfigDataType.valueOf(edge.path("prerequisiteDataType").asText())));
+            JsonNode expected = edge.path("prerequisiteExpectedValue");
+            prerequisites.computeIfAbsent(dependent, n -> new ArrayList<>())
+                    .add(new Prerequisite(prerequisite, expected.isNull() || expected.isMissingNode() ? null : expected.asText()));
+        }
+        prerequisites.forEach((node, list) -> node.prerequisites = list.toArray(new Prerequisite[0]));
+        flagCycles(nodesById.values());
+
+        Map<String, Node> nodesByKey = new HashMap<>(nodesById.size() * 2);
+        nodesById.values().forEach(node -> nodesByKey.put(node.configKey, node));
+        return new LocalSnapshot(source, dependencies, nodesByKey);
+    }
+
+    // Kahn's algorithm: whatever cannot be ordered is on a cycle or depends on one, as in the server's DependencyGraph.
+    private static void flagCycles(Iterable<Node> nodes) {
+        Map<Node, Integer> pending = new HashMap<>();
+        Map<Node, List<Node>> dependents = new HashMap<>();
+        Queue<Node> ready = new ArrayDeque<>();
+        for (Node node : nodes) {
+            int count = node.prerequisites.length;
+            pending.put(node, count);
+            for (Prerequisite prerequisite : node.prerequisites) {
+                dependents.computeIfAbsent(prerequisite.node(), n -> new ArrayList<>()).add(node);
+            }
+            if (count == 0) {
+                ready.add(node);
+            }
+        }
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            pending.remove(node);
+            for (Node dependent : dependents.getOrDefault(node, List.of())) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        pending.keySet().forEach(node -> node.cyclic = true);
+    }
+
+    EvaluatedConfig evaluate(String configKey, Map<String, Object> attributes) {
+        Node node = nodesByKey.get(configKey);
+        if (node == null) {
+            throw new ConfXException(String.format("ConfigItem with key '%s' not found in project %d", configKey, source.projectId()));
+        }
+        // Configs without prerequisites, the common case, need no memo.
+        return evaluate(node, attributes, node.prerequisites.length == 0 ? null : new HashMap<>());
+    }
+
+    private EvaluatedConfig evaluate(Node node, Map<String, Object> attributes, Map<Node, EvaluatedConfig> memo) {
+        if (memo != null) {
+            EvaluatedConfig known = memo.get(node);
+            if (known != null) {
+                return known;
+            }
+        }
+        EvaluatedConfig result = evaluateNode(node, attributes, memo);
+        if (memo != null) {
+            memo.put(node, result);
+        }
+        return result;
+    }
+
+    private EvaluatedConfig evaluateNode(Node node, Map<String, Object> attributes, Map<Node, EvaluatedConfig> memo) {
+        if (node.cyclic) {
+            log.warn("Cyclic dependency detected during evaluation for configKey: {} (project {}).", node.configKey, source.projectId());
+            return EvaluatedConfig.builder()
+                    .configKey(node.configKey)
+                    .value(offValue(node.dataType))
+                    .dataType(node.dataType)
+                    .evaluationSource("CYCLIC_DEPENDENCY_ERROR")
+                    .build();
+        }
+
+        for (Prerequisite prerequisite : node.prerequisites) {
+            EvaluatedConfig prerequisiteResult = evaluate(prerequisite.node(), attributes, memo);
+            if (!compareEvaluatedValue(prerequisiteResult.getValue(), prerequisite.expectedValue(), prerequisite.node().dataType)) {
+                ActiveConfig activeConfig = node.activeConfig;
+                return EvaluatedConfig.builder()
+                        .configKey(node.configKey)
+                        .value(offValue(node.dataType))
+                        .dataType(node.dataType)
+                        .versionId(activeConfig != null ? activeConfig.versionId : null)
+                        .versionNumber(activeConfig != null ? activeConfig.versionNumber : null)
+                        .evaluationSource("PREREQUISITE_NOT_MET")
+                        .build();
+            }
+        }
+
+        ActiveConfig activeConfig = node.activeConfig;
+        if (activeConfig == null) {
+            throw new ConfXException("No active configuration found for config '" + node.configKey + "' in environment " + source.environmentId());
+        }
+        TypedValue resolved = activeConfig.defaultValue;
+        Long matchedRuleId = null;
+        String evaluationSource = "DEFAULT_VALUE";
+        for (CompiledRule rule : activeConfig.rules) {
+            if (rule.matches(attributes)) {
+                resolved = rule.valueToServe;
+                matchedRuleId = rule.id;
+                evaluationSource = "RULE_MATCH";
+                break;
+            }
+        }
+        return EvaluatedConfig.builder()
+                .configKey(node.configKey)
+                .value(resolved.get())
+                .dataType(node.dataType)
+                .versionId(activeConfig.versionId)
+                .versionNumber(activeConfig.versionNumber)
+                .matchedRuleId(matchedRuleId)
+                .evaluationSource(evaluationSource)
+                .build();
+    }
+
+    private static Object offValue(ConfigDataType dataType) {
+        return dataType == ConfigDataType.BOOLEAN ? false : null;
+    }
+
+    private static boolean compareEvaluatedValue(Object actualEvaluatedValue, String expectedValueString, ConfigDataType prerequisiteDataType) {
+        if (expectedValueString == null) {
+            return actualEvaluatedValue == null;
+        }
+        if (actualEvaluatedValue == null) {
+            return false;
+        }
+        try {
+            return switch (prerequisiteDataType) {
+                case BOOLEAN -> actualEvaluatedValue.equals(Boolean.parseBoolean(expectedValueString));
+                case INTEGER -> ((Number) actualEvaluatedValue).intValue() == Integer.parseInt(expectedValueString);
+                case DOUBLE -> ((Number) actualEvaluatedValue).doubleValue() == Double.parseDouble(expectedValueString);
+                case STRING -> actualEvaluatedValue.toString().equals(expectedValueString);
+                case JSON -> {
+                    JsonNode actualJson = actualEvaluatedValue instanceof JsonNode node ? node : OBJECT_MAPPER.valueToTree(actualEvaluatedValue);
+                    yield actualJson.equals(OBJECT_MAPPER.readTree(expectedValueString));
+                }
+            };
+        } catch (Exception e) {
+            log.error("Error comparing prerequisite value: actual='{}', expectedString='{}', prerequisiteType='{}': {}",
+                      actualEvaluatedValue, expectedValueString, prerequisiteDataType, e.getMessage());
+            return false;
+        }
+    }
+
+    private static TypedValue convertValueToDataType(String stringValue, ConfigDataType dataType) {
+        if (stringValue == null) {
+            return new TypedValue(offValue(dataType), null);
+        }
+        try {
+            Object value = switch (dataType) {
+                case BOOLEAN -> Boolean.parseBoolean(stringValue);
+                case INTEGER -> Integer.parseInt(stringValue);
+                case DOUBLE -> Double.parseDouble(stringValue);
+                case STRING -> stringValue;
+                case JSON -> OBJECT_MAPPER.readTree(stringValue);
+            };
+            return new TypedValue(value, null);
+        } catch (NumberFormatException e) {
+            return new TypedValue(null, new ConfXException("Invalid value format for data type " + dataType + ": " + stringValue));
+        } catch (JsonProcessingException e) {
+            return new TypedValue(null, new ConfXException("Invalid JSON format: " + e.getMessage()));
+        }
+    }
+
+    private static final class Node {
+        private final String configKey;
+        private final ConfigDataType dataType; // Null for items only known as dependents without an active version
+        private ActiveConfig activeConfig; // Null if the item has no active version in this environment
+        private Prerequisite[] prerequisites = new Prerequisite[0];
+        private boolean cyclic;
+
+        Node(String configKey, ConfigDataType dataType) {
+            this.configKey = configKey;
+            this.dataType = dataType;
+        }
+    }
+
+    private record Prerequisite(Node node, String expectedValue) {}
+
+    private static final class ActiveConfig {
+        private final Long versionId;
+        private final Integer versionNumber;
+        private final TypedValue defaultValue;
+        private final CompiledRule[] rules;
+
+        ActiveConfig(SnapshotDecoder.DecodedConfig config) {
+            this.versionId = config.versionId();
+            this.versionNumber = config.versionNumber();
+            this.defaultValue = convertValueToDataType(config.value(), config.dataType());
+            this.rules = config.rules().stream()
+                    .sorted(Comparator.comparingInt(SnapshotDecoder.DecodedRule::priority))
+                    .map(rule -> new CompiledRule(rule, config.dataType()))
+                    .toArray(CompiledRule[]::new);
+        }
+    }
+
+    // Conversion result, computed once. A value that does not convert fails every evaluation that resolves to it.
+    private record TypedValue(Object value, RuntimeException error) {
+        Object get() {
+            if (error != null) {
+                throw error;
+            }
+            return value;
+        }
+    }
+
+    private static final class CompiledRule {
+        private final long id;
+        private final String conditionExpression;
+        private final SpelExpression expression; // Null if the condition does not parse, the rule never matches then
+        private final TypedValue valueToServe;
+        private final AtomicBoolean compileAttempted = new AtomicBoolean();
+
+        CompiledRule(SnapshotDecoder.DecodedRule rule, ConfigDataType dataType) {
+            this.id = rule.id();
+            this.conditionExpression = rule.conditionExpression();
+            this.valueToServe = convertValueToDataType(rule.valueToServe(), dataType);
+            SpelExpression parsed = null;
+            try {
+                parsed = PARSER.parseRaw(rule.conditionExpression());
+            } catch (RuntimeException e) {
+                log.error("Error parsing rule (ID {}) condition '{}': {}", rule.id(), rule.conditionExpression(), e.getMessage());
+            }
+            this.expression = parsed;
+        }
+
+        boolean matches(Map<String, Object> attributes) {
+            if (expression == null) {
+                return false;
+            }
+            try {
+                // A context per evaluation: StandardEvaluationContext caches state lazily and is not safe to share
+                Boolean result = expression.getValue(new StandardEvaluationContext(attributes), Boolean.class);
+                // Compilation needs the type information gathered by one interpreted run
+                if (compileAttempted.compareAndSet(false, true) && !expression.compileExpression()) {
+                    log.debug("Rule expression (ID {}) could not be compiled, it will stay interpreted: '{}'", id, conditionExpression);
+                }
+                return Boolean.TRUE.equals(result);
+            } catch (Exception e) {
+                // Like on the server, a failing condition is a non-match and evaluation continues with the next rule
+                log.error("Error evaluating rule (ID {}). Condition: '{}'. Error: {}", id, conditionExpression, e.getMessage());
+                return false;
+            }
+        }
+    }
+}
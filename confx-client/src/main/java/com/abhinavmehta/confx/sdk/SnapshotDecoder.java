@@ -0,0 +1,149 @@
+package com.abhinavmehta.confx.sdk;
+
+import com.abhinavmehta.confx.sdk.model.ConfigDataType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the server's binary snapshot format ({@value #MEDIA_TYPE}, layout documented in the server's
+ * BinarySnapshotEncoder). Typed values are turned back into their string form, so the client converts them with
+ * exactly the same rules as the server does for stored values.
+ */
+class SnapshotDecoder {
+
+    static final String MEDIA_TYPE = "application/vnd.confx.snapshot.v1";
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'C', 'F', 'X', 'S'};
+
+    record DecodedSnapshot(long projectId, long environmentId, long revision, List<DecodedConfig> configs) {}
+
+    record DecodedConfig(long configItemId, long versionId, int versionNumber, String configKey,
+                         ConfigDataType dataType, String value, List<DecodedRule> rules) {}
+
+    record DecodedRule(long id, int priority, String conditionExpression, String valueToServe) {}
+
+    DecodedSnapshot decode(byte[] bytes) {
+        Input in = new Input(bytes);
+        for (byte b : MAGIC) {
+            if (in.readByte() != b) {
+                throw new ConfXException("Not a ConfX snapshot");
+            }
+        }
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new ConfXException("Unsupported snapshot format version: " + version);
+        }
+        long projectId = in.readVarint();
+        long environmentId = in.readVarint();
+        long revision = in.readVarint();
+
+        String[] strings = new String[in.readCount()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUtf8(in.readCount());
+        }
+
+        int configCount = in.readCount();
+        List<DecodedConfig> configs = new ArrayList<>(configCount);
+        for (int i = 0; i < configCount; i++) {
+            long configItemId = in.readVarint();
+            long versionId = in.readVarint();
+            int versionNumber = (int) in.readVarint();
+            String configKey = strings[in.readCount()];
+            ConfigDataType dataType = dataType(in.readByte());
+            String value = readValue(in, strings);
+
+            int ruleCount = in.readCount();
+            List<DecodedRule> rules = new ArrayList<>(ruleCount);
+            for (int r = 0; r < ruleCount; r++) {
+                long ruleId = in.readVarint();
+                int priority = (int) in.readVarint();
+                String condition = strings[in.readCount()];
+                rules.add(new DecodedRule(ruleId, priority, condition, readValue(in, strings)));
+            }
+            configs.add(new DecodedConfig(configItemId, versionId, versionNumber, configKey, dataType, value, rules));
+        }
+        return new DecodedSnapshot(projectId, environmentId, revision, configs);
+    }
+
+    private String readValue(Input in, String[] strings) {
+        int tag = in.readByte();
+        return switch (tag) {
+            case 0 -> null;
+            case 1 -> "false";
+            case 2 -> "true";
+            case 3 -> {
+                long zigzag = in.readVarint();
+                yield Long.toString((zigzag >>> 1) ^ -(zigzag & 1));
+            }
+            case 4 -> Double.toString(Double.longBitsToDouble(in.readLong()));
+            case 5 -> strings[in.readCount()];
+            default -> throw new ConfXException("Unknown value tag in snapshot: " + tag);
+        };
+    }
+
+    private static ConfigDataType dataType(int code) {
+        return switch (code) {
+            case 0 -> ConfigDataType.BOOLEAN;
+            case 1 -> ConfigDataType.STRING;
+            case 2 -> ConfigDataType.INTEGER;
+            case 3 -> ConfigDataType.DOUBLE;
+            case 4 -> ConfigDataType.JSON;
+            default -> throw new ConfXException("Unknown data type in snapshot: " + code);
+        };
+    }
+
+    private static final class Input {
+        private final byte[] bytes;
+        private int position;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            if (position >= bytes.length) {
+                throw new ConfXException("Truncated snapshot");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new ConfXException("Malformed varint in snapshot");
+        }
+
+        int readCount() {
+            long value = readVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw new ConfXException("Malformed length in snapshot");
+            }
+            return (int) value;
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        String readUtf8(int length) {
+            if (length > bytes.length - position) {
+                throw new ConfXException("Truncated snapshot");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
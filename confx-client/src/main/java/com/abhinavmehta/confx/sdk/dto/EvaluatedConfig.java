@@ -0,0 +1,22 @@
+package com.abhinavmehta.confx.sdk.dto;
+
+import com.abhinavmehta.confx.sdk.model.ConfigDataType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Same fields and meaning as the server's EvaluatedConfigResponseDto
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EvaluatedConfig {
+    private String configKey;
+    private Object value; // Boolean, Integer, Double, String or JsonNode, depending on dataType
+    private ConfigDataType dataType;
+    private Long versionId;
+    private Integer versionNumber;
+    private Long matchedRuleId; // Priority of the rule that matched, if any (it identifies the rule within its version)
+    private String evaluationSource; // DEFAULT_VALUE, RULE_MATCH, PREREQUISITE_NOT_MET or CYCLIC_DEPENDENCY_ERROR
+}
@@ -0,0 +1,18 @@
+package com.abhinavmehta.confx.sdk.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EvaluationContext {
+    // Arbitrary attributes rules are evaluated against, e.g. userId, region, email.
+    // Rule expressions access them like on the server: attributes['region'] == 'EU'
+    private Map<String, Object> attributes;
+}
@@ -0,0 +1,10 @@
+package com.abhinavmehta.confx.sdk.model;
+
+// Mirrors the server's ConfigDataType
+public enum ConfigDataType {
+    BOOLEAN,
+    STRING,
+    INTEGER,
+    DOUBLE, // For floating-point numbers
+    JSON
+}
@@ -0,0 +1,107 @@
+package com.abhinavmehta.confx.sdk;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.abhinavmehta.confx.sdk.StubServer.DEPENDENCIES_PATH;
+import static com.abhinavmehta.confx.sdk.StubServer.SNAPSHOT_PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ConfXClientTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private StubServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new StubServer();
+        resources.add(server);
+    }
+
+    @AfterEach
+    void closeResources() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void revalidatesByETagAndDownloadsOnlyWhatChanged() {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("parent", "off"); // Item 1
+        values.put("child", "on"); // Item 2
+        server.snapshot(1, values);
+
+        ConfXClient client = client(config().pollIntervalMs(50).build());
+        await().atMost(Duration.ofSeconds(10)).until(client::isInitialized);
+        assertThat(client.evaluate("child", null).getEvaluationSource()).isEqualTo("DEFAULT_VALUE");
+
+        server.dependencies(1, """
+                [{"id": 1, "dependentConfigItemId": 2, "dependentConfigKey": "child",
+                  "prerequisiteConfigItemId": 1, "prerequisiteConfigKey": "parent", "prerequisiteDataType": "STRING",
+                  "prerequisiteExpectedValue": "on"}]""");
+        await().atMost(Duration.ofSeconds(10))
+                .untilAsserted(() -> assertThat(client.evaluate("child", null).getEvaluationSource()).isEqualTo("PREREQUISITE_NOT_MET"));
+        int polls = server.requests(DEPENDENCIES_PATH).size();
+
+        // Later polls revalidate both, and nothing is downloaded again
+        await().atMost(Duration.ofSeconds(10)).until(() -> server.requests(DEPENDENCIES_PATH).size() >= polls + 3);
+        List<Integer> snapshotStatuses = server.statuses(SNAPSHOT_PATH);
+        assertThat(snapshotStatuses.get(0)).isEqualTo(200);
+        assertThat(snapshotStatuses.subList(1, snapshotStatuses.size())).isNotEmpty().containsOnly(304);
+        assertThat(server.statuses(DEPENDENCIES_PATH)).filteredOn(status -> status == 200).hasSize(2);
+        assertThat(server.requests(DEPENDENCIES_PATH)).last().extracting(StubServer.Request::ifNoneMatch).isEqualTo("\"deps-1\"");
+    }
+
+    @Test
+    void failedInitialLoadsAreRetried() {
+        server.snapshot(1, Map.of("greeting", "hello"));
+        server.failSnapshotRequests(2);
+
+        ConfXClient client = client(config().sseReconnectTimeMs(50).build());
+        await().atMost(Duration.ofSeconds(10)).until(client::isInitialized);
+
+        assertThat(client.getStringValue("greeting", null, null)).isEqualTo("hello");
+        assertThat(server.statuses(SNAPSHOT_PATH)).containsExactly(503, 503, 200);
+    }
+
+    @Test
+    void initialLoadRetriesDoNotHoldTheExecutor() throws Exception {
+        server.snapshot(1, Map.of("greeting", "hello"));
+        server.failSnapshotRequests(1);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        resources.add(executor::shutdownNow);
+
+        ConfXClient client = client(config().executorService(executor).sseReconnectTimeMs(60_000).build());
+        await().atMost(Duration.ofSeconds(10)).until(() -> !server.requests(SNAPSHOT_PATH).isEmpty());
+
+        // The retry is a minute away; the executor's only thread must not be waiting for it
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        assertThat(client.isInitialized()).isFalse();
+        assertThat(server.statuses(SNAPSHOT_PATH)).containsExactly(503);
+    }
+
+    private ConfXClient client(ConfXSDKConfig config) {
+        ConfXClient client = new ConfXClient(config);
+        resources.add(0, client);
+        return client;
+    }
+
+    private ConfXSDKConfig.ConfXSDKConfigBuilder config() {
+        return ConfXSDKConfig.builder()
+                .serverUrl(server.url())
+                .projectId(StubServer.PROJECT_ID)
+                .environmentId(StubServer.ENVIRONMENT_ID);
+    }
+}
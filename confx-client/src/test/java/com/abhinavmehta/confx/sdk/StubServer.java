@@ -0,0 +1,144 @@
+package com.abhinavmehta.confx.sdk;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in for the server's snapshot and dependency endpoints of one environment, with their ETags, and records
+ * every request it answers. It has no update stream (the client keeps reconnecting to it), so the client only sees
+ * changes when it polls.
+ */
+final class StubServer implements AutoCloseable {
+
+    static final long PROJECT_ID = 1;
+    static final long ENVIRONMENT_ID = 2;
+    static final String SNAPSHOT_PATH = "/api/v1/projects/1/environments/2/all-active-configs";
+    static final String DEPENDENCIES_PATH = "/api/v1/projects/1/dependencies/all";
+
+    record Request(String path, String ifNoneMatch, int status) {
+    }
+
+    private record Resource(String eTag, String contentType, byte[] body) {
+    }
+
+    private final HttpServer server;
+    private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger snapshotFailures = new AtomicInteger();
+    private volatile Resource snapshot;
+    private volatile Resource dependencies = new Resource("\"deps-0\"", "application/json", "[]".getBytes(StandardCharsets.UTF_8));
+
+    StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(SNAPSHOT_PATH, exchange -> serve(exchange, snapshotFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0 ? null : snapshot));
+        server.createContext(DEPENDENCIES_PATH, exchange -> serve(exchange, dependencies));
+        server.createContext("/api/v1/stream", exchange -> respond(exchange, 404, null));
+        server.start();
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Serves an environment of STRING configs without rules, at the given revision.
+     */
+    void snapshot(long revision, Map<String, String> values) {
+        snapshot = new Resource("\"" + revision + "-snapshot-v1\"", SnapshotDecoder.MEDIA_TYPE, encode(revision, values));
+    }
+
+    void dependencies(long version, String json) {
+        dependencies = new Resource("\"deps-" + version + "\"", "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Answers the next {@code count} snapshot requests with 503.
+     */
+    void failSnapshotRequests(int count) {
+        snapshotFailures.set(count);
+    }
+
+    List<Request> requests(String path) {
+        return requests.stream().filter(request -> request.path().equals(path)).toList();
+    }
+
+    List<Integer> statuses(String path) {
+        return requests(path).stream().map(Request::status).toList();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange, Resource resource) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        int status = resource == null ? 503 : resource.eTag().equals(ifNoneMatch) ? 304 : 200;
+        requests.add(new Request(exchange.getRequestURI().getPath(), ifNoneMatch, status));
+        if (resource != null) {
+            exchange.getResponseHeaders().set("ETag", resource.eTag());
+            exchange.getResponseHeaders().set("Content-Type", resource.contentType());
+        }
+        respond(exchange, status, status == 200 ? resource.body() : null);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (body != null) {
+                out.write(body);
+            }
+        }
+    }
+
+    // The layout read by SnapshotDecoder: header, string table, then configs (item ids from 1, in iteration order)
+    private static byte[] encode(long revision, Map<String, String> values) {
+        List<String> strings = new ArrayList<>();
+        values.forEach((key, value) -> {
+            strings.add(key);
+            strings.add(value);
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {'C', 'F', 'X', 'S', 1});
+        writeVarint(out, PROJECT_ID);
+        writeVarint(out, ENVIRONMENT_ID);
+        writeVarint(out, revision);
+        writeVarint(out, strings.size());
+        for (String string : strings) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, utf8.length);
+            out.writeBytes(utf8);
+        }
+        writeVarint(out, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            writeVarint(out, i + 1); // Config item id
+            writeVarint(out, 100 + i); // Version id
+            writeVarint(out, 1); // Version number
+            writeVarint(out, 2L * i); // Key
+            out.write(1); // STRING
+            out.write(5); // String value tag
+            writeVarint(out, 2L * i + 1);
+            writeVarint(out, 0); // Rules
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,28 @@
+package com.abhinavmehta.confx.controller;
+
+import com.abhinavmehta.confx.dto.BulkPublishConfigRequestDto;
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.service.ConfigVersionService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/projects/{projectId}/versions")
+@RequiredArgsConstructor
+public class BulkPublishController {
+
+    private final ConfigVersionService configVersionService;
+
+    @PostMapping("/bulk")
+    public ResponseEntity<List<ConfigVersionResponseDto>> publishVersions(
+            @PathVariable Long projectId,
+            @Valid @RequestBody BulkPublishConfigRequestDto requestDto) {
+        List<ConfigVersionResponseDto> newVersions = configVersionService.publishVersions(projectId, requestDto);
+        return new ResponseEntity<>(newVersions, HttpStatus.CREATED);
+    }
+}
@@ -1,5 +1,6 @@
 package com.abhinavmehta.confx.controller;
 
+import com.abhinavmehta.confx.dto.BulkConfigDependencyRequestDto;
 import com.abhinavmehta.confx.dto.ConfigDependencyRequestDto;
 import com.abhinavmehta.confx.dto.ConfigDependencyResponseDto;
 import com.abhinavmehta.confx.service.ConfigDependencyService;
@@ -8,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -27,6 +29,14 @@ public class ConfigDependencyController {
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<List<ConfigDependencyResponseDto>> addDependencies(
+            @PathVariable Long projectId,
+            @Valid @RequestBody BulkConfigDependencyRequestDto requestDto) {
+        List<ConfigDependencyResponseDto> response = dependencyService.addDependencies(projectId, requestDto);
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
     @GetMapping("/for/{configItemId}")
     public ResponseEntity<List<ConfigDependencyResponseDto>> getDependenciesForConfigItem(
             @PathVariable Long projectId,
@@ -52,7 +62,12 @@ public class ConfigDependencyController {
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<ConfigDependencyResponseDto>> getAllDependenciesForProject(@PathVariable Long projectId) {
+    public ResponseEntity<List<ConfigDependencyResponseDto>> getAllDependenciesForProject(@PathVariable Long projectId, WebRequest webRequest) {
+        // Read before the dependencies, like the environment revision, so a 304 is never answered for a stale copy.
+        String eTag = "\"deps-" + dependencyService.getDependencyVersion(projectId) + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         List<ConfigDependencyResponseDto> response = dependencyService.getAllDependenciesForProject(projectId);
         return ResponseEntity.ok(response);
     }
@@ -1,5 +1,6 @@
 package com.abhinavmehta.confx.controller;
 
+import com.abhinavmehta.confx.dto.BulkEvaluationRequestDto;
 import com.abhinavmehta.confx.dto.EvaluatedConfigResponseDto;
 import com.abhinavmehta.confx.dto.EvaluationContext;
 import com.abhinavmehta.confx.service.ConfigEvaluationService;
@@ -8,6 +9,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/evaluate")
 @RequiredArgsConstructor
@@ -24,10 +28,24 @@ public class ConfigEvaluationController {
         
         EvaluationContext context = (evaluationContext == null) ? new EvaluationContext() : evaluationContext;
         if (context.getAttributes() == null) {
-            context.setAttributes(new java.util.HashMap<>()); // Ensure attributes map is not null for SpEL
+            context.setAttributes(new HashMap<>()); // Ensure attributes map is not null for SpEL
         }
 
         EvaluatedConfigResponseDto response = configEvaluationService.evaluateConfig(projectId, environmentId, configKey, context);
         return ResponseEntity.ok(response);
     }
-} 
\ No newline at end of file
+
+    @PostMapping("/projects/{projectId}/environments/{environmentId}/configs")
+    public ResponseEntity<Map<String, EvaluatedConfigResponseDto>> evaluateConfigs(
+            @PathVariable Long projectId,
+            @PathVariable Long environmentId,
+            @Valid @RequestBody(required = false) BulkEvaluationRequestDto requestDto) {
+
+        BulkEvaluationRequestDto request = (requestDto == null) ? new BulkEvaluationRequestDto() : requestDto;
+        EvaluationContext context = new EvaluationContext(
+            request.getAttributes() == null ? new HashMap<>() : request.getAttributes()); // Ensure attributes map is not null for SpEL
+
+        Map<String, EvaluatedConfigResponseDto> response = configEvaluationService.evaluateConfigs(projectId, environmentId, request.getConfigKeys(), context);
+        return ResponseEntity.ok(response);
+    }
+}
\ No newline at end of file
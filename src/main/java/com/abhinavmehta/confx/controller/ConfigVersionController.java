@@ -1,22 +1,30 @@
 package com.abhinavmehta.confx.controller;
 
+import com.abhinavmehta.confx.dto.ConfigVersionHistoryPageDto;
 import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
 import com.abhinavmehta.confx.dto.PublishConfigRequestDto;
 import com.abhinavmehta.confx.service.ConfigVersionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
 
 @RestController
 @RequestMapping("/api/v1/projects/{projectId}/environments/{environmentId}/configs/{configItemId}/versions")
 @RequiredArgsConstructor
 public class ConfigVersionController {
 
+    private static final int EXPORT_PAGE_SIZE = ConfigVersionService.MAX_HISTORY_PAGE_SIZE;
+
     private final ConfigVersionService configVersionService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<ConfigVersionResponseDto> publishNewVersion(
@@ -28,13 +36,50 @@ public class ConfigVersionController {
         return new ResponseEntity<>(newVersion, HttpStatus.CREATED);
     }
 
-    @GetMapping
-    public ResponseEntity<List<ConfigVersionResponseDto>> getConfigVersionHistory(
+    /**
+     * The whole history as a JSON array, newest first. Like the export below, it is read and written one page at a
+     * time; {@code /page} returns it a page per request instead.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getConfigVersionHistory(
             @PathVariable Long projectId,
             @PathVariable Long environmentId,
-            @PathVariable Long configItemId) {
-        List<ConfigVersionResponseDto> history = configVersionService.getConfigVersionHistory(projectId, environmentId, configItemId);
-        return ResponseEntity.ok(history);
+            @PathVariable Long configItemId,
+            @RequestParam(defaultValue = "true") boolean includeRules) {
+        // Read before the response starts, so an unknown config item or environment still gets its 404
+        ConfigVersionHistoryPageDto firstPage = configVersionService.getConfigVersionHistoryPage(
+                projectId, environmentId, configItemId, null, EXPORT_PAGE_SIZE, includeRules);
+        StreamingResponseBody body = out -> writeHistory(out, firstPage, projectId, environmentId, configItemId, includeRules, true);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<ConfigVersionHistoryPageDto> getConfigVersionHistoryPage(
+            @PathVariable Long projectId,
+            @PathVariable Long environmentId,
+            @PathVariable Long configItemId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "true") boolean includeRules) {
+        ConfigVersionHistoryPageDto page = configVersionService.getConfigVersionHistoryPage(projectId, environmentId, configItemId, cursor, limit, includeRules);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * The whole history as newline-delimited JSON, newest first. It is read and written one page at a time, each
+     * page in its own short transaction, so neither the response nor a database connection is held for all of it.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportConfigVersionHistory(
+            @PathVariable Long projectId,
+            @PathVariable Long environmentId,
+            @PathVariable Long configItemId,
+            @RequestParam(defaultValue = "true") boolean includeRules) {
+        // Read before the response starts, so an unknown config item or environment still gets its 404
+        ConfigVersionHistoryPageDto firstPage = configVersionService.getConfigVersionHistoryPage(
+                projectId, environmentId, configItemId, null, EXPORT_PAGE_SIZE, includeRules);
+        StreamingResponseBody body = out -> writeHistory(out, firstPage, projectId, environmentId, configItemId, includeRules, false);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/active")
@@ -65,4 +110,35 @@ public class ConfigVersionController {
         ConfigVersionResponseDto rolledBackVersion = configVersionService.rollbackToVersion(projectId, environmentId, configItemId, versionIdToRollbackTo);
         return ResponseEntity.ok(rolledBackVersion);
     }
-} 
\ No newline at end of file
+
+    // Writes the history from its first page on, as one JSON array or as newline-delimited JSON.
+    private void writeHistory(OutputStream out, ConfigVersionHistoryPageDto firstPage, Long projectId, Long environmentId,
+                              Long configItemId, boolean includeRules, boolean jsonArray) throws IOException {
+        if (jsonArray) {
+            out.write('[');
+        }
+        boolean first = true;
+        ConfigVersionHistoryPageDto page = firstPage;
+        while (true) {
+            for (ConfigVersionResponseDto version : page.getVersions()) {
+                if (jsonArray && !first) {
+                    out.write(',');
+                }
+                out.write(objectMapper.writeValueAsBytes(version));
+                if (!jsonArray) {
+                    out.write('\n');
+                }
+                first = false;
+            }
+            out.flush();
+            if (page.getNextCursor() == null) {
+                break;
+            }
+            page = configVersionService.getConfigVersionHistoryPage(
+                    projectId, environmentId, configItemId, page.getNextCursor(), EXPORT_PAGE_SIZE, includeRules);
+        }
+        if (jsonArray) {
+            out.write(']');
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.abhinavmehta.confx.controller;
 
+import com.abhinavmehta.confx.dto.ConfigChangesResponseDto;
 import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
 import com.abhinavmehta.confx.service.ConfigVersionService;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.service.snapshot.BinarySnapshotEncoder;
+import com.abhinavmehta.confx.service.snapshot.BinarySnapshotService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -17,12 +24,48 @@ import java.util.List;
 public class EnvironmentConfigController {
 
     private final ConfigVersionService configVersionService;
+    private final EnvironmentRevisionService environmentRevisionService;
+    private final BinarySnapshotService binarySnapshotService;
 
     @GetMapping
     public ResponseEntity<List<ConfigVersionResponseDto>> getAllActiveConfigsForEnvironment(
             @PathVariable Long projectId,
-            @PathVariable Long environmentId) {
+            @PathVariable Long environmentId,
+            WebRequest webRequest) {
+        // The revision is read before the configs: if a change lands in between, the response carries the older
+        // revision and the next poll simply fetches again, it can never be answered with a stale 304.
+        String eTag = "\"" + environmentRevisionService.getRevision(projectId, environmentId) + "\"";
+        // Sets the ETag header on the response either way, and the 304 status when the client's copy is current.
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         List<ConfigVersionResponseDto> allActiveConfigs = configVersionService.getAllActiveConfigsForEnvironment(projectId, environmentId);
-        return ResponseEntity.ok(allActiveConfigs);
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(allActiveConfigs);
     }
-} 
\ No newline at end of file
+
+    // Same resource in the compact binary snapshot format, selected with "Accept: application/vnd.confx.snapshot.v1".
+    @GetMapping(produces = BinarySnapshotEncoder.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getBinarySnapshotForEnvironment(
+            @PathVariable Long projectId,
+            @PathVariable Long environmentId,
+            WebRequest webRequest) {
+        long revision = environmentRevisionService.getRevision(projectId, environmentId);
+        // A different representation of the same revision, so it needs its own strong ETag.
+        String eTag = "\"" + revision + "-snapshot-v1\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        byte[] snapshot = binarySnapshotService.getSnapshot(projectId, environmentId, revision);
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(snapshot);
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<ConfigChangesResponseDto> getChangesSince(
+            @PathVariable Long projectId,
+            @PathVariable Long environmentId,
+            @RequestParam long sinceRevision) {
+        // Read first for the same reason as above: the returned revision never claims changes the payload lacks.
+        long currentRevision = environmentRevisionService.getRevision(projectId, environmentId);
+        return ResponseEntity.ok(configVersionService.getChangesSince(projectId, environmentId, sinceRevision, currentRevision));
+    }
+}
@@ -5,10 +5,14 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/v1/stream")
 @RequiredArgsConstructor
@@ -19,7 +23,10 @@ public class SseController {
     @GetMapping(path = "/projects/{projectId}/environments/{environmentId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter streamConfigUpdates(
             @PathVariable Long projectId,
-            @PathVariable Long environmentId) {
-        return sseService.createEmitter(projectId, environmentId);
+            @PathVariable Long environmentId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) Set<String> keys,
+            @RequestParam(required = false) Set<String> keyPrefixes) {
+        return sseService.createEmitter(projectId, environmentId, lastEventId, keys, keyPrefixes);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.abhinavmehta.confx.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkConfigDependencyRequestDto {
+    @NotEmpty(message = "Dependencies cannot be empty")
+    @Size(max = 1000, message = "At most 1000 dependencies can be added in one request")
+    private List<@Valid Entry> dependencies;
+
+    @Data
+    public static class Entry {
+        @NotNull(message = "Dependent ConfigItem ID cannot be null")
+        private Long dependentConfigItemId;
+
+        @NotNull(message = "Prerequisite ConfigItem ID cannot be null")
+        private Long prerequisiteConfigItemId;
+
+        @NotNull(message = "Prerequisite expected value cannot be null")
+        @Size(min = 1, max = 4000, message = "Prerequisite expected value must be between 1 and 4000 characters")
+        private String prerequisiteExpectedValue;
+
+        @Size(max = 1000, message = "Description cannot exceed 1000 characters")
+        private String description;
+    }
+}
@@ -0,0 +1,17 @@
+package com.abhinavmehta.confx.dto;
+
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class BulkEvaluationRequestDto {
+    // Keys to evaluate. Leave empty to evaluate every config that has an active version in the environment.
+    @Size(max = 5000, message = "Cannot evaluate more than 5000 configs in one request")
+    private List<String> configKeys;
+
+    // Same attributes as EvaluationContext; shared by every config evaluated in this request.
+    private Map<String, Object> attributes;
+}
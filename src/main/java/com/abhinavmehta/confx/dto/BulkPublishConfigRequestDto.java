@@ -0,0 +1,37 @@
+package com.abhinavmehta.confx.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkPublishConfigRequestDto {
+    @NotEmpty(message = "Versions cannot be empty")
+    @Size(max = 1000, message = "At most 1000 versions can be published in one request")
+    private List<@Valid Entry> versions;
+
+    @Data
+    public static class Entry {
+        @NotNull(message = "ConfigItem ID cannot be null")
+        private Long configItemId;
+
+        @NotNull(message = "Environment ID cannot be null")
+        private Long environmentId;
+
+        @NotBlank(message = "Value cannot be blank. For a boolean 'false', send 'false' as string.")
+        private String value;
+
+        @Size(max = 1000, message = "Change description cannot exceed 1000 characters")
+        private String changeDescription;
+
+        @NotNull
+        @Size(max = 50, message = "Cannot have more than 50 rules per config version")
+        private List<@Valid RuleDto> rules = new ArrayList<>();
+    }
+}
@@ -0,0 +1,16 @@
+package com.abhinavmehta.confx.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ConfigChangesResponseDto {
+    private Long sinceRevision; // Revision the client asked for
+    private Long revision; // Revision the client is at after applying this response
+    private boolean fullSnapshot; // True if the client was too far behind: configs then replace its whole state
+    private List<ConfigVersionResponseDto> configs; // Active configs changed since sinceRevision (or all of them)
+    private List<String> deletedConfigKeys; // Config items deleted since sinceRevision, never a key also in configs
+}
@@ -0,0 +1,13 @@
+package com.abhinavmehta.confx.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ConfigVersionHistoryPageDto {
+    private List<ConfigVersionResponseDto> versions; // Newest first
+    private String nextCursor; // Pass as cursor to get the next page. Null on the last page
+}
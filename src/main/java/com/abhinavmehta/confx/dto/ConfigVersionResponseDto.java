@@ -1,13 +1,17 @@
 package com.abhinavmehta.confx.dto;
 
 import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor // Deserialized from the event outbox
 public class ConfigVersionResponseDto {
     private Long id; // Version ID
     private Long configItemId;
@@ -16,6 +16,7 @@ public class EvaluatedConfigResponseDto {
     private ConfigDataType dataType;
     private Long versionId; // ID of the ConfigVersion that was evaluated
     private Integer versionNumber;
-    private Long matchedRuleId; // ID of the rule that matched, if any
+    private Long matchedRuleId; // ID (priority) of the rule that matched, if any
     private String evaluationSource; // e.g., "DEFAULT_VALUE" or "RULE_MATCH"
+    private String error; // Why the config could not be evaluated (bulk evaluation only, source "EVALUATION_ERROR")
 } 
\ No newline at end of file
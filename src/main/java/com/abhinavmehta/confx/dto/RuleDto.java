@@ -14,7 +14,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class RuleDto {
-    private Long id; // Only in response
+    private Long id; // Only in response: the rule's priority, which identifies it within its version
 
     @NotNull(message = "Priority cannot be null")
     @Min(value = 1, message = "Priority must be a positive integer")
@@ -30,7 +30,4 @@ public class RuleDto {
 
     @Size(max = 1000, message = "Rule description cannot exceed 1000 characters")
     private String description;
-
-    private Long createdAt; // Only in response
-    private Long updatedAt; // Only in response
 } 
\ No newline at end of file
@@ -13,8 +13,11 @@ public class ConfigUpdateSseDto {
     private Object payload; // Can be ConfigVersionResponseDto or just a key/ID
 
     public static final String TYPE_CONFIG_VERSION_UPDATED = "CONFIG_VERSION_UPDATED";
+    public static final String TYPE_CONFIG_BATCH_UPDATED = "CONFIG_BATCH_UPDATED"; // Payload: the latest ConfigVersionResponseDto per updated key
+    public static final String TYPE_DEPENDENTS_AFFECTED = "DEPENDENTS_AFFECTED"; // Payload: updated keys and the keys depending on them, transitively
     public static final String TYPE_CONFIG_ITEM_DELETED = "CONFIG_ITEM_DELETED";
     public static final String TYPE_ENVIRONMENT_DELETED = "ENVIRONMENT_DELETED";
     public static final String TYPE_PROJECT_DELETED = "PROJECT_DELETED";
+    public static final String TYPE_RESYNC = "RESYNC"; // Missed events cannot be replayed, the client must reload its state
     // Add other types as needed
 } 
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.abhinavmehta.confx.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Creation and modification timestamps shared by all entities. Entities get their id from {@link BaseEntity}, or
+ * declare it themselves when they need another generation strategy.
+ */
+@Getter
+@Setter
+@MappedSuperclass
+@NoArgsConstructor
+@SuperBuilder
+public abstract class AuditedEntity implements Serializable {
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Long createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Long updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        long now = Instant.now().toEpochMilli();
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = Instant.now().toEpochMilli();
+    }
+}
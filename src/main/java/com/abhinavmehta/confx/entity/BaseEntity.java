@@ -4,39 +4,16 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
-import lombok.AllArgsConstructor;
 import lombok.experimental.SuperBuilder;
 
-import java.io.Serializable;
-import java.time.Instant;
-
 @Getter
 @Setter
 @MappedSuperclass
 @NoArgsConstructor
-@AllArgsConstructor
 @SuperBuilder
-public abstract class BaseEntity implements Serializable {
+public abstract class BaseEntity extends AuditedEntity {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-
-    @Column(name = "created_at", nullable = false, updatable = false)
-    private Long createdAt;
-
-    @Column(name = "updated_at", nullable = false)
-    private Long updatedAt;
-
-    @PrePersist
-    protected void onCreate() {
-        long now = Instant.now().toEpochMilli();
-        this.createdAt = now;
-        this.updatedAt = now;
-    }
-
-    @PreUpdate
-    protected void onUpdate() {
-        this.updatedAt = Instant.now().toEpochMilli();
-    }
-} 
\ No newline at end of file
+}
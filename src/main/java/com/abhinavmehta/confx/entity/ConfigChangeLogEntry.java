@@ -0,0 +1,43 @@
+package com.abhinavmehta.confx.entity;
+
+import com.abhinavmehta.confx.model.enums.ConfigChangeType;
+import jakarta.persistence.*;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "config_change_log", schema = "confx_schema",
+    uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"environment_id", "revision"})
+    }
+)
+public class ConfigChangeLogEntry extends AuditedEntity {
+
+    // Pooled like config version ids: entries are written in bulk
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "config_change_log_id_seq")
+    @SequenceGenerator(name = "config_change_log_id_seq", schema = "confx_schema", sequenceName = "config_change_log_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "environment_id", nullable = false)
+    private Long environmentId; // Plain id, entries are written and read in bulk and never navigate to the environment
+
+    @Column(name = "revision", nullable = false)
+    private Long revision;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false)
+    private ConfigChangeType changeType;
+
+    @Column(name = "config_item_id")
+    private Long configItemId; // Kept after the config item is deleted
+
+    @Column(name = "config_key")
+    private String configKey;
+
+    // createdAt and updatedAt are inherited from AuditedEntity
+}
@@ -0,0 +1,49 @@
+package com.abhinavmehta.confx.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Points at the active version of a config item in an environment and holds its last version number. Publishes
+ * claim the next number by updating the head; {@code rowVersion} makes concurrent claims fail instead of colliding.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "config_heads", schema = "confx_schema")
+public class ConfigHead extends AuditedEntity {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "active_version_id")
+    private Long activeVersionId; // Null while no version is active
+
+    @Column(name = "last_version_number", nullable = false)
+    private Integer lastVersionNumber;
+
+    @Version
+    @Column(name = "row_version", nullable = false)
+    private Long rowVersion; // Null until persisted, which is how new heads are told apart
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "config_item_id", nullable = false)
+        private Long configItemId;
+
+        @Column(name = "environment_id", nullable = false)
+        private Long environmentId;
+    }
+
+    // createdAt and updatedAt are inherited from AuditedEntity
+}
@@ -17,7 +17,13 @@ import lombok.*;
         @Index(name = "idx_cv_item_env_active_entity", columnList = "config_item_id, environment_id, isActive") // Consider DB index `WHERE isActive = TRUE` for more specific optimization if JPA supports it or rely on DB index.
     }
 )
-public class ConfigVersion extends BaseEntity {
+public class ConfigVersion extends AuditedEntity {
+
+    // Allocated from the sequence in blocks, so bulk inserts can be batched (identity ids are not known before insert)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "config_versions_id_seq")
+    @SequenceGenerator(name = "config_versions_id_seq", schema = "confx_schema", sequenceName = "config_versions_id_seq", allocationSize = 50)
+    private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "config_item_id", nullable = false)
@@ -40,5 +46,8 @@ public class ConfigVersion extends BaseEntity {
     @Column(name = "change_description", columnDefinition = "TEXT")
     private String changeDescription;
 
-    // createdAt and updatedAt are inherited from BaseEntity
+    @Column(name = "rule_set_hash", length = 64)
+    private String ruleSetHash; // Hash of the version's rule set, see RuleSet. Null when it has no rules
+
+    // createdAt and updatedAt are inherited from AuditedEntity
 } 
\ No newline at end of file
@@ -29,5 +29,9 @@ public class Environment extends BaseEntity {
     @Column(name = "color_tag")
     private String colorTag; // For UI indication, e.g., a hex color code
 
+    // Only ever changed through EnvironmentRepository.incrementRevision, never written from the entity.
+    @Column(name = "revision", nullable = false, insertable = false, updatable = false)
+    private Long revision;
+
     // createdAt and updatedAt are inherited from BaseEntity
 } 
\ No newline at end of file
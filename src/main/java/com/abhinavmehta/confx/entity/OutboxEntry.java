@@ -0,0 +1,28 @@
+package com.abhinavmehta.confx.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "config_event_outbox", schema = "confx_schema")
+public class OutboxEntry extends BaseEntity {
+
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+
+    @Column(name = "environment_id")
+    private Long environmentId; // Null for changes to the whole project
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    // createdAt and updatedAt are inherited from BaseEntity
+}
@@ -0,0 +1,28 @@
+package com.abhinavmehta.confx.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * The ordered rules of one or more config versions, stored once per distinct content under its hash. Rows are only
+ * ever inserted, by {@link com.abhinavmehta.confx.repository.RuleSetRepository#store}.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Immutable
+@Table(name = "rule_sets", schema = "confx_schema")
+public class RuleSet {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash; // SHA-256 (hex) of the canonical jsonb text of the rules
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "rules", nullable = false, columnDefinition = "jsonb")
+    private String rules; // JSON array sorted by priority
+}
@@ -0,0 +1,14 @@
+package com.abhinavmehta.confx.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class ConfigDependenciesChangedEvent extends ApplicationEvent {
+    private final Long projectId;
+
+    public ConfigDependenciesChangedEvent(Object source, Long projectId) {
+        super(source);
+        this.projectId = projectId;
+    }
+}
@@ -3,16 +3,20 @@ package com.abhinavmehta.confx.events;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
+import java.util.Map;
+
 @Getter
 public class ConfigItemDeletedEvent extends ApplicationEvent {
     private final Long projectId;
     private final Long configItemId;
     private final String configKey;
+    private final Map<Long, Long> environmentRevisions; // Environment id -> revision produced by the deletion
 
-    public ConfigItemDeletedEvent(Object source, Long projectId, Long configItemId, String configKey) {
+    public ConfigItemDeletedEvent(Object source, Long projectId, Long configItemId, String configKey, Map<Long, Long> environmentRevisions) {
         super(source);
         this.projectId = projectId;
         this.configItemId = configItemId;
         this.configKey = configKey;
+        this.environmentRevisions = environmentRevisions;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.abhinavmehta.confx.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class ConfigItemUpdatedEvent extends ApplicationEvent {
+    private final Long projectId;
+    private final Long configItemId;
+    private final String configKey;
+
+    public ConfigItemUpdatedEvent(Object source, Long projectId, Long configItemId, String configKey) {
+        super(source);
+        this.projectId = projectId;
+        this.configItemId = configItemId;
+        this.configKey = configKey;
+    }
+}
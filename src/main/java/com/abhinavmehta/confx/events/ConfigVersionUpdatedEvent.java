@@ -9,11 +9,13 @@ public class ConfigVersionUpdatedEvent extends ApplicationEvent {
     private final Long projectId;
     private final Long environmentId;
     private final ConfigVersionResponseDto updatedConfigVersionData;
+    private final long revision; // Environment revision produced by this change
 
-    public ConfigVersionUpdatedEvent(Object source, Long projectId, Long environmentId, ConfigVersionResponseDto updatedConfigVersionData) {
+    public ConfigVersionUpdatedEvent(Object source, Long projectId, Long environmentId, ConfigVersionResponseDto updatedConfigVersionData, long revision) {
         super(source);
         this.projectId = projectId;
         this.environmentId = environmentId;
         this.updatedConfigVersionData = updatedConfigVersionData;
+        this.revision = revision;
     }
 } 
\ No newline at end of file
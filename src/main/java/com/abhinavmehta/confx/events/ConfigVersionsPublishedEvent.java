@@ -0,0 +1,28 @@
+package com.abhinavmehta.confx.events;
+
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * Versions of many config items published together, possibly across environments, as one change.
+ */
+@Getter
+public class ConfigVersionsPublishedEvent extends ApplicationEvent {
+    private final Long projectId;
+    private final List<EnvironmentVersions> environments;
+
+    /**
+     * The versions published in one environment, in revision order: they produced revisions {@code fromRevision + 1}
+     * to {@code revision}. A relayed batch may hold fewer versions than revisions.
+     */
+    public record EnvironmentVersions(Long environmentId, long fromRevision, long revision, List<ConfigVersionResponseDto> versions) {}
+
+    public ConfigVersionsPublishedEvent(Object source, Long projectId, List<EnvironmentVersions> environments) {
+        super(source);
+        this.projectId = projectId;
+        this.environments = environments;
+    }
+}
@@ -0,0 +1,77 @@
+package com.abhinavmehta.confx.listeners;
+
+import com.abhinavmehta.confx.events.ConfigDependenciesChangedEvent;
+import com.abhinavmehta.confx.events.ConfigItemDeletedEvent;
+import com.abhinavmehta.confx.events.ConfigItemUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionsPublishedEvent;
+import com.abhinavmehta.confx.events.EnvironmentDeletedEvent;
+import com.abhinavmehta.confx.events.ProjectDeletedEvent;
+import com.abhinavmehta.confx.service.dependency.DependencyGraphService;
+import com.abhinavmehta.confx.service.dependency.DependencyIndexService;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.service.snapshot.BinarySnapshotService;
+import com.abhinavmehta.confx.service.snapshot.EvaluationSnapshotService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Drops in-memory read models once a change is committed. Running after commit (instead of inside the publishing
+ * transaction) guarantees that a rebuild triggered by the next read sees the new data.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationEventListener {
+
+    private final EvaluationSnapshotService evaluationSnapshotService;
+    private final DependencyGraphService dependencyGraphService;
+    private final DependencyIndexService dependencyIndexService;
+    private final EnvironmentRevisionService environmentRevisionService;
+    private final BinarySnapshotService binarySnapshotService;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigVersionUpdated(ConfigVersionUpdatedEvent event) {
+        evaluationSnapshotService.evictEnvironment(event.getProjectId(), event.getEnvironmentId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigVersionsPublished(ConfigVersionsPublishedEvent event) {
+        event.getEnvironments().forEach(published ->
+                evaluationSnapshotService.evictEnvironment(event.getProjectId(), published.environmentId()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigItemUpdated(ConfigItemUpdatedEvent event) {
+        evaluationSnapshotService.evictProject(event.getProjectId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigItemDeleted(ConfigItemDeletedEvent event) {
+        evaluationSnapshotService.evictProject(event.getProjectId());
+        dependencyGraphService.evictProject(event.getProjectId()); // Its dependencies were removed by cascade
+        dependencyIndexService.evictProject(event.getProjectId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigDependenciesChanged(ConfigDependenciesChangedEvent event) {
+        dependencyGraphService.evictProject(event.getProjectId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleEnvironmentDeleted(EnvironmentDeletedEvent event) {
+        evaluationSnapshotService.evictEnvironment(event.getProjectId(), event.getEnvironmentId());
+        environmentRevisionService.evictEnvironment(event.getProjectId(), event.getEnvironmentId());
+        binarySnapshotService.evictEnvironment(event.getProjectId(), event.getEnvironmentId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleProjectDeleted(ProjectDeletedEvent event) {
+        evaluationSnapshotService.evictProject(event.getProjectId());
+        dependencyGraphService.evictProject(event.getProjectId());
+        dependencyIndexService.evictProject(event.getProjectId());
+        environmentRevisionService.evictProject(event.getProjectId());
+        binarySnapshotService.evictProject(event.getProjectId());
+    }
+}
@@ -1,17 +1,22 @@
 package com.abhinavmehta.confx.listeners;
 
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
 import com.abhinavmehta.confx.dto.sse.ConfigUpdateSseDto;
 import com.abhinavmehta.confx.events.ConfigItemDeletedEvent;
 import com.abhinavmehta.confx.events.ConfigVersionUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionsPublishedEvent;
 import com.abhinavmehta.confx.events.EnvironmentDeletedEvent;
 import com.abhinavmehta.confx.events.ProjectDeletedEvent;
+import com.abhinavmehta.confx.service.ConfigDependencyService;
 import com.abhinavmehta.confx.service.SseService;
+import com.abhinavmehta.confx.service.sse.SseUpdateCoalescer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -20,45 +25,50 @@ import java.util.Map;
 public class ConfigUpdateEventListener {
 
     private final SseService sseService;
+    private final SseUpdateCoalescer updateCoalescer;
+    private final ConfigDependencyService configDependencyService;
 
-    @Async
-    @EventListener
+    // Events arrive from the outbox relay (or the cluster bus) after commit, in commit order per environment. They
+    // are handled on that thread, which keeps the order; the SSE writes themselves happen on the fan-out pool.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleConfigVersionUpdated(ConfigVersionUpdatedEvent event) {
         log.info("Event: ConfigVersionUpdated for Project: {}, Env: {}, ConfigKey: {}", 
                  event.getProjectId(), event.getEnvironmentId(), event.getUpdatedConfigVersionData().getConfigItemKey());
-        ConfigUpdateSseDto sseDto = new ConfigUpdateSseDto(
-            ConfigUpdateSseDto.TYPE_CONFIG_VERSION_UPDATED,
-            event.getUpdatedConfigVersionData()
-        );
-        sseService.sendUpdateToClients(event.getProjectId(), event.getEnvironmentId(), sseDto);
+        // Clients caching configs that depend on this one must re-evaluate them too.
+        List<String> dependentKeys = configDependencyService.getTransitiveDependentKeys(
+                event.getProjectId(), event.getUpdatedConfigVersionData().getConfigItemId());
+        // Sent right away, or batched with other updates of the environment when coalescing is enabled.
+        updateCoalescer.publish(event.getProjectId(), event.getEnvironmentId(), event.getRevision(), event.getUpdatedConfigVersionData(), dependentKeys);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigVersionsPublished(ConfigVersionsPublishedEvent event) {
+        for (ConfigVersionsPublishedEvent.EnvironmentVersions published : event.getEnvironments()) {
+            log.info("Event: ConfigVersionsPublished for Project: {}, Env: {}, {} configs",
+                     event.getProjectId(), published.environmentId(), published.versions().size());
+            List<String> dependentKeys = configDependencyService.getTransitiveDependentKeys(event.getProjectId(),
+                    published.versions().stream().map(ConfigVersionResponseDto::getConfigItemId).toList());
+            // One event per environment for the whole release
+            updateCoalescer.publishAll(event.getProjectId(), published.environmentId(), published.fromRevision(),
+                    published.versions(), dependentKeys);
+        }
     }
 
-    @Async
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleConfigItemDeleted(ConfigItemDeletedEvent event) {
         log.info("Event: ConfigItemDeleted for Project: {}, ConfigKey: {}", 
                  event.getProjectId(), event.getConfigKey());
-        // This event needs to be broadcast to ALL environments within the project,
-        // as the config item is gone from all of them.
-        // SseService currently maps emitters by projectId:environmentId.
-        // We would need a way to get all environmentIds for a project or SseService to handle broadcasts to a project.
-        // For now, this will be a TODO or requires SseService enhancement.
-        // As a simplification for now, we assume client SDKs might re-fetch or handle this gracefully.
-        // A more robust approach: iterate environments of the project and send individual targeted messages.
-        // Or, SseService could have a method like sendToAllEnvironmentsInProject(projectId, payload).
-        
-        // Simplified payload for deletion:
+        // The config item is gone from every environment of the project, so all of them get the event.
         Map<String, Object> payload = Map.of("configItemId", event.getConfigItemId(), "configKey", event.getConfigKey());
         ConfigUpdateSseDto sseDto = new ConfigUpdateSseDto(
             ConfigUpdateSseDto.TYPE_CONFIG_ITEM_DELETED,
             payload
         );
-        // TODO: Enhance SseService to broadcast to all environments of event.getProjectId()
-        log.warn("TODO: Broadcasting ConfigItemDeletedEvent to all environments of project {} is not fully implemented in SseService yet.", event.getProjectId());
+        updateCoalescer.flushProject(event.getProjectId()); // Pending updates must not arrive after the deletion
+        sseService.sendUpdateToProject(event.getProjectId(), event.getEnvironmentRevisions(), List.of(event.getConfigKey()), sseDto);
     }
 
-    @Async
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleEnvironmentDeleted(EnvironmentDeletedEvent event) {
         log.info("Event: EnvironmentDeleted for Project: {}, Env: {}", 
                  event.getProjectId(), event.getEnvironmentId());
@@ -68,25 +78,22 @@ public class ConfigUpdateEventListener {
             ConfigUpdateSseDto.TYPE_ENVIRONMENT_DELETED,
             payload
         );
-        // Send to the specific environment (clients connected to it will be disconnected or should handle this)
-        sseService.sendUpdateToClients(event.getProjectId(), event.getEnvironmentId(), sseDto);
-        // Optionally, SseService could also clean up all emitters for this specific environment key upon receiving this.
+        // Clients connected to it get this last event, then their connections are closed.
+        updateCoalescer.discardEnvironment(event.getProjectId(), event.getEnvironmentId());
+        sseService.closeEnvironment(event.getProjectId(), event.getEnvironmentId(), sseDto);
     }
 
-    @Async
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleProjectDeleted(ProjectDeletedEvent event) {
         log.info("Event: ProjectDeleted for Project: {}", event.getProjectId());
-        // This event means all configs & environments under this project are gone.
-        // Similar to ConfigItemDeleted, this should ideally be broadcast to all clients
-        // connected to any environment of this project.
+        // This event means all configs & environments under this project are gone, so clients
+        // connected to any environment of this project get it and are disconnected.
         Map<String, Object> payload = Map.of("projectId", event.getProjectId());
          ConfigUpdateSseDto sseDto = new ConfigUpdateSseDto(
             ConfigUpdateSseDto.TYPE_PROJECT_DELETED,
             payload
         );
-        // TODO: Enhance SseService to broadcast to all environments of event.getProjectId()
-        // and then remove all emitters associated with this project.
-        log.warn("TODO: Broadcasting ProjectDeletedEvent and cleaning up all associated emitters for project {} is not fully implemented in SseService yet.", event.getProjectId());
+        updateCoalescer.discardProject(event.getProjectId());
+        sseService.closeProject(event.getProjectId(), sseDto);
     }
-} 
\ No newline at end of file
+}
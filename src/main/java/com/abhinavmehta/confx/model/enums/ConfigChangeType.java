@@ -0,0 +1,8 @@
+package com.abhinavmehta.confx.model.enums;
+
+public enum ConfigChangeType {
+    VERSION_PUBLISHED, // New active version, including rollbacks
+    CONFIG_ITEM_UPDATED, // Item metadata (e.g. data type) changed, affects every environment
+    CONFIG_ITEM_DELETED,
+    ENVIRONMENT_UPDATED // Environment metadata changed, affects every config of the environment
+}
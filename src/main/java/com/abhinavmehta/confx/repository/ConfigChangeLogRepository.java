@@ -0,0 +1,24 @@
+package com.abhinavmehta.confx.repository;
+
+import com.abhinavmehta.confx.entity.ConfigChangeLogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ConfigChangeLogRepository extends JpaRepository<ConfigChangeLogEntry, Long> {
+
+    @Query("SELECT e FROM ConfigChangeLogEntry e WHERE e.environmentId = :environmentId " +
+           "AND e.revision > :fromRevision AND e.revision <= :toRevision ORDER BY e.revision")
+    List<ConfigChangeLogEntry> findRevisionRange(@Param("environmentId") Long environmentId,
+                                                 @Param("fromRevision") Long fromRevision,
+                                                 @Param("toRevision") Long toRevision);
+
+    @Modifying
+    @Query("DELETE FROM ConfigChangeLogEntry e WHERE e.createdAt < :createdBefore")
+    int deleteByCreatedAtBefore(@Param("createdBefore") Long createdBefore);
+}
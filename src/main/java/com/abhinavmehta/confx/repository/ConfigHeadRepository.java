@@ -0,0 +1,9 @@
+package com.abhinavmehta.confx.repository;
+
+import com.abhinavmehta.confx.entity.ConfigHead;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConfigHeadRepository extends JpaRepository<ConfigHead, ConfigHead.Key> {
+}
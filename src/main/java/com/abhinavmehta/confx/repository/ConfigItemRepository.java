@@ -2,8 +2,11 @@ package com.abhinavmehta.confx.repository;
 
 import com.abhinavmehta.confx.entity.ConfigItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +15,8 @@ public interface ConfigItemRepository extends JpaRepository<ConfigItem, Long> {
     Optional<ConfigItem> findByProjectIdAndConfigKey(Long projectId, String configKey);
     List<ConfigItem> findByProjectId(Long projectId);
     Optional<ConfigItem> findByIdAndProjectId(Long configItemId, Long projectId);
+    List<ConfigItem> findByProjectIdAndIdIn(Long projectId, Collection<Long> configItemIds);
+
+    @Query("SELECT ci.configKey FROM ConfigItem ci WHERE ci.project.id = :projectId AND ci.id IN :configItemIds ORDER BY ci.configKey")
+    List<String> findConfigKeysByProjectIdAndIdIn(@Param("projectId") Long projectId, @Param("configItemIds") Collection<Long> configItemIds);
 } 
\ No newline at end of file
@@ -1,31 +1,55 @@
 package com.abhinavmehta.confx.repository;
 
 import com.abhinavmehta.confx.entity.ConfigVersion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ConfigVersionRepository extends JpaRepository<ConfigVersion, Long> {
 
-    Optional<ConfigVersion> findByConfigItemIdAndEnvironmentIdAndIsActiveTrue(Long configItemId, Long environmentId);
-
-    List<ConfigVersion> findByConfigItemIdAndEnvironmentIdOrderByVersionNumberDesc(Long configItemId, Long environmentId);
-
-    @Query("SELECT COALESCE(MAX(cv.versionNumber), 0) FROM ConfigVersion cv WHERE cv.configItem.id = :configItemId AND cv.environment.id = :environmentId")
-    Integer findMaxVersionNumberByConfigItemAndEnvironment(@Param("configItemId") Long configItemId, @Param("environmentId") Long environmentId);
+    // Keyset page of a config's history, newest first, read from idx_cv_item_env_version_num. Scalar rows rather than
+    // entities, so paging through a long history does not fill the persistence context.
+    @Query("SELECT cv.id AS id, cv.versionNumber AS versionNumber, cv.value AS value, cv.isActive AS active, " +
+           "cv.changeDescription AS changeDescription, cv.ruleSetHash AS ruleSetHash, cv.createdAt AS createdAt, cv.updatedAt AS updatedAt " +
+           "FROM ConfigVersion cv WHERE cv.configItem.id = :configItemId AND cv.environment.id = :environmentId " +
+           "AND cv.versionNumber < :beforeVersionNumber ORDER BY cv.versionNumber DESC")
+    List<VersionHistoryRow> findHistoryPage(@Param("configItemId") Long configItemId, @Param("environmentId") Long environmentId,
+                                            @Param("beforeVersionNumber") Integer beforeVersionNumber, Pageable pageable);
 
+    // By primary key: the versions to deactivate are the previous heads' active ones
     @Modifying
-    @Query("UPDATE ConfigVersion cv SET cv.isActive = false WHERE cv.configItem.id = :configItemId AND cv.environment.id = :environmentId AND cv.isActive = true")
-    void deactivateActiveVersions(@Param("configItemId") Long configItemId, @Param("environmentId") Long environmentId);
-    
+    @Query("UPDATE ConfigVersion cv SET cv.isActive = false WHERE cv.id IN :ids")
+    void deactivateVersions(@Param("ids") Collection<Long> ids);
+
     Optional<ConfigVersion> findByConfigItemIdAndEnvironmentIdAndVersionNumber(Long configItemId, Long environmentId, Integer versionNumber);
 
     List<ConfigVersion> findByEnvironmentIdAndIsActiveTrue(Long environmentId);
 
-} 
\ No newline at end of file
+    // Active versions of one project/environment with their config item and environment fetched in the same query.
+    @Query("SELECT cv FROM ConfigVersion cv JOIN FETCH cv.configItem ci JOIN FETCH cv.environment e " +
+           "WHERE e.id = :environmentId AND ci.project.id = :projectId AND cv.isActive = true")
+    List<ConfigVersion> findActiveByProjectIdAndEnvironmentId(@Param("projectId") Long projectId, @Param("environmentId") Long environmentId);
+
+    @Query("SELECT cv FROM ConfigVersion cv JOIN FETCH cv.configItem ci JOIN FETCH cv.environment e " +
+           "WHERE e.id = :environmentId AND ci.id IN :configItemIds AND cv.isActive = true")
+    List<ConfigVersion> findActiveByEnvironmentIdAndConfigItemIdIn(@Param("environmentId") Long environmentId, @Param("configItemIds") Collection<Long> configItemIds);
+
+    interface VersionHistoryRow {
+        Long getId();
+        Integer getVersionNumber();
+        String getValue();
+        Boolean getActive();
+        String getChangeDescription();
+        String getRuleSetHash();
+        Long getCreatedAt();
+        Long getUpdatedAt();
+    }
+}
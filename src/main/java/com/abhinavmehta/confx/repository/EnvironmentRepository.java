@@ -2,6 +2,9 @@ package com.abhinavmehta.confx.repository;
 
 import com.abhinavmehta.confx.entity.Environment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +15,24 @@ public interface EnvironmentRepository extends JpaRepository<Environment, Long>
     Optional<Environment> findByProjectIdAndName(Long projectId, String name);
     List<Environment> findByProjectId(Long projectId);
     Optional<Environment> findByIdAndProjectId(Long environmentId, Long projectId);
+
+    @Query("SELECT e.revision FROM Environment e WHERE e.id = :environmentId AND e.project.id = :projectId")
+    Optional<Long> findRevisionByIdAndProjectId(@Param("environmentId") Long environmentId, @Param("projectId") Long projectId);
+
+    // Scalar query, so it reads the database rather than possibly stale entities of the persistence context.
+    @Query("SELECT e.id AS environmentId, e.revision AS revision FROM Environment e WHERE e.project.id = :projectId")
+    List<EnvironmentRevision> findRevisionsByProjectId(@Param("projectId") Long projectId);
+
+    @Modifying
+    @Query("UPDATE Environment e SET e.revision = e.revision + :count WHERE e.id = :environmentId")
+    int incrementRevision(@Param("environmentId") Long environmentId, @Param("count") long count);
+
+    @Modifying
+    @Query("UPDATE Environment e SET e.revision = e.revision + 1 WHERE e.project.id = :projectId")
+    int incrementRevisionsByProjectId(@Param("projectId") Long projectId);
+
+    interface EnvironmentRevision {
+        Long getEnvironmentId();
+        Long getRevision();
+    }
 } 
\ No newline at end of file
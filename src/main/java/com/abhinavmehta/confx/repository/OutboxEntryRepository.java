@@ -0,0 +1,21 @@
+package com.abhinavmehta.confx.repository;
+
+import com.abhinavmehta.confx.entity.OutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEntryRepository extends JpaRepository<OutboxEntry, Long> {
+
+    @Query("SELECT e FROM OutboxEntry e ORDER BY e.id")
+    List<OutboxEntry> findOldest(Pageable pageable);
+
+    // Held until the surrounding transaction ends. False if another transaction, on any node, holds it.
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryTransactionLock(@Param("key") long key);
+}
@@ -2,6 +2,9 @@ package com.abhinavmehta.confx.repository;
 
 import com.abhinavmehta.confx.entity.Project;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,4 +12,19 @@ import java.util.Optional;
 @Repository
 public interface ProjectRepository extends JpaRepository<Project, Long> {
     Optional<Project> findByName(String name);
+
+    /**
+     * Locks the project's row until the end of the transaction, which serializes changes to its dependencies.
+     * @return The project's dependency version, read under the lock; empty if there is no such project.
+     */
+    @Query(value = "SELECT dependency_version FROM confx_schema.projects WHERE id = :projectId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockDependencies(@Param("projectId") Long projectId);
+
+    @Query(value = "SELECT dependency_version FROM confx_schema.projects WHERE id = :projectId", nativeQuery = true)
+    Optional<Long> findDependencyVersion(@Param("projectId") Long projectId);
+
+    // Called by every transaction changing the project's dependencies (or the data types they list). Not mapped on the entity, so never written from it.
+    @Modifying
+    @Query(value = "UPDATE confx_schema.projects SET dependency_version = dependency_version + 1 WHERE id = :projectId", nativeQuery = true)
+    int incrementDependencyVersion(@Param("projectId") Long projectId);
 } 
\ No newline at end of file
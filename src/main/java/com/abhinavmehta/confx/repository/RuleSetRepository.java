@@ -0,0 +1,32 @@
+package com.abhinavmehta.confx.repository;
+
+import com.abhinavmehta.confx.entity.RuleSet;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RuleSetRepository extends JpaRepository<RuleSet, String> {
+
+    /**
+     * Stores each rule set of a JSON array of rule sets, unless one with the same content is stored already, in a
+     * single statement. Hashing the canonical jsonb text in the database makes the hash independent of how the JSON
+     * was written (key order, whitespace, null fields).
+     * @return The hash of each rule set, in array order.
+     */
+    @Query(value = """
+            WITH rule_set AS (
+                SELECT e.rules, e.position, encode(sha256(convert_to(CAST(e.rules AS text), 'UTF8')), 'hex') AS hash
+                FROM jsonb_array_elements(jsonb_strip_nulls(CAST(:ruleSets AS jsonb))) WITH ORDINALITY AS e(rules, position)
+            ), stored AS (
+                INSERT INTO confx_schema.rule_sets (hash, rules)
+                SELECT DISTINCT hash, rules FROM rule_set
+                ON CONFLICT (hash) DO NOTHING
+            )
+            SELECT hash FROM rule_set ORDER BY position
+            """, nativeQuery = true)
+    List<String> store(@Param("ruleSets") String ruleSetsJson);
+}
@@ -1,21 +1,32 @@
 package com.abhinavmehta.confx.service;
 
+import com.abhinavmehta.confx.dto.BulkConfigDependencyRequestDto;
 import com.abhinavmehta.confx.dto.ConfigDependencyRequestDto;
 import com.abhinavmehta.confx.dto.ConfigDependencyResponseDto;
 import com.abhinavmehta.confx.entity.ConfigDependency;
 import com.abhinavmehta.confx.entity.ConfigItem;
+import com.abhinavmehta.confx.events.ConfigDependenciesChangedEvent;
 import com.abhinavmehta.confx.repository.ConfigDependencyRepository;
 import com.abhinavmehta.confx.repository.ConfigItemRepository;
 import com.abhinavmehta.confx.repository.ProjectRepository;
+import com.abhinavmehta.confx.service.dependency.DependencyGraph;
+import com.abhinavmehta.confx.service.dependency.DependencyGraphService;
+import com.abhinavmehta.confx.service.dependency.DependencyIndexService;
 import com.abhinavmehta.confx.service.helpers.ConfigValueValidator;
+import com.abhinavmehta.confx.service.outbox.ChangeOutbox;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,34 +37,29 @@ public class ConfigDependencyService {
     private final ConfigItemRepository configItemRepository;
     private final ProjectRepository projectRepository;
     private final ConfigValueValidator configValueValidator; // To validate prerequisiteExpectedValue against prerequisite's data type
+    private final DependencyIndexService dependencyIndexService;
+    private final DependencyGraphService dependencyGraphService;
+    private final ChangeOutbox changeOutbox;
 
     @Transactional
     public ConfigDependencyResponseDto addDependency(Long projectId, Long dependentConfigItemId, ConfigDependencyRequestDto requestDto) {
+        long dependencyVersion = lockProjectDependencies(projectId);
+
         ConfigItem dependentItem = configItemRepository.findByIdAndProjectId(dependentConfigItemId, projectId)
             .orElseThrow(() -> new EntityNotFoundException("Dependent ConfigItem not found with id: " + dependentConfigItemId + " in project: " + projectId));
 
         ConfigItem prerequisiteItem = configItemRepository.findByIdAndProjectId(requestDto.getPrerequisiteConfigItemId(), projectId)
             .orElseThrow(() -> new EntityNotFoundException("Prerequisite ConfigItem not found with id: " + requestDto.getPrerequisiteConfigItemId() + " in project: " + projectId));
 
-        if (dependentConfigItemId.equals(requestDto.getPrerequisiteConfigItemId())) {
-            throw new IllegalArgumentException("A ConfigItem cannot depend on itself.");
-        }
+        validateDependency(dependentItem, prerequisiteItem, requestDto.getPrerequisiteExpectedValue());
 
-        // Validate prerequisiteExpectedValue against the prerequisiteItem's dataType
-        if (!configValueValidator.isValid(requestDto.getPrerequisiteExpectedValue(), prerequisiteItem.getDataType())) {
-            throw new IllegalArgumentException(
-                String.format("Invalid prerequisiteExpectedValue ('%s') for prerequisite '%s'. Expected type: %s.",
-                              requestDto.getPrerequisiteExpectedValue(), prerequisiteItem.getConfigKey(), prerequisiteItem.getDataType()));
+        if (dependencyIndexService.hasDependency(projectId, dependentConfigItemId, prerequisiteItem.getId())) {
+            throw new IllegalArgumentException("Dependency already exists.");
         }
 
-        dependencyRepository.findByDependentConfigItemIdAndPrerequisiteConfigItemId(dependentConfigItemId, requestDto.getPrerequisiteConfigItemId())
-            .ifPresent(d -> {
-                throw new IllegalArgumentException("Dependency already exists.");
-            });
-
-        // Circular dependency check: If A -> B is being added, check if B already depends on A (directly or indirectly)
-        // This means checking if `dependentConfigItemId` is a prerequisite of `prerequisiteConfigItemId`
-        if (isCircularDependency(requestDto.getPrerequisiteConfigItemId(), dependentConfigItemId, new HashSet<>())) {
+        // Circular dependency check: If A -> B is being added, check if B already depends on A (directly or indirectly).
+        // Done incrementally against the project's in-memory index, which keeps the edge if the check passes.
+        if (!dependencyIndexService.tryAddDependency(projectId, dependentConfigItemId, prerequisiteItem.getId())) {
             throw new IllegalArgumentException("Adding this dependency would create a circular dependency.");
         }
 
@@ -65,32 +71,103 @@ public class ConfigDependencyService {
                 .build();
 
         dependency = dependencyRepository.save(dependency);
+        recordDependencyChange(projectId, dependencyVersion);
         return mapToDto(dependency);
     }
 
     /**
-     * Checks for circular dependencies using DFS.
-     * Returns true if adding a dependency from potentialDependent to potentialPrerequisite would create a cycle.
-     * This means checking if potentialPrerequisite already has potentialDependent as one of its prerequisites (directly or indirectly).
+     * Adds many dependencies at once. The whole batch is validated in one pass (config items are loaded with a single
+     * query, cycles are checked incrementally, including against earlier entries of the same batch) and is either
+     * stored completely or not at all.
      */
-    private boolean isCircularDependency(Long currentItemId, Long targetItemId, Set<Long> visited) {
-        if (currentItemId.equals(targetItemId)) {
-            return true; // Found the target, cycle detected
-        }
-        if (visited.contains(currentItemId)) {
-            return false; // Already visited this path, no cycle found through here
+    @Transactional
+    public List<ConfigDependencyResponseDto> addDependencies(Long projectId, BulkConfigDependencyRequestDto requestDto) {
+        long dependencyVersion = lockProjectDependencies(projectId);
+        List<BulkConfigDependencyRequestDto.Entry> entries = requestDto.getDependencies();
+
+        Set<Long> itemIds = new HashSet<>();
+        for (BulkConfigDependencyRequestDto.Entry entry : entries) {
+            itemIds.add(entry.getDependentConfigItemId());
+            itemIds.add(entry.getPrerequisiteConfigItemId());
         }
-        visited.add(currentItemId);
+        Map<Long, ConfigItem> itemsById = configItemRepository.findByProjectIdAndIdIn(projectId, itemIds).stream()
+            .collect(Collectors.toMap(ConfigItem::getId, Function.identity()));
+
+        List<ConfigDependency> dependencies = new ArrayList<>(entries.size());
+        List<long[]> addedEdges = new ArrayList<>(entries.size());
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                BulkConfigDependencyRequestDto.Entry entry = entries.get(i);
+                ConfigItem dependentItem = itemsById.get(entry.getDependentConfigItemId());
+                ConfigItem prerequisiteItem = itemsById.get(entry.getPrerequisiteConfigItemId());
+                if (dependentItem == null) {
+                    throw new EntityNotFoundException("Entry " + i + ": Dependent ConfigItem not found with id: " + entry.getDependentConfigItemId() + " in project: " + projectId);
+                }
+                if (prerequisiteItem == null) {
+                    throw new EntityNotFoundException("Entry " + i + ": Prerequisite ConfigItem not found with id: " + entry.getPrerequisiteConfigItemId() + " in project: " + projectId);
+                }
+                try {
+                    validateDependency(dependentItem, prerequisiteItem, entry.getPrerequisiteExpectedValue());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Entry " + i + ": " + e.getMessage());
+                }
+                if (dependencyIndexService.hasDependency(projectId, dependentItem.getId(), prerequisiteItem.getId())) {
+                    throw new IllegalArgumentException("Entry " + i + ": Dependency already exists.");
+                }
+                if (!dependencyIndexService.tryAddDependency(projectId, dependentItem.getId(), prerequisiteItem.getId())) {
+                    throw new IllegalArgumentException("Entry " + i + ": Adding this dependency would create a circular dependency.");
+                }
+                addedEdges.add(new long[]{dependentItem.getId(), prerequisiteItem.getId()});
 
-        List<ConfigDependency> prerequisites = dependencyRepository.findByDependentConfigItemId(currentItemId);
-        for (ConfigDependency prereq : prerequisites) {
-            if (isCircularDependency(prereq.getPrerequisiteConfigItem().getId(), targetItemId, new HashSet<>(visited))) {
-                return true;
+                dependencies.add(ConfigDependency.builder()
+                        .dependentConfigItem(dependentItem)
+                        .prerequisiteConfigItem(prerequisiteItem)
+                        .prerequisiteExpectedValue(entry.getPrerequisiteExpectedValue())
+                        .description(entry.getDescription())
+                        .build());
             }
+        } catch (RuntimeException e) {
+            // Take this batch's edges out now rather than at rollback, so they cannot fail validation of other requests meanwhile
+            addedEdges.forEach(edge -> dependencyIndexService.discardDependency(projectId, edge[0], edge[1]));
+            throw e;
+        }
+
+        List<ConfigDependency> saved = dependencyRepository.saveAll(dependencies);
+        recordDependencyChange(projectId, dependencyVersion);
+        return saved.stream()
+                .map(this::mapToDto)
+                .collect(Collectors.toList());
+    }
+
+    private void validateDependency(ConfigItem dependentItem, ConfigItem prerequisiteItem, String prerequisiteExpectedValue) {
+        if (dependentItem.getId().equals(prerequisiteItem.getId())) {
+            throw new IllegalArgumentException("A ConfigItem cannot depend on itself.");
         }
-        return false;
+
+        // Validate prerequisiteExpectedValue against the prerequisiteItem's dataType
+        if (!configValueValidator.isValid(prerequisiteExpectedValue, prerequisiteItem.getDataType())) {
+            throw new IllegalArgumentException(
+                String.format("Invalid prerequisiteExpectedValue ('%s') for prerequisite '%s'. Expected type: %s.",
+                              prerequisiteExpectedValue, prerequisiteItem.getConfigKey(), prerequisiteItem.getDataType()));
+        }
+    }
+
+    // Serializes dependency writes per project (row lock held until commit), so cycle checks never race each other,
+    // and brings this node's index up to the edges committed so far, by any node.
+    // Returns the project's dependency version.
+    private long lockProjectDependencies(Long projectId) {
+        long dependencyVersion = projectRepository.lockDependencies(projectId)
+            .orElseThrow(() -> new EntityNotFoundException("Project not found with id: " + projectId));
+        dependencyIndexService.synchronize(projectId, dependencyVersion);
+        return dependencyVersion;
     }
 
+    // To be called once the project's dependencies were changed, under the lock taken at the given version.
+    private void recordDependencyChange(Long projectId, long dependencyVersion) {
+        projectRepository.incrementDependencyVersion(projectId);
+        dependencyIndexService.advanceVersion(projectId, dependencyVersion + 1);
+        changeOutbox.append(new ConfigDependenciesChangedEvent(this, projectId));
+    }
 
     @Transactional(readOnly = true)
     public List<ConfigDependencyResponseDto> getDependenciesForConfigItem(Long configItemId) {
@@ -106,14 +183,59 @@ public class ConfigDependencyService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Keys of the config items whose evaluation depends, directly or transitively, on the given one. Walks the
+     * project's cached dependency graph, so only the key lookup touches the database, and only if there are any.
+     */
+    @Transactional(readOnly = true)
+    public List<String> getTransitiveDependentKeys(Long projectId, Long configItemId) {
+        return getTransitiveDependentKeys(projectId, List.of(configItemId));
+    }
+
+    /**
+     * Keys of the config items depending, directly or transitively, on any of the given ones.
+     */
+    @Transactional(readOnly = true)
+    public List<String> getTransitiveDependentKeys(Long projectId, Collection<Long> configItemIds) {
+        DependencyGraph graph = dependencyGraphService.getGraph(projectId);
+        BitSet dependents = new BitSet();
+        for (Long configItemId : configItemIds) {
+            int rank = graph.rankOf(configItemId);
+            if (rank >= 0 && !dependents.get(rank)) { // A marked item's dependents are marked already
+                dependents.or(graph.dependentClosure(rank));
+            }
+        }
+        if (dependents.isEmpty()) {
+            return List.of();
+        }
+        List<Long> dependentIds = new ArrayList<>(dependents.cardinality());
+        for (int dependent = dependents.nextSetBit(0); dependent >= 0; dependent = dependents.nextSetBit(dependent + 1)) {
+            dependentIds.add(graph.itemIdAt(dependent));
+        }
+        return configItemRepository.findConfigKeysByProjectIdAndIdIn(projectId, dependentIds);
+    }
+
     @Transactional
     public void removeDependency(Long dependencyId) {
-        if (!dependencyRepository.existsById(dependencyId)) {
-            throw new EntityNotFoundException("Dependency not found with id: " + dependencyId);
-        }
-        dependencyRepository.deleteById(dependencyId);
+        ConfigDependency dependency = dependencyRepository.findById(dependencyId)
+            .orElseThrow(() -> new EntityNotFoundException("Dependency not found with id: " + dependencyId));
+        Long projectId = dependency.getDependentConfigItem().getProject().getId();
+        long dependencyVersion = lockProjectDependencies(projectId);
+        dependencyRepository.delete(dependency);
+        dependencyIndexService.removeDependency(projectId, dependency.getDependentConfigItem().getId(), dependency.getPrerequisiteConfigItem().getId());
+        recordDependencyChange(projectId, dependencyVersion);
     }
     
+    /**
+     * @return The version of the project's dependency listing, which changes whenever {@link #getAllDependenciesForProject}
+     * would return something else.
+     */
+    @Transactional(readOnly = true)
+    public long getDependencyVersion(Long projectId) {
+        return projectRepository.findDependencyVersion(projectId)
+            .orElseThrow(() -> new EntityNotFoundException("Project not found with id: " + projectId));
+    }
+
     @Transactional(readOnly = true)
     public List<ConfigDependencyResponseDto> getAllDependenciesForProject(Long projectId) {
         projectRepository.findById(projectId)
@@ -1,16 +1,13 @@
 package com.abhinavmehta.confx.service;
 
-import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
 import com.abhinavmehta.confx.dto.EvaluatedConfigResponseDto;
 import com.abhinavmehta.confx.dto.EvaluationContext;
 import com.abhinavmehta.confx.dto.RuleDto;
-import com.abhinavmehta.confx.entity.ConfigDependency;
-import com.abhinavmehta.confx.entity.ConfigItem;
-import com.abhinavmehta.confx.entity.Rule;
 import com.abhinavmehta.confx.model.enums.ConfigDataType;
-import com.abhinavmehta.confx.repository.ConfigDependencyRepository;
-import com.abhinavmehta.confx.repository.ConfigItemRepository;
-import com.abhinavmehta.confx.repository.EnvironmentRepository;
+import com.abhinavmehta.confx.service.dependency.DependencyGraph;
+import com.abhinavmehta.confx.service.dependency.DependencyGraphService;
+import com.abhinavmehta.confx.service.snapshot.EvaluationSnapshot;
+import com.abhinavmehta.confx.service.snapshot.EvaluationSnapshotService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,146 +15,265 @@ import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ConfigEvaluationService {
 
-    private final ConfigVersionService configVersionService;
-    private final RuleService ruleService; 
+    private final EvaluationSnapshotService evaluationSnapshotService;
+    private final DependencyGraphService dependencyGraphService;
     private final RuleEvaluationService ruleEvaluationEngine;
-    private final ConfigItemRepository configItemRepository;
-    private final EnvironmentRepository environmentRepository;
-    private final ConfigDependencyRepository configDependencyRepository;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // Public entry point
-    @Transactional(readOnly = true)
+    // Public entry point. Reads only from the in-memory snapshot and dependency graph, so no transaction (and no
+    // pooled connection) is needed unless one of them has to be (re)built.
     public EvaluatedConfigResponseDto evaluateConfig(Long projectId, Long environmentId, String configKey, EvaluationContext evalContext) {
-        return evaluateConfigInternal(projectId, environmentId, configKey, evalContext, new HashSet<>());
+        EvaluationSnapshot snapshot = evaluationSnapshotService.getSnapshot(projectId, environmentId);
+        DependencyGraph graph = dependencyGraphService.getGraph(projectId);
+        return evaluateConfigInternal(snapshot, graph, configKey, evalContext, new EvaluationState());
     }
 
-    // Internal recursive method with cycle detection stack
+    /**
+     * Evaluates many configs of one project/environment against a single context. Every config, prerequisites
+     * included, is evaluated at most once per call and the result is shared by all of its dependents.
+     * <p>
+     * A config that cannot be evaluated (unknown key, no active version, a prerequisite chain that cannot be
+     * evaluated, or any other failure) does not fail the call: its entry has the {@code EVALUATION_ERROR} source and the reason in
+     * {@code error}, whether it was asked for by key or not.
+     * @param configKeys Keys to evaluate. If null or empty, every config with an active version in the environment
+     *                   is evaluated.
+     * @return Results keyed by config key, in request order (or key order when evaluating everything).
+     */
+    public Map<String, EvaluatedConfigResponseDto> evaluateConfigs(Long projectId, Long environmentId, List<String> configKeys, EvaluationContext evalContext) {
+        EvaluationSnapshot snapshot = evaluationSnapshotService.getSnapshot(projectId, environmentId);
+        DependencyGraph graph = dependencyGraphService.getGraph(projectId);
+        EvaluationState state = new EvaluationState();
+
+        List<String> keys = configKeys;
+        if (keys == null || keys.isEmpty()) {
+            keys = new ArrayList<>();
+            for (Map.Entry<String, EvaluationSnapshot.Item> entry : snapshot.getItemsByKey().entrySet()) {
+                if (entry.getValue().activeVersion() != null) {
+                    keys.add(entry.getKey());
+                }
+            }
+            keys.sort(null);
+        }
+
+        Map<String, EvaluatedConfigResponseDto> results = new LinkedHashMap<>();
+        for (String configKey : keys) {
+            try {
+                results.put(configKey, evaluateConfigInternal(snapshot, graph, configKey, evalContext, state));
+            } catch (RuntimeException e) {
+                // Whatever the failure, it only settles this key: the single-key endpoint would answer it with an error too.
+                if (e instanceof EntityNotFoundException || e instanceof IllegalArgumentException) {
+                    log.debug("Config '{}' could not be evaluated in bulk evaluation for project {}, environment {}: {}", configKey, projectId, environmentId, e.getMessage());
+                } else {
+                    log.warn("Config '{}' failed in bulk evaluation for project {}, environment {}", configKey, projectId, environmentId, e);
+                }
+                EvaluationSnapshot.Item item = snapshot.getItem(configKey);
+                results.put(configKey, EvaluatedConfigResponseDto.builder()
+                    .configKey(configKey)
+                    .dataType(item != null ? item.dataType() : null)
+                    .evaluationSource("EVALUATION_ERROR")
+                    .error(e.getMessage())
+                    .build());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates the config and, as far as needed, its transitive prerequisites, iteratively: a depth-first walk
+     * with an explicit stack goes through each config's prerequisites in order and stops at the first one that is
+     * not met, so (like a recursive evaluation) prerequisites behind it are never evaluated. Work and memory are
+     * proportional to the prerequisite edges actually followed, not to the size of the project's graph. No cycle
+     * detection is needed here: configs on a cycle are flagged when the graph is built and never descended into.
+     */
     private EvaluatedConfigResponseDto evaluateConfigInternal(
-            Long projectId, Long environmentId, String configKey,
-            EvaluationContext evalContext, Set<String> evaluationStack) {
-
-        if (evaluationStack.contains(configKey)) {
-            log.warn("Cyclic dependency detected during evaluation for configKey: {}. Stack: {}", configKey, evaluationStack);
-            ConfigItem cyclicItem = configItemRepository.findByProjectIdAndConfigKey(projectId, configKey)
-                .orElseThrow(() -> new EntityNotFoundException("ConfigItem not found during cyclic check: " + configKey)); // Should not happen
-            Object offValue = cyclicItem.getDataType() == ConfigDataType.BOOLEAN ? false : null;
-            return EvaluatedConfigResponseDto.builder()
-                .configKey(configKey)
-                .value(offValue)
-                .dataType(cyclicItem.getDataType())
-                .evaluationSource("CYCLIC_DEPENDENCY_ERROR")
-                .build();
+            EvaluationSnapshot snapshot, DependencyGraph graph, String configKey,
+            EvaluationContext evalContext, EvaluationState state) {
+
+        EvaluationSnapshot.Item configItem = snapshot.getItem(configKey);
+        if (configItem == null) {
+            throw new EntityNotFoundException(String.format("ConfigItem with key '%s' not found in project %d", configKey, snapshot.getProjectId()));
         }
-        evaluationStack.add(configKey);
-
-        ConfigItem configItem = configItemRepository.findByProjectIdAndConfigKey(projectId, configKey)
-            .orElseThrow(() -> {
-                evaluationStack.remove(configKey);
-                return new EntityNotFoundException(String.format("ConfigItem with key '%s' not found in project %d", configKey, projectId));
-            });
-
-        environmentRepository.findByIdAndProjectId(environmentId, projectId)
-            .orElseThrow(() -> {
-                evaluationStack.remove(configKey);
-                return new EntityNotFoundException(String.format("Environment with id %d not found in project %d", environmentId, projectId));
-            });
-
-        // --- START DEPENDENCY CHECK ---        
-        List<ConfigDependency> dependencies = configDependencyRepository.findByDependentConfigItemId(configItem.getId());
-        if (dependencies != null && !dependencies.isEmpty()) {
-            for (ConfigDependency dependency : dependencies) {
-                ConfigItem prerequisiteItem = dependency.getPrerequisiteConfigItem();
-                EvaluatedConfigResponseDto prerequisiteResult = this.evaluateConfigInternal(
-                    projectId, environmentId, prerequisiteItem.getConfigKey(),
-                    evalContext, new HashSet<>(evaluationStack) // Pass copy of stack for parallel branches
-                );
-
-                boolean prerequisiteMet = compareEvaluatedValue(
-                    prerequisiteResult.getValue(),
-                    dependency.getPrerequisiteExpectedValue(),
-                    prerequisiteItem.getDataType()
-                );
-
-                if (!prerequisiteMet) {
-                    log.info("Prerequisite not met for config '{}' (project {}): Prerequisite '{}' (expected '{}', got '{}').",
-                             configKey, projectId, prerequisiteItem.getConfigKey(), 
-                             dependency.getPrerequisiteExpectedValue(), prerequisiteResult.getValue());
-                    
-                    Object offValue = configItem.getDataType() == ConfigDataType.BOOLEAN ? false : null;
-                    ConfigVersionResponseDto activeVersionForInfo = safeGetActiveVersionInfo(projectId, environmentId, configItem.getId());
-
-                    evaluationStack.remove(configKey);
-                    return EvaluatedConfigResponseDto.builder()
-                        .configKey(configKey)
-                        .value(offValue)
-                        .dataType(configItem.getDataType())
-                        .versionId(activeVersionForInfo != null ? activeVersionForInfo.getId() : null)
-                        .versionNumber(activeVersionForInfo != null ? activeVersionForInfo.getVersionNumber() : null)
-                        .evaluationSource("PREREQUISITE_NOT_MET")
-                        .build();
+        if (state.isEvaluated(configItem.id())) {
+            return state.resultOf(configItem.id());
+        }
+
+        int rank = graph.rankOf(configItem.id());
+        if (rank < 0) { // No prerequisites, nothing depends on it either
+            evaluate(state, configItem.id(), () -> evaluateOwnValue(snapshot, configItem, evalContext));
+            return state.resultOf(configItem.id());
+        }
+
+        // Walk stack: the ranks being evaluated, and per rank the index of the prerequisite to check next
+        int[] ranks = new int[8];
+        int[] nextPrerequisite = new int[8];
+        int depth = 0;
+        ranks[depth] = rank;
+        nextPrerequisite[depth++] = 0;
+        while (depth > 0) {
+            int current = ranks[depth - 1];
+            long itemId = graph.itemIdAt(current);
+            int[] prerequisiteRanks = graph.prerequisiteRanksAt(current);
+            int i = nextPrerequisite[depth - 1];
+
+            if (state.isEvaluated(itemId)) {
+                depth--;
+            } else if (graph.isCyclic(current)) {
+                evaluate(state, itemId, () -> cyclicResult(snapshot, itemId));
+                depth--;
+            } else if (i < prerequisiteRanks.length && !state.isEvaluated(graph.itemIdAt(prerequisiteRanks[i]))) {
+                if (depth == ranks.length) {
+                    ranks = Arrays.copyOf(ranks, depth * 2);
+                    nextPrerequisite = Arrays.copyOf(nextPrerequisite, depth * 2);
+                }
+                ranks[depth] = prerequisiteRanks[i];
+                nextPrerequisite[depth++] = 0; // Back to this config once the prerequisite is evaluated
+            } else if (i < prerequisiteRanks.length) {
+                // The prerequisite is evaluated: go on with the next one if it is met, else this config is off
+                evaluate(state, itemId, () -> checkPrerequisite(snapshot, graph, current, i, state));
+                if (state.isEvaluated(itemId)) {
+                    depth--;
+                } else {
+                    nextPrerequisite[depth - 1]++;
                 }
+            } else {
+                EvaluationSnapshot.Item item = requireItem(snapshot, itemId);
+                evaluate(state, itemId, () -> evaluateOwnValue(snapshot, item, evalContext));
+                depth--;
+            }
+        }
+        return state.resultOf(configItem.id());
+    }
+
+    // Runs one evaluation step of a config; a non-null result (or a failure) settles the config.
+    private static void evaluate(EvaluationState state, long itemId, Supplier<EvaluatedConfigResponseDto> step) {
+        try {
+            EvaluatedConfigResponseDto result = step.get();
+            if (result != null) {
+                state.results.put(itemId, result);
             }
+        } catch (RuntimeException e) {
+            // Kept rather than thrown: it only matters to the configs that actually reach this one.
+            state.failures.put(itemId, e);
         }
-        // --- END DEPENDENCY CHECK ---
+    }
+
+    private EvaluationSnapshot.Item requireItem(EvaluationSnapshot snapshot, long itemId) {
+        EvaluationSnapshot.Item configItem = snapshot.getItem(itemId);
+        if (configItem == null) {
+            throw new EntityNotFoundException(String.format("ConfigItem with id %d not found in project %d", itemId, snapshot.getProjectId()));
+        }
+        return configItem;
+    }
+
+    private EvaluatedConfigResponseDto cyclicResult(EvaluationSnapshot snapshot, long itemId) {
+        EvaluationSnapshot.Item configItem = requireItem(snapshot, itemId);
+        log.warn("Cyclic dependency detected during evaluation for configKey: {} (project {}).", configItem.configKey(), snapshot.getProjectId());
+        Object offValue = configItem.dataType() == ConfigDataType.BOOLEAN ? false : null;
+        return EvaluatedConfigResponseDto.builder()
+            .configKey(configItem.configKey())
+            .value(offValue)
+            .dataType(configItem.dataType())
+            .evaluationSource("CYCLIC_DEPENDENCY_ERROR")
+            .build();
+    }
+
+    /**
+     * Checks the {@code index}-th prerequisite of a config, which must already be evaluated. A failed prerequisite
+     * fails the config.
+     * @return The config's "off" result if the prerequisite is not met, null if it is.
+     */
+    private EvaluatedConfigResponseDto checkPrerequisite(EvaluationSnapshot snapshot, DependencyGraph graph, int rank, int index,
+                                                         EvaluationState state) {
+        EvaluationSnapshot.Item configItem = requireItem(snapshot, graph.itemIdAt(rank));
+        long prerequisiteId = graph.itemIdAt(graph.prerequisiteRanksAt(rank)[index]);
+        String expectedValue = graph.expectedValuesAt(rank)[index];
+        EvaluatedConfigResponseDto prerequisiteResult = state.resultOf(prerequisiteId);
+        EvaluationSnapshot.Item prerequisiteItem = snapshot.getItem(prerequisiteId);
+
+        if (compareEvaluatedValue(prerequisiteResult.getValue(), expectedValue, prerequisiteItem.dataType())) {
+            return null;
+        }
+        log.info("Prerequisite not met for config '{}' (project {}): Prerequisite '{}' (expected '{}', got '{}').",
+                 configItem.configKey(), snapshot.getProjectId(), prerequisiteItem.configKey(),
+                 expectedValue, prerequisiteResult.getValue());
 
-        ConfigVersionResponseDto activeVersionDto = configVersionService.getActiveConfigVersion(projectId, environmentId, configItem.getId());
-        List<RuleDto> ruleDtos = activeVersionDto.getRules();
-        List<Rule> rules = ruleDtos.stream().map(dto -> Rule.builder()
-                                                    .id(dto.getId())
-                                                    .conditionExpression(dto.getConditionExpression())
-                                                    .valueToServe(dto.getValueToServe())
-                                                    .priority(dto.getPriority())
-                                                    .description(dto.getDescription())
-                                                    .build())
-                                     .collect(Collectors.toList());
+        Object offValue = configItem.dataType() == ConfigDataType.BOOLEAN ? false : null;
+        // If a config is off due to prerequisite, we still report its defined version when there is one.
+        EvaluationSnapshot.ActiveVersion activeVersionForInfo = configItem.activeVersion();
+
+        return EvaluatedConfigResponseDto.builder()
+            .configKey(configItem.configKey())
+            .value(offValue)
+            .dataType(configItem.dataType())
+            .versionId(activeVersionForInfo != null ? activeVersionForInfo.id() : null)
+            .versionNumber(activeVersionForInfo != null ? activeVersionForInfo.versionNumber() : null)
+            .evaluationSource("PREREQUISITE_NOT_MET")
+            .build();
+    }
+
+    // Rules and default value of the item's active version, once its prerequisites are known to be met.
+    private EvaluatedConfigResponseDto evaluateOwnValue(EvaluationSnapshot snapshot, EvaluationSnapshot.Item configItem, EvaluationContext evalContext) {
+        EvaluationSnapshot.ActiveVersion activeVersion = configItem.activeVersion();
+        if (activeVersion == null) {
+            throw new EntityNotFoundException("No active configuration found for item " + configItem.id() + " in environment " + snapshot.getEnvironmentId());
+        }
 
         String resolvedValueString = null;
-        Long matchedRuleId = null; // TODO: Enhance RuleEvaluationService to return matched rule ID
+        Long matchedRuleId = null;
         String evaluationSource = "DEFAULT_VALUE";
 
-        String ruleMatchedValue = ruleEvaluationEngine.evaluateRules(rules, evalContext);
+        RuleDto matchedRule = ruleEvaluationEngine.findMatchingRule(activeVersion.rules(), evalContext);
 
-        if (ruleMatchedValue != null) {
-            resolvedValueString = ruleMatchedValue;
+        if (matchedRule != null) {
+            resolvedValueString = matchedRule.getValueToServe();
+            matchedRuleId = matchedRule.getId();
             evaluationSource = "RULE_MATCH";
         } else {
-            resolvedValueString = activeVersionDto.getValue();
+            resolvedValueString = activeVersion.value();
         }
 
-        Object typedValue = convertValueToDataType(resolvedValueString, configItem.getDataType());
-        evaluationStack.remove(configKey);
+        Object typedValue = convertValueToDataType(resolvedValueString, configItem.dataType());
 
         return EvaluatedConfigResponseDto.builder()
-                .configKey(configKey)
+                .configKey(configItem.configKey())
                 .value(typedValue)
-                .dataType(configItem.getDataType())
-                .versionId(activeVersionDto.getId())
-                .versionNumber(activeVersionDto.getVersionNumber())
+                .dataType(configItem.dataType())
+                .versionId(activeVersion.id())
+                .versionNumber(activeVersion.versionNumber())
                 .matchedRuleId(matchedRuleId)
                 .evaluationSource(evaluationSource)
                 .build();
     }
-    
-    // Helper to safely get version info, e.g., if a config is off due to prerequisite, we might still want to log its defined version.
-    private ConfigVersionResponseDto safeGetActiveVersionInfo(Long projectId, Long environmentId, Long configItemId) {
-        try {
-            return configVersionService.getActiveConfigVersion(projectId, environmentId, configItemId);
-        } catch (EntityNotFoundException e) {
-            log.warn("Could not retrieve active version info for {}/{}/{} during prerequisite failure logging: {}", projectId, environmentId, configItemId, e.getMessage());
-            return null;
+
+    // Per-call memo of evaluated configs (by item id). Failures are remembered as well and rethrown to whoever asks.
+    private static class EvaluationState {
+        private final Map<Long, EvaluatedConfigResponseDto> results = new HashMap<>();
+        private final Map<Long, RuntimeException> failures = new HashMap<>();
+
+        boolean isEvaluated(Long itemId) {
+            return results.containsKey(itemId) || failures.containsKey(itemId);
+        }
+
+        EvaluatedConfigResponseDto resultOf(Long itemId) {
+            RuntimeException failure = failures.get(itemId);
+            if (failure != null) {
+                throw failure;
+            }
+            return results.get(itemId);
         }
     }
 
@@ -8,13 +8,16 @@ import com.abhinavmehta.confx.entity.Project;
 import com.abhinavmehta.confx.repository.ConfigItemRepository;
 import com.abhinavmehta.confx.repository.ProjectRepository;
 import com.abhinavmehta.confx.events.ConfigItemDeletedEvent;
+import com.abhinavmehta.confx.events.ConfigItemUpdatedEvent;
+import com.abhinavmehta.confx.service.revision.ConfigChangeLogService;
+import com.abhinavmehta.confx.service.outbox.ChangeOutbox;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,7 +26,8 @@ public class ConfigItemService {
 
     private final ConfigItemRepository configItemRepository;
     private final ProjectRepository projectRepository;
-    private final ApplicationEventPublisher eventPublisher;
+    private final ConfigChangeLogService changeLogService;
+    private final ChangeOutbox changeOutbox;
 
     @Transactional
     public ConfigItemResponseDto createConfigItem(Long projectId, CreateConfigItemRequestDto createDto) {
@@ -83,6 +87,9 @@ public class ConfigItemService {
         }
 
         // configKey is not updatable. If it were, unique constraint checks would be needed.
+        if (configItem.getDataType() != updateDto.getDataType()) {
+            projectRepository.incrementDependencyVersion(projectId); // Listed with the dependencies on the item
+        }
         configItem.setDataType(updateDto.getDataType());
         configItem.setDescription(updateDto.getDescription());
         configItem.setNotes(updateDto.getNotes());
@@ -90,6 +97,8 @@ public class ConfigItemService {
         // For now, allowing it. A more robust solution might restrict this or handle data conversion.
 
         configItem = configItemRepository.save(configItem);
+        changeLogService.recordConfigItemUpdated(projectId, configItemId, configItem.getConfigKey()); // Data type is part of every environment's active configs
+        changeOutbox.append(new ConfigItemUpdatedEvent(this, projectId, configItemId, configItem.getConfigKey()));
         return mapToDto(configItem);
     }
 
@@ -107,7 +116,9 @@ public class ConfigItemService {
         String configKey = configItem.getConfigKey();
         
         configItemRepository.deleteById(configItemId);
-        eventPublisher.publishEvent(new ConfigItemDeletedEvent(this, projectId, configItemId, configKey));
+        projectRepository.incrementDependencyVersion(projectId); // Its dependencies went with it (cascade)
+        Map<Long, Long> environmentRevisions = changeLogService.recordConfigItemDeleted(projectId, configItemId, configKey);
+        changeOutbox.append(new ConfigItemDeletedEvent(this, projectId, configItemId, configKey, environmentRevisions));
     }
 
     private ConfigItemResponseDto mapToDto(ConfigItem configItem) {
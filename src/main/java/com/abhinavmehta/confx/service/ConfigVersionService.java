@@ -1,39 +1,94 @@
 package com.abhinavmehta.confx.service;
 
+import com.abhinavmehta.confx.dto.BulkPublishConfigRequestDto;
+import com.abhinavmehta.confx.dto.ConfigChangesResponseDto;
+import com.abhinavmehta.confx.dto.ConfigVersionHistoryPageDto;
 import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
 import com.abhinavmehta.confx.dto.PublishConfigRequestDto;
 import com.abhinavmehta.confx.dto.RuleDto;
+import com.abhinavmehta.confx.entity.ConfigChangeLogEntry;
+import com.abhinavmehta.confx.entity.ConfigHead;
 import com.abhinavmehta.confx.entity.ConfigItem;
 import com.abhinavmehta.confx.entity.ConfigVersion;
 import com.abhinavmehta.confx.entity.Environment;
+import com.abhinavmehta.confx.repository.ConfigHeadRepository;
 import com.abhinavmehta.confx.repository.ConfigItemRepository;
 import com.abhinavmehta.confx.repository.ConfigVersionRepository;
 import com.abhinavmehta.confx.repository.EnvironmentRepository;
 import com.abhinavmehta.confx.service.helpers.ConfigValueValidator;
+import com.abhinavmehta.confx.service.revision.ConfigChangeLogService;
 import com.abhinavmehta.confx.service.RuleService;
 import com.abhinavmehta.confx.events.ConfigVersionUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionsPublishedEvent;
+import com.abhinavmehta.confx.model.enums.ConfigChangeType;
+import com.abhinavmehta.confx.service.outbox.ChangeOutbox;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.ApplicationEventPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class ConfigVersionService {
 
+    public static final int MAX_HISTORY_PAGE_SIZE = 1000;
+
     private final ConfigVersionRepository configVersionRepository;
     private final ConfigItemRepository configItemRepository;
     private final EnvironmentRepository environmentRepository;
     private final ConfigValueValidator configValueValidator;
     private final RuleService ruleService;
-    private final ApplicationEventPublisher eventPublisher;
+    private final ConfigChangeLogService changeLogService;
+    private final ChangeOutbox changeOutbox;
+    private final ConfigHeadRepository configHeadRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${confx.changes.max-revisions:1000}")
+    private long maxDeltaRevisions; // Clients further behind get a full snapshot
+
+    @Value("${confx.publish.max-attempts:5}")
+    private int maxPublishAttempts;
 
-    @Transactional
+    @Value("${confx.publish.retry-backoff-ms:20}")
+    private long publishRetryBackoffMs;
+
+    /**
+     * Publishes a new active version of a config in its own transaction. Concurrent publishes of the same config
+     * conflict on its head; the losing one is rolled back and retried on fresh data. Must not be called inside a
+     * transaction, whose rollback could not be retried.
+     */
     public ConfigVersionResponseDto publishNewVersion(Long projectId, Long environmentId, Long configItemId, PublishConfigRequestDto publishDto) {
+        return withPublishRetries(() -> doPublishNewVersion(projectId, environmentId, configItemId, publishDto));
+    }
+
+    private ConfigVersionResponseDto doPublishNewVersion(Long projectId, Long environmentId, Long configItemId, PublishConfigRequestDto publishDto) {
         ConfigItem configItem = configItemRepository.findByIdAndProjectId(configItemId, projectId)
                 .orElseThrow(() -> new EntityNotFoundException("ConfigItem not found with id: " + configItemId + " in project: " + projectId));
 
@@ -45,42 +100,182 @@ public class ConfigVersionService {
                                              ". Provided value: '" + publishDto.getValue() + "'");
         }
 
-        configVersionRepository.deactivateActiveVersions(configItemId, environmentId);
-        Integer nextVersionNumber = configVersionRepository.findMaxVersionNumberByConfigItemAndEnvironment(configItemId, environmentId) + 1;
+        ruleService.validateRules(publishDto.getRules(), configItem);
+
+        ConfigHead head = claimNextVersionNumbers(environmentId, List.of(configItemId)).get(configItemId);
+        if (head.getActiveVersionId() != null) {
+            configVersionRepository.deactivateVersions(List.of(head.getActiveVersionId()));
+        }
+
+        RuleService.StoredRuleSet ruleSet = ruleService.storeRuleSet(publishDto.getRules()); // Writes nothing if these rules are stored already
 
         ConfigVersion newVersion = ConfigVersion.builder()
                 .configItem(configItem)
                 .environment(environment)
                 .value(publishDto.getValue())
                 .isActive(true)
-                .versionNumber(nextVersionNumber)
+                .versionNumber(head.getLastVersionNumber())
                 .changeDescription(publishDto.getChangeDescription())
+                .ruleSetHash(ruleSet.hash())
                 .build();
         newVersion = configVersionRepository.save(newVersion); // Save version first to get its ID
+        head.setActiveVersionId(newVersion.getId());
 
-        // Set rules for the new version
-        if (publishDto.getRules() != null) {
-            ruleService.setRulesForConfigVersion(newVersion, publishDto.getRules(), configItem);
-        }
-        
-        ConfigVersionResponseDto responseDto = mapToDto(newVersion); // mapToDto now includes rules
-        eventPublisher.publishEvent(new ConfigVersionUpdatedEvent(this, projectId, environmentId, responseDto));
+        long revision = changeLogService.recordVersionPublished(projectId, environmentId, configItemId, configItem.getConfigKey());
+
+        ConfigVersionResponseDto responseDto = mapToDto(newVersion, ruleSet.rules());
+        changeOutbox.append(new ConfigVersionUpdatedEvent(this, projectId, environmentId, responseDto, revision));
         return responseDto;
     }
 
+    /**
+     * Publishes new versions of many config items, possibly across environments, in one transaction. Every entry is
+     * validated before the first write; then each environment costs one head lookup, one deactivation and one
+     * revision bump, new rule sets are stored in one statement, and versions, heads and change log entries are
+     * written in JDBC batches. The whole release is announced by a single {@link ConfigVersionsPublishedEvent}.
+     * Retried like {@link #publishNewVersion} when it conflicts with a concurrent publish.
+     * @return The new versions, in request order.
+     */
+    public List<ConfigVersionResponseDto> publishVersions(Long projectId, BulkPublishConfigRequestDto requestDto) {
+        return withPublishRetries(() -> doPublishVersions(projectId, requestDto));
+    }
+
+    private List<ConfigVersionResponseDto> doPublishVersions(Long projectId, BulkPublishConfigRequestDto requestDto) {
+        List<BulkPublishConfigRequestDto.Entry> entries = requestDto.getVersions();
+
+        Set<Long> itemIds = entries.stream().map(BulkPublishConfigRequestDto.Entry::getConfigItemId).collect(Collectors.toSet());
+        Map<Long, ConfigItem> itemsById = configItemRepository.findByProjectIdAndIdIn(projectId, itemIds).stream()
+                .collect(Collectors.toMap(ConfigItem::getId, Function.identity()));
+        Map<Long, Environment> environmentsById = environmentRepository.findByProjectId(projectId).stream()
+                .collect(Collectors.toMap(Environment::getId, Function.identity()));
+
+        // Entry indexes per environment, environments in id order so concurrent releases lock them in the same order
+        Map<Long, List<Integer>> entriesByEnvironment = new TreeMap<>();
+        Map<Long, Set<Long>> publishedItemIds = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            BulkPublishConfigRequestDto.Entry entry = entries.get(i);
+            ConfigItem configItem = itemsById.get(entry.getConfigItemId());
+            if (configItem == null) {
+                throw new EntityNotFoundException("Entry " + i + ": ConfigItem not found with id: " + entry.getConfigItemId() + " in project: " + projectId);
+            }
+            if (!environmentsById.containsKey(entry.getEnvironmentId())) {
+                throw new EntityNotFoundException("Entry " + i + ": Environment not found with id: " + entry.getEnvironmentId() + " in project: " + projectId);
+            }
+            if (!publishedItemIds.computeIfAbsent(entry.getEnvironmentId(), id -> new HashSet<>()).add(configItem.getId())) {
+                throw new IllegalArgumentException("Entry " + i + ": ConfigItem " + configItem.getId() + " is published more than once to environment " + entry.getEnvironmentId() + ".");
+            }
+            if (!configValueValidator.isValid(entry.getValue(), configItem.getDataType())) {
+                throw new IllegalArgumentException("Entry " + i + ": Invalid value for data type " + configItem.getDataType() +
+                                                   ". Provided value: '" + entry.getValue() + "'");
+            }
+            try {
+                ruleService.validateRules(entry.getRules(), configItem);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Entry " + i + ": " + e.getMessage());
+            }
+            entriesByEnvironment.computeIfAbsent(entry.getEnvironmentId(), id -> new ArrayList<>()).add(i);
+        }
+
+        // Each distinct rule set is stored once, however many entries use it
+        List<RuleService.StoredRuleSet> ruleSets = ruleService.storeRuleSets(
+                entries.stream().map(BulkPublishConfigRequestDto.Entry::getRules).toList());
+
+        ConfigVersion[] newVersions = new ConfigVersion[entries.size()];
+        Map<Long, Map<Long, ConfigHead>> headsByEnvironment = new HashMap<>();
+        entriesByEnvironment.forEach((environmentId, indexes) -> {
+            Map<Long, ConfigHead> heads = claimNextVersionNumbers(environmentId,
+                    indexes.stream().map(i -> entries.get(i).getConfigItemId()).toList());
+            headsByEnvironment.put(environmentId, heads);
+            List<Long> previousVersionIds = heads.values().stream().map(ConfigHead::getActiveVersionId).filter(Objects::nonNull).toList();
+            if (!previousVersionIds.isEmpty()) {
+                configVersionRepository.deactivateVersions(previousVersionIds);
+            }
+            for (int i : indexes) {
+                BulkPublishConfigRequestDto.Entry entry = entries.get(i);
+                newVersions[i] = ConfigVersion.builder()
+                        .configItem(itemsById.get(entry.getConfigItemId()))
+                        .environment(environmentsById.get(environmentId))
+                        .value(entry.getValue())
+                        .isActive(true)
+                        .versionNumber(heads.get(entry.getConfigItemId()).getLastVersionNumber())
+                        .changeDescription(entry.getChangeDescription())
+                        .ruleSetHash(ruleSets.get(i).hash())
+                        .build();
+            }
+        });
+        configVersionRepository.saveAll(Arrays.asList(newVersions)); // Ids come from the sequence, inserts are batched on flush
+        for (ConfigVersion newVersion : newVersions) {
+            headsByEnvironment.get(newVersion.getEnvironment().getId()).get(newVersion.getConfigItem().getId())
+                    .setActiveVersionId(newVersion.getId());
+        }
+
+        ConfigVersionResponseDto[] responseDtos = new ConfigVersionResponseDto[entries.size()];
+        List<ConfigVersionsPublishedEvent.EnvironmentVersions> published = new ArrayList<>();
+        entriesByEnvironment.forEach((environmentId, indexes) -> {
+            long revision = changeLogService.recordVersionsPublished(projectId, environmentId,
+                    indexes.stream().map(i -> newVersions[i].getConfigItem()).toList());
+            List<ConfigVersionResponseDto> environmentDtos = new ArrayList<>(indexes.size());
+            for (int i : indexes) {
+                responseDtos[i] = mapToDto(newVersions[i], ruleSets.get(i).rules());
+                environmentDtos.add(responseDtos[i]);
+            }
+            published.add(new ConfigVersionsPublishedEvent.EnvironmentVersions(environmentId, revision - indexes.size(), revision, environmentDtos));
+        });
+
+        changeOutbox.append(new ConfigVersionsPublishedEvent(this, projectId, published));
+        return Arrays.asList(responseDtos);
+    }
+
+    /**
+     * Returns one page of a config's version history, newest first. Pages are read by keyset on the version number,
+     * so every page costs one index range scan however deep into the history it is, and publishes in between do not
+     * shift the pages.
+     * @param cursor The previous page's {@code nextCursor}, null for the first page.
+     * @param includeRules Whether to load the versions' rules. Without them, {@code rules} is null.
+     */
     @Transactional(readOnly = true)
-    public List<ConfigVersionResponseDto> getConfigVersionHistory(Long projectId, Long environmentId, Long configItemId) {
-        if (!configItemRepository.existsById(configItemId) || !environmentRepository.existsById(environmentId)) {
-            throw new EntityNotFoundException("ConfigItem or Environment not found.");
+    public ConfigVersionHistoryPageDto getConfigVersionHistoryPage(Long projectId, Long environmentId, Long configItemId,
+                                                                   String cursor, int limit, boolean includeRules) {
+        if (limit < 1 || limit > MAX_HISTORY_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE + ", was " + limit);
         }
-        // Basic check to ensure configItem belongs to project (environment check implicitly done by service structure)
-        configItemRepository.findByIdAndProjectId(configItemId, projectId).orElseThrow(() -> new EntityNotFoundException("ConfigItem not found in project"));
-        environmentRepository.findByIdAndProjectId(environmentId, projectId).orElseThrow(() -> new EntityNotFoundException("Environment not found in project"));
+        ConfigItem configItem = configItemRepository.findByIdAndProjectId(configItemId, projectId)
+            .orElseThrow(() -> new EntityNotFoundException("ConfigItem not found with id: " + configItemId + " in project: " + projectId));
+        Environment environment = environmentRepository.findByIdAndProjectId(environmentId, projectId)
+            .orElseThrow(() -> new EntityNotFoundException("Environment not found with id: " + environmentId + " in project: " + projectId));
 
-        return configVersionRepository.findByConfigItemIdAndEnvironmentIdOrderByVersionNumberDesc(configItemId, environmentId)
-                .stream()
-                .map(this::mapToDto)
+        // One row more than the page tells whether there is a next one
+        List<ConfigVersionRepository.VersionHistoryRow> rows = configVersionRepository.findHistoryPage(
+                configItemId, environmentId, decodeHistoryCursor(cursor), PageRequest.ofSize(limit + 1));
+        boolean hasNextPage = rows.size() > limit;
+        if (hasNextPage) {
+            rows = rows.subList(0, limit);
+        }
+        Map<String, List<RuleDto>> rulesByHash = includeRules
+                ? ruleService.getRuleSets(rows.stream().map(ConfigVersionRepository.VersionHistoryRow::getRuleSetHash).toList())
+                : Map.of();
+
+        List<ConfigVersionResponseDto> versions = rows.stream()
+                .map(row -> ConfigVersionResponseDto.builder()
+                        .id(row.getId())
+                        .configItemId(configItem.getId())
+                        .configItemKey(configItem.getConfigKey())
+                        .configItemDataType(configItem.getDataType())
+                        .environmentId(environment.getId())
+                        .environmentName(environment.getName())
+                        .value(row.getValue())
+                        .isActive(row.getActive())
+                        .versionNumber(row.getVersionNumber())
+                        .changeDescription(row.getChangeDescription())
+                        .rules(!includeRules ? null : row.getRuleSetHash() == null ? List.of() : rulesByHash.get(row.getRuleSetHash()))
+                        .createdAt(row.getCreatedAt())
+                        .updatedAt(row.getUpdatedAt())
+                        .build())
                 .collect(Collectors.toList());
+        return ConfigVersionHistoryPageDto.builder()
+                .versions(versions)
+                .nextCursor(hasNextPage ? encodeHistoryCursor(rows.get(limit - 1).getVersionNumber()) : null)
+                .build();
     }
 
     @Transactional(readOnly = true)
@@ -91,11 +286,30 @@ public class ConfigVersionService {
         environmentRepository.findByIdAndProjectId(environmentId, projectId)
             .orElseThrow(() -> new EntityNotFoundException("Environment not found with id: " + environmentId + " in project: " + projectId));
 
-        return configVersionRepository.findByConfigItemIdAndEnvironmentIdAndIsActiveTrue(configItemId, environmentId)
+        return configHeadRepository.findById(new ConfigHead.Key(configItemId, environmentId))
+                .map(ConfigHead::getActiveVersionId)
+                .flatMap(configVersionRepository::findById)
                 .map(this::mapToDto)
                 .orElseThrow(() -> new EntityNotFoundException("No active configuration found for item " + configItemId + " in environment " + environmentId));
     }
     
+    /**
+     * Returns the active versions of the given config items in an environment, in the order of the ids. Items
+     * without an active version (e.g. deleted meanwhile) are left out.
+     */
+    @Transactional(readOnly = true)
+    public List<ConfigVersionResponseDto> getActiveConfigVersions(Long projectId, Long environmentId, List<Long> configItemIds) {
+        environmentRepository.findByIdAndProjectId(environmentId, projectId)
+            .orElseThrow(() -> new EntityNotFoundException("Environment not found with id: " + environmentId + " in project: " + projectId));
+
+        Map<Long, ConfigVersion> activeByItemId = configVersionRepository.findActiveByEnvironmentIdAndConfigItemIdIn(environmentId, configItemIds).stream()
+                .collect(Collectors.toMap(cv -> cv.getConfigItem().getId(), Function.identity()));
+        return mapToDtos(configItemIds.stream()
+                .map(activeByItemId::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
     @Transactional(readOnly = true)
     public ConfigVersionResponseDto getConfigVersionByNumber(Long projectId, Long environmentId, Long configItemId, Integer versionNumber) {
         ConfigItem configItem = configItemRepository.findByIdAndProjectId(configItemId, projectId)
@@ -108,19 +322,19 @@ public class ConfigVersionService {
                 .orElseThrow(() -> new EntityNotFoundException("Version " + versionNumber + " not found for config item " + configItemId + " in environment " + environmentId));
     }
 
-    @Transactional
+    // Not transactional: the publish at the end runs (and retries) in its own transaction.
     public ConfigVersionResponseDto rollbackToVersion(Long projectId, Long environmentId, Long configItemId, Long versionIdToRollbackTo) {
         ConfigVersion versionToRestore = configVersionRepository.findById(versionIdToRollbackTo)
                 .orElseThrow(() -> new EntityNotFoundException("Version to rollback to (id: " + versionIdToRollbackTo + ") not found."));
 
         if (!versionToRestore.getConfigItem().getId().equals(configItemId) || 
             !versionToRestore.getEnvironment().getId().equals(environmentId) ||
-            !versionToRestore.getConfigItem().getProject().getId().equals(projectId)) {
+            configItemRepository.findByIdAndProjectId(configItemId, projectId).isEmpty()) {
             throw new IllegalArgumentException("Rollback version does not match the specified project, environment, or config item.");
         }
 
         // Fetch rules from the version being rolled back to
-        List<RuleDto> rulesToRestore = ruleService.getRulesForConfigVersion(versionToRestore.getId());
+        List<RuleDto> rulesToRestore = ruleService.getRuleSet(versionToRestore.getRuleSetHash());
 
         PublishConfigRequestDto publishDto = new PublishConfigRequestDto();
         publishDto.setValue(versionToRestore.getValue());
@@ -133,20 +347,173 @@ public class ConfigVersionService {
     @Transactional(readOnly = true)
     public List<ConfigVersionResponseDto> getAllActiveConfigsForEnvironment(Long projectId, Long environmentId) {
         // First, verify the project and environment exist and are related.
-        Environment environment = environmentRepository.findByIdAndProjectId(environmentId, projectId)
+        environmentRepository.findByIdAndProjectId(environmentId, projectId)
             .orElseThrow(() -> new EntityNotFoundException(
                 String.format("Environment with id %d not found in project %d", environmentId, projectId)));
-        
-        return configVersionRepository.findByEnvironmentIdAndIsActiveTrue(environmentId)
-                .stream()
-                // Ensure that the config items of these versions belong to the requested project
-                .filter(cv -> cv.getConfigItem().getProject().getId().equals(projectId))
-                .map(this::mapToDto) // mapToDto already includes rules
-                .collect(Collectors.toList());
+
+        // Versions come with their config item and environment; their rule sets are loaded in one more query.
+        return mapToDtos(configVersionRepository.findActiveByProjectIdAndEnvironmentId(projectId, environmentId));
+    }
+
+    /**
+     * Returns what changed in the environment after {@code sinceRevision}, up to {@code currentRevision}. Falls back
+     * to a full snapshot if the client is too far behind, the log no longer covers the range, or the environment
+     * itself changed.
+     * @param currentRevision The environment's revision, read by the caller before this call.
+     */
+    @Transactional(readOnly = true)
+    public ConfigChangesResponseDto getChangesSince(Long projectId, Long environmentId, long sinceRevision, long currentRevision) {
+        if (sinceRevision == currentRevision) {
+            return ConfigChangesResponseDto.builder()
+                    .sinceRevision(sinceRevision)
+                    .revision(currentRevision)
+                    .configs(List.of())
+                    .deletedConfigKeys(List.of())
+                    .build();
+        }
+        if (sinceRevision < 0 || sinceRevision > currentRevision || currentRevision - sinceRevision > maxDeltaRevisions) {
+            return fullSnapshot(projectId, environmentId, sinceRevision, currentRevision);
+        }
+        List<ConfigChangeLogEntry> entries = changeLogService.getEntries(environmentId, sinceRevision, currentRevision);
+        if (entries.size() != currentRevision - sinceRevision) {
+            return fullSnapshot(projectId, environmentId, sinceRevision, currentRevision); // Part of the range was compacted
+        }
+
+        // Only the latest change per config item matters, its current state is sent either way.
+        Map<Long, ConfigChangeLogEntry> latestByItemId = new LinkedHashMap<>();
+        for (ConfigChangeLogEntry entry : entries) {
+            if (entry.getChangeType() == ConfigChangeType.ENVIRONMENT_UPDATED) {
+                return fullSnapshot(projectId, environmentId, sinceRevision, currentRevision);
+            }
+            latestByItemId.remove(entry.getConfigItemId());
+            latestByItemId.put(entry.getConfigItemId(), entry);
+        }
+        List<Long> changedItemIds = new ArrayList<>();
+        List<String> deletedConfigKeys = new ArrayList<>();
+        latestByItemId.values().forEach(entry -> {
+            if (entry.getChangeType() == ConfigChangeType.CONFIG_ITEM_DELETED) {
+                deletedConfigKeys.add(entry.getConfigKey());
+            } else {
+                changedItemIds.add(entry.getConfigItemId());
+            }
+        });
+
+        List<ConfigVersionResponseDto> configs = List.of();
+        if (!changedItemIds.isEmpty()) {
+            configs = mapToDtos(configVersionRepository.findActiveByEnvironmentIdAndConfigItemIdIn(environmentId, changedItemIds));
+        }
+        // A key deleted and then re-added belongs to a new item: it is sent as changed only, so clients need not
+        // care in which order they apply the two lists.
+        Set<String> changedConfigKeys = configs.stream().map(ConfigVersionResponseDto::getConfigItemKey).collect(Collectors.toSet());
+        deletedConfigKeys.removeIf(changedConfigKeys::contains);
+        return ConfigChangesResponseDto.builder()
+                .sinceRevision(sinceRevision)
+                .revision(currentRevision)
+                .configs(configs)
+                .deletedConfigKeys(deletedConfigKeys)
+                .build();
+    }
+
+    private ConfigChangesResponseDto fullSnapshot(Long projectId, Long environmentId, long sinceRevision, long currentRevision) {
+        return ConfigChangesResponseDto.builder()
+                .sinceRevision(sinceRevision)
+                .revision(currentRevision)
+                .fullSnapshot(true)
+                .configs(getAllActiveConfigsForEnvironment(projectId, environmentId))
+                .deletedConfigKeys(List.of())
+                .build();
+    }
+
+    /**
+     * Claims the next version number of each config item in the environment by advancing its head, creating the
+     * heads of first versions. The heads are flushed right away, so a publish racing with another one of the same
+     * config fails here (once the other one committed) with a {@link ConcurrencyFailureException}, before it wrote
+     * anything; the claimed heads stay locked until the transaction ends. Their active version is still the previous
+     * one, it is up to the caller to point them at the new versions.
+     * @return The heads per config item id, each holding its claimed number as last version number.
+     */
+    private Map<Long, ConfigHead> claimNextVersionNumbers(Long environmentId, List<Long> configItemIds) {
+        Map<Long, ConfigHead> heads = configHeadRepository.findAllById(
+                        configItemIds.stream().map(id -> new ConfigHead.Key(id, environmentId)).toList()).stream()
+                .collect(Collectors.toMap(head -> head.getId().getConfigItemId(), Function.identity()));
+        for (Long configItemId : configItemIds) {
+            ConfigHead head = heads.get(configItemId);
+            if (head == null) {
+                heads.put(configItemId, ConfigHead.builder()
+                        .id(new ConfigHead.Key(configItemId, environmentId))
+                        .lastVersionNumber(1)
+                        .build());
+            } else {
+                head.setLastVersionNumber(head.getLastVersionNumber() + 1);
+            }
+        }
+        try {
+            configHeadRepository.saveAllAndFlush(heads.values());
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent first publish created one of the new heads
+            throw new OptimisticLockingFailureException("Config head created concurrently in environment " + environmentId, e);
+        }
+        return heads;
+    }
+
+    // Runs a publish in a new transaction. An attempt that lost a race (or a deadlock) against a concurrent publish
+    // is rolled back and run again after a short random pause, up to confx.publish.max-attempts times in all.
+    // Retried attempts and publishes that gave up are counted (confx.publish.retries, confx.publish.conflicts).
+    private <T> T withPublishRetries(Supplier<T> publish) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> publish.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxPublishAttempts) {
+                    meterRegistry.counter("confx.publish.conflicts").increment();
+                    throw e;
+                }
+                meterRegistry.counter("confx.publish.retries").increment();
+                log.debug("Publish attempt {} conflicted with a concurrent publish, retrying: {}", attempt, e.getMessage());
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(publishRetryBackoffMs * attempt + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // The cursor is the last version number of the previous page, opaque to clients so its form may change.
+    private static String encodeHistoryCursor(int lastVersionNumber) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("v:" + lastVersionNumber).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeHistoryCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return Integer.MAX_VALUE; // First page
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith("v:")) {
+                return Integer.parseInt(decoded.substring(2));
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64 or not a number, reported below
+        }
+        throw new IllegalArgumentException("Invalid history cursor: " + cursor);
     }
 
     private ConfigVersionResponseDto mapToDto(ConfigVersion configVersion) {
-        List<RuleDto> ruleDtos = ruleService.getRulesForConfigVersion(configVersion.getId());
+        return mapToDto(configVersion, ruleService.getRuleSet(configVersion.getRuleSetHash()));
+    }
+
+    // Loads the rule sets of all the versions in one query; versions sharing rules share the loaded list.
+    private List<ConfigVersionResponseDto> mapToDtos(List<ConfigVersion> configVersions) {
+        Map<String, List<RuleDto>> rulesByHash = ruleService.getRuleSets(
+                configVersions.stream().map(ConfigVersion::getRuleSetHash).toList());
+        return configVersions.stream()
+                .map(cv -> mapToDto(cv, cv.getRuleSetHash() == null ? List.of() : rulesByHash.get(cv.getRuleSetHash())))
+                .collect(Collectors.toList());
+    }
+
+    private ConfigVersionResponseDto mapToDto(ConfigVersion configVersion, List<RuleDto> ruleDtos) {
         return ConfigVersionResponseDto.builder()
                 .id(configVersion.getId())
                 .configItemId(configVersion.getConfigItem().getId())
@@ -7,9 +7,11 @@ import com.abhinavmehta.confx.entity.Project;
 import com.abhinavmehta.confx.repository.EnvironmentRepository;
 import com.abhinavmehta.confx.repository.ProjectRepository;
 import com.abhinavmehta.confx.events.EnvironmentDeletedEvent;
+import com.abhinavmehta.confx.events.EnvironmentUpdatedEvent;
+import com.abhinavmehta.confx.service.revision.ConfigChangeLogService;
+import com.abhinavmehta.confx.service.outbox.ChangeOutbox;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,7 +24,8 @@ public class EnvironmentService {
 
     private final EnvironmentRepository environmentRepository;
     private final ProjectRepository projectRepository; // To verify project existence
-    private final ApplicationEventPublisher eventPublisher;
+    private final ConfigChangeLogService changeLogService;
+    private final ChangeOutbox changeOutbox;
 
     @Transactional
     public EnvironmentResponseDto createEnvironment(Long projectId, CreateEnvironmentRequestDto createDto) {
@@ -90,6 +93,8 @@ public class EnvironmentService {
         environment.setDescription(updateDto.getDescription());
         environment.setColorTag(updateDto.getColorTag());
         environment = environmentRepository.save(environment);
+        changeLogService.recordEnvironmentUpdated(projectId, environmentId); // The name is part of the active configs
+        changeOutbox.append(new EnvironmentUpdatedEvent(this, projectId, environmentId));
         return mapToDto(environment);
     }
 
@@ -106,8 +111,8 @@ public class EnvironmentService {
         }
         
         environmentRepository.deleteById(environmentId);
-        // Publish event AFTER successful deletion
-        eventPublisher.publishEvent(new EnvironmentDeletedEvent(this, projectId, environmentId));
+        // Relayed to listeners once the deletion has committed
+        changeOutbox.append(new EnvironmentDeletedEvent(this, projectId, environmentId));
     }
 
     private EnvironmentResponseDto mapToDto(Environment environment) {
@@ -5,9 +5,9 @@ import com.abhinavmehta.confx.dto.ProjectResponseDto;
 import com.abhinavmehta.confx.entity.Project;
 import com.abhinavmehta.confx.repository.ProjectRepository;
 import com.abhinavmehta.confx.events.ProjectDeletedEvent;
+import com.abhinavmehta.confx.service.outbox.ChangeOutbox;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,7 +19,7 @@ import java.util.stream.Collectors;
 public class ProjectService {
 
     private final ProjectRepository projectRepository;
-    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeOutbox changeOutbox;
 
     @Transactional
     public ProjectResponseDto createProject(CreateProjectRequestDto createProjectRequestDto) {
@@ -84,8 +84,8 @@ public class ProjectService {
         // Consider implications: what happens to environments, configs under this project?
         // For now, simple delete. Cascade or logical delete might be needed later.
         projectRepository.deleteById(projectId);
-        // Publish event AFTER successful deletion
-        eventPublisher.publishEvent(new ProjectDeletedEvent(this, projectId));
+        // Relayed to listeners once the deletion has committed
+        changeOutbox.append(new ProjectDeletedEvent(this, projectId));
     }
 
     private ProjectResponseDto mapToDto(Project project) {
@@ -1,60 +1,97 @@
 package com.abhinavmehta.confx.service;
 
 import com.abhinavmehta.confx.dto.EvaluationContext;
-import com.abhinavmehta.confx.entity.Rule;
+import com.abhinavmehta.confx.dto.RuleDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.expression.ExpressionParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ConcurrentLruCache;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 @Slf4j
 public class RuleEvaluationService {
 
-    private final ExpressionParser expressionParser = new SpelExpressionParser();
+    private final MeterRegistry meterRegistry;
+    private final SpelExpressionParser expressionParser;
+    private final SpelCompilerMode compilerMode;
+    private final ConcurrentLruCache<String, CachedExpression> expressionCache;
+
+    private final LongAdder cacheLookups = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder compileFailures = new LongAdder();
+
+    public RuleEvaluationService(MeterRegistry meterRegistry,
+                                 @Value("${confx.evaluation.expression-cache-size:10000}") int expressionCacheSize,
+                                 @Value("${confx.evaluation.spel-compiler-mode:MIXED}") SpelCompilerMode compilerMode) {
+        this.meterRegistry = meterRegistry;
+        this.compilerMode = compilerMode;
+        this.expressionParser = new SpelExpressionParser(new SpelParserConfiguration(compilerMode, RuleEvaluationService.class.getClassLoader()));
+        this.expressionCache = new ConcurrentLruCache<>(expressionCacheSize, this::parse);
+    }
+
+    @PostConstruct
+    void registerMeters() {
+        FunctionCounter.builder("confx.rules.expression.cache.hits", this, s -> s.cacheLookups.sum() - s.cacheMisses.sum())
+                .description("Rule expression lookups served from the parsed-expression cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("confx.rules.expression.cache.misses", this, s -> s.cacheMisses.sum())
+                .description("Rule expressions that had to be parsed")
+                .register(meterRegistry);
+        FunctionCounter.builder("confx.rules.expression.compile.failures", this, s -> s.compileFailures.sum())
+                .description("Rule expressions that could not be compiled to bytecode and stay interpreted")
+                .register(meterRegistry);
+    }
 
     /**
-     * Evaluates rules against the given context and returns the value from the first matching rule.
+     * Evaluates rules against the given context and returns the first matching rule.
      * Rules are assumed to be sorted by priority.
      * @param rules The list of rules to evaluate (sorted by priority).
      * @param evalContext The evaluation context containing attributes.
-     * @return The value from the first matching rule, or null if no rules match.
+     * @return The first matching rule, whose value is served, or null if no rules match.
      */
-    public String evaluateRules(List<Rule> rules, EvaluationContext evalContext) {
+    public RuleDto findMatchingRule(List<RuleDto> rules, EvaluationContext evalContext) {
         if (rules == null || rules.isEmpty()) {
             return null;
         }
 
-        // SpEL context will have the attributes map as its root object.
-        // Expressions can then be like: "attributes['region'] == 'EU'" 
+        // SpEL root object is the attributes map.
+        // Expressions can then be like: "attributes['region'] == 'EU'"
         // or "attributes['userRoles'].contains('admin')"
-        StandardEvaluationContext spelContext = new StandardEvaluationContext(evalContext.getAttributes());
+        Map<String, Object> attributes = evalContext.getAttributes();
 
-        for (Rule rule : rules) {
+        for (RuleDto rule : rules) {
             try {
-                // Prepending '#' to treat the condition as a SpEL template expression is not needed 
+                // Prepending '#' to treat the condition as a SpEL template expression is not needed
                 // if the expression directly uses the root object (the attributes map).
                 // Example: attributes['country'] == 'US'
                 // Example: attributes['itemCount'] > 10 && attributes['itemCount'] < 20
                 // Example: attributes['features'].contains('newUI')
-                Boolean matches = expressionParser.parseExpression(rule.getConditionExpression()).getValue(spelContext, Boolean.class);
-                if (Boolean.TRUE.equals(matches)) {
-                    log.debug("Rule matched (ID {}): '{}'. Serving value: '{}'", rule.getId(), rule.getConditionExpression(), rule.getValueToServe());
-                    return rule.getValueToServe();
+                if (matches(rule.getConditionExpression(), attributes)) {
+                    log.debug("Rule matched (priority {}): '{}'. Serving value: '{}'", rule.getPriority(), rule.getConditionExpression(), rule.getValueToServe());
+                    return rule;
                 }
             } catch (Exception e) {
                 // Log the error and continue to the next rule. A malformed expression should not break evaluation of other rules.
-                log.error("Error evaluating rule (ID {}): '{}'. Condition: '{}'. Error: {}", 
-                          rule.getId(), rule.getDescription(), rule.getConditionExpression(), e.getMessage());
+                log.error("Error evaluating rule (priority {}): '{}'. Condition: '{}'. Error: {}",
+                          rule.getPriority(), rule.getDescription(), rule.getConditionExpression(), e.getMessage());
             }
         }
         return null; // No rule matched
     }
-    
+
     /**
      * Evaluates a single condition expression against the given context map.
      * @param conditionExpression The SpEL expression string.
@@ -65,13 +102,42 @@ public class RuleEvaluationService {
         if (conditionExpression == null || conditionExpression.isBlank()) {
             return false; // Or throw an error, depending on desired behavior for blank expressions
         }
-        StandardEvaluationContext spelContext = new StandardEvaluationContext(contextAttributes);
         try {
-            Boolean result = expressionParser.parseExpression(conditionExpression).getValue(spelContext, Boolean.class);
-            return Boolean.TRUE.equals(result);
+            return matches(conditionExpression, contextAttributes);
         } catch (Exception e) {
             log.error("Error evaluating single condition: '{}'. Error: {}", conditionExpression, e.getMessage());
             return false; // Treat evaluation errors as non-match
         }
     }
-} 
\ No newline at end of file
+
+    private boolean matches(String conditionExpression, Map<String, Object> attributes) {
+        cacheLookups.increment();
+        CachedExpression cached = expressionCache.get(conditionExpression);
+        if (cached.parseError() != null) {
+            throw cached.parseError();
+        }
+        // A context per evaluation: StandardEvaluationContext initializes its state lazily and is not thread-safe.
+        // Its cost is small next to the evaluation itself, which reuses the parsed (and usually compiled) expression.
+        Boolean result = cached.expression().getValue(new StandardEvaluationContext(attributes), Boolean.class);
+        // Compilation needs the type information gathered by one interpreted run, so it is attempted right after the first evaluation.
+        if (compilerMode != SpelCompilerMode.OFF && cached.compileAttempted().compareAndSet(false, true)
+                && !cached.expression().compileExpression()) {
+            compileFailures.increment();
+            log.debug("Rule expression could not be compiled, it will stay interpreted: '{}'", conditionExpression);
+        }
+        return Boolean.TRUE.equals(result);
+    }
+
+    private CachedExpression parse(String conditionExpression) {
+        cacheMisses.increment();
+        try {
+            SpelExpression expression = expressionParser.parseRaw(conditionExpression);
+            return new CachedExpression(expression, null, new AtomicBoolean(false));
+        } catch (RuntimeException e) {
+            // Cache the failure too, so a malformed rule is not re-parsed on every evaluation.
+            return new CachedExpression(null, e, new AtomicBoolean(true));
+        }
+    }
+
+    private record CachedExpression(SpelExpression expression, RuntimeException parseError, AtomicBoolean compileAttempted) {}
+}
@@ -2,37 +2,59 @@ package com.abhinavmehta.confx.service;
 
 import com.abhinavmehta.confx.dto.RuleDto;
 import com.abhinavmehta.confx.entity.ConfigItem;
-import com.abhinavmehta.confx.entity.ConfigVersion;
-import com.abhinavmehta.confx.entity.Rule;
-import com.abhinavmehta.confx.repository.RuleRepository;
+import com.abhinavmehta.confx.entity.RuleSet;
+import com.abhinavmehta.confx.repository.RuleSetRepository;
 import com.abhinavmehta.confx.service.helpers.ConfigValueValidator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Validates, stores and loads the rules of config versions. A version's rules are stored as one content-addressed
+ * rule set, shared by every version with the same rules, so publishing unchanged rules writes nothing and the rules
+ * of any number of versions are read in one query.
+ */
 @Service
 @RequiredArgsConstructor
 public class RuleService {
 
-    private final RuleRepository ruleRepository;
+    private final RuleSetRepository ruleSetRepository;
     private final ConfigValueValidator configValueValidator;
+    private final ObjectMapper objectMapper;
 
-    @Transactional
-    public List<Rule> setRulesForConfigVersion(ConfigVersion configVersion, List<RuleDto> ruleDtos, ConfigItem configItem) {
-        // Delete existing rules for this config version first
-        ruleRepository.deleteByConfigVersionId(configVersion.getId());
+    // Stored form of a rule. Rules have no identity of their own: within a version, the priority identifies them, and
+    // is returned as their id.
+    private record StoredRule(Integer priority, String conditionExpression, String valueToServe, String description) {}
 
-        if (ruleDtos == null || ruleDtos.isEmpty()) {
-            return new ArrayList<>();
-        }
+    /**
+     * A stored rule set: its hash, null for an empty rule set, and its rules as stored, sorted by priority.
+     */
+    public record StoredRuleSet(String hash, List<RuleDto> rules) {}
 
-        // Validate priorities are unique for this version
+    /**
+     * Checks that priorities are unique and that every rule serves a value of the config item's data type.
+     * @throws IllegalArgumentException on the first invalid rule.
+     */
+    public void validateRules(List<RuleDto> ruleDtos, ConfigItem configItem) {
+        if (ruleDtos == null) {
+            return;
+        }
         Set<Integer> priorities = new HashSet<>();
         for (RuleDto dto : ruleDtos) {
             if (!priorities.add(dto.getPriority())) {
@@ -45,39 +67,88 @@ public class RuleService {
                                   dto.getValueToServe(), dto.getPriority(), configItem.getDataType()));
             }
         }
+    }
+
+    /**
+     * Stores rule sets that are not stored yet, all in one statement. The rules must have been checked with
+     * {@link #validateRules} before.
+     * @return The stored form of each rule set, in order.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<StoredRuleSet> storeRuleSets(List<List<RuleDto>> ruleSets) {
+        List<List<StoredRule>> nonEmpty = ruleSets.stream()
+                .filter(ruleDtos -> ruleDtos != null && !ruleDtos.isEmpty())
+                .map(ruleDtos -> ruleDtos.stream()
+                        .sorted(Comparator.comparing(RuleDto::getPriority))
+                        .map(dto -> new StoredRule(dto.getPriority(), dto.getConditionExpression(), dto.getValueToServe(), dto.getDescription()))
+                        .toList())
+                .toList();
+        Iterator<String> hashes = nonEmpty.isEmpty() ? null : ruleSetRepository.store(toJson(nonEmpty)).iterator();
+        Iterator<List<StoredRule>> stored = nonEmpty.iterator();
+
+        List<StoredRuleSet> result = new ArrayList<>(ruleSets.size());
+        for (List<RuleDto> ruleDtos : ruleSets) {
+            if (ruleDtos == null || ruleDtos.isEmpty()) {
+                result.add(new StoredRuleSet(null, List.of()));
+            } else {
+                result.add(new StoredRuleSet(hashes.next(), stored.next().stream().map(this::mapToDto).toList()));
+            }
+        }
+        return result;
+    }
 
-        List<Rule> rules = ruleDtos.stream()
-                .map(dto -> Rule.builder()
-                        .configVersion(configVersion)
-                        .priority(dto.getPriority())
-                        .conditionExpression(dto.getConditionExpression())
-                        .valueToServe(dto.getValueToServe())
-                        .description(dto.getDescription())
-                        .build())
-                .collect(Collectors.toList());
+    @Transactional(propagation = Propagation.MANDATORY)
+    public StoredRuleSet storeRuleSet(List<RuleDto> ruleDtos) {
+        return storeRuleSets(Collections.singletonList(ruleDtos)).get(0); // ruleDtos may be null
+    }
 
-        return ruleRepository.saveAll(rules);
+    /**
+     * @param hash The rule set's hash, null for none.
+     * @return Its rules sorted by priority, empty for none.
+     */
+    public List<RuleDto> getRuleSet(String hash) {
+        if (hash == null) {
+            return List.of();
+        }
+        return getRuleSets(List.of(hash)).getOrDefault(hash, List.of());
     }
 
-    public List<RuleDto> getRulesForConfigVersion(Long configVersionId) {
-        return ruleRepository.findByConfigVersionIdOrderByPriorityAsc(configVersionId).stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+    /**
+     * Loads many rule sets with a single query. Null hashes are ignored.
+     * @return Rules per hash, sorted by priority.
+     */
+    public Map<String, List<RuleDto>> getRuleSets(Collection<String> hashes) {
+        Set<String> distinctHashes = hashes.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (distinctHashes.isEmpty()) {
+            return Map.of();
+        }
+        return ruleSetRepository.findAllById(distinctHashes).stream()
+                .collect(Collectors.toMap(RuleSet::getHash, ruleSet -> fromJson(ruleSet.getRules()).stream().map(this::mapToDto).toList()));
     }
 
-    private RuleDto mapToDto(Rule rule) {
+    private RuleDto mapToDto(StoredRule rule) {
         return RuleDto.builder()
-                .id(rule.getId())
-                .priority(rule.getPriority())
-                .conditionExpression(rule.getConditionExpression())
-                .valueToServe(rule.getValueToServe())
-                .description(rule.getDescription())
-                .createdAt(rule.getCreatedAt())
-                .updatedAt(rule.getUpdatedAt())
+                .id(rule.priority().longValue())
+                .priority(rule.priority())
+                .conditionExpression(rule.conditionExpression())
+                .valueToServe(rule.valueToServe())
+                .description(rule.description())
                 .build();
     }
 
-    // Individual rule CRUD might not be directly exposed via controller, 
-    // but managed as a whole list under ConfigVersion.
-    // If needed, methods like addRuleToVersion, updateRule, deleteRule can be added.
-} 
\ No newline at end of file
+    private String toJson(List<List<StoredRule>> ruleSets) {
+        try {
+            return objectMapper.writeValueAsString(ruleSets);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize rule sets", e);
+        }
+    }
+
+    private List<StoredRule> fromJson(String rules) {
+        try {
+            return objectMapper.readValue(rules, new TypeReference<List<StoredRule>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed stored rule set: " + e.getMessage(), e);
+        }
+    }
+}
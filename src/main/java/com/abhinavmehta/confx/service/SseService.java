@@ -1,144 +1,581 @@
 package com.abhinavmehta.confx.service;
 
 import com.abhinavmehta.confx.dto.sse.ConfigUpdateSseDto;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.service.sse.HeartbeatWheel;
+import com.abhinavmehta.confx.service.sse.SseSubscriber;
+import com.abhinavmehta.confx.service.sse.SubscriptionIndex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
 public class SseService {
-    // Key: "projectId:environmentId"
-    private final Map<String, List<SseEmitter>> projectEnvEmitters = new ConcurrentHashMap<>();
+    private final EnvironmentRevisionService environmentRevisionService;
+    private final ObjectMapper objectMapper; // Spring's, so payloads serialize exactly like MVC responses
+    private final MeterRegistry meterRegistry;
+    // Writes queued frames to the clients. Each subscriber has at most one drain task pending, so the work queue is
+    // bounded by the number of subscribers and the thread count bounds how many slow clients are written to at once.
+    // Virtual fan-out threads stay bounded as well: emitters write while holding their monitor, which pins the
+    // carrier thread, so an unbounded number of stalled writes could starve every other virtual thread.
+    private final ThreadPoolExecutor fanoutExecutor;
+    private final int fanoutThreads;
+    private final AtomicInteger borrowedFanoutThreads = new AtomicInteger(); // See borrowFanoutThread
+
+    // Project id -> environment id -> subscribers, so a project-wide broadcast or cleanup is a single lookup
+    private final Map<Long, Map<Long, Channel>> channels = new ConcurrentHashMap<>();
+    // Project id -> environment id -> recent revisioned events, replayed to clients reconnecting with Last-Event-ID
+    private final Map<Long, Map<Long, EventHistory>> eventHistories = new ConcurrentHashMap<>();
+    // Closed subscribers waiting to be unindexed by the next heartbeat tick, in one pass per environment
+    private final Queue<ClosedSubscriber> closedSubscribers = new ConcurrentLinkedQueue<>();
     private static final Long SSE_EMITTER_TIMEOUT = 30 * 60 * 1000L; // 30 minutes
     private static final long HEARTBEAT_INTERVAL_MS = 25 * 1000L; // 25 seconds
+    private static final long HEARTBEAT_TICK_MS = 1000L; // Each tick visits 1/25th of the connections
+    private static final byte[] HEARTBEAT_FRAME = ":ping\n\n".getBytes(StandardCharsets.UTF_8);
+    private final HeartbeatWheel heartbeatWheel = new HeartbeatWheel((int) (HEARTBEAT_INTERVAL_MS / HEARTBEAT_TICK_MS), HEARTBEAT_INTERVAL_MS, HEARTBEAT_FRAME);
+
+    @Value("${confx.sse.replay-buffer-size:256}")
+    private int replayBufferSize;
+    @Value("${confx.sse.subscriber-queue-capacity:64}")
+    private int subscriberQueueCapacity;
+    @Value("${confx.sse.slow-subscriber-timeout-ms:30000}")
+    private long slowSubscriberTimeoutMs;
+
+    public SseService(EnvironmentRevisionService environmentRevisionService,
+                      ObjectMapper objectMapper,
+                      MeterRegistry meterRegistry,
+                      @Value("${confx.sse.fanout-threads:8}") int fanoutThreads,
+                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.environmentRevisionService = environmentRevisionService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("sse-fanout-", 1).factory()
+                : new CustomizableThreadFactory("sse-fanout-");
+        this.fanoutThreads = fanoutThreads;
+        this.fanoutExecutor = new ThreadPoolExecutor(fanoutThreads, fanoutThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    }
 
-    public SseEmitter createEmitter(Long projectId, Long environmentId) {
+    /**
+     * Registers a client for updates of an environment. Event ids are environment revisions: a client reconnecting
+     * with the id of the last event it saw ({@code lastEventId}) first gets the events it missed, or a
+     * {@link ConfigUpdateSseDto#TYPE_RESYNC} event when they are no longer buffered and it must reload its state.
+     * @param configKeys        Exact config keys the client is interested in.
+     * @param configKeyPrefixes Config key prefixes the client is interested in. With neither, the client gets the
+     *                          events of every key. Events about the whole environment are always sent.
+     * @throws jakarta.persistence.EntityNotFoundException if the environment does not exist in the project.
+     */
+    public SseEmitter createEmitter(Long projectId, Long environmentId, String lastEventId,
+                                    Set<String> configKeys, Set<String> configKeyPrefixes) {
+        long currentRevision = environmentRevisionService.getRevision(projectId, environmentId);
         SseEmitter emitter = new SseEmitter(SSE_EMITTER_TIMEOUT);
-        String emitterKey = getEmitterKey(projectId, environmentId);
+        EventHistory history = historyFor(projectId, environmentId, currentRevision);
+
+        // Registering and replaying under the history lock means no event is missed or delivered twice in between.
+        // The initial messages are written directly: the emitter is not returned yet, so they are only buffered.
+        synchronized (history) {
+            SseSubscriber subscriber = addSubscriber(projectId, environmentId, emitter, configKeys, configKeyPrefixes);
+            emitter.onCompletion(() -> {
+                log.info("SseEmitter completed for {}/{}", projectId, environmentId);
+                subscriber.close();
+            });
+            emitter.onTimeout(() -> {
+                log.info("SseEmitter timed out for {}/{}", projectId, environmentId);
+                subscriber.close();
+            });
+            emitter.onError(e -> {
+                log.error("SseEmitter error for {}/{}: {}", projectId, environmentId, e.getMessage());
+                subscriber.close();
+            });
+
+            String connectedMessage = "SSE connection established for " + projectId + ":" + environmentId;
+            long latestRevision = history.events.isEmpty() ? currentRevision : Math.max(currentRevision, history.events.lastKey());
+            try {
+                if (lastEventId == null) {
+                    // The id tells the client where to resume from should the connection drop.
+                    emitter.send(SseEmitter.event().name("connection_established").data(connectedMessage).id(String.valueOf(latestRevision)));
+                } else {
+                    replayMissedEvents(subscriber, projectId, environmentId, history, lastEventId, latestRevision);
+                    emitter.send(SseEmitter.event().name("connection_established").data(connectedMessage));
+                }
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (IOException e) {
+                log.warn("Failed to send initial messages for emitter {}/{}: {}. Removing.", projectId, environmentId, e.getMessage());
+                subscriber.close();
+            }
+        }
+        return emitter;
+    }
+
+    private void replayMissedEvents(SseSubscriber subscriber, Long projectId, Long environmentId, EventHistory history,
+                                    String lastEventId, long latestRevision) throws IOException {
+        long lastSeenRevision;
+        try {
+            lastSeenRevision = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            lastSeenRevision = -1; // Not one of our ids, e.g. from before revisions were used
+        }
+        NavigableMap<Long, BufferedEvent> missed = lastSeenRevision >= history.floorRevision && lastSeenRevision <= latestRevision
+                ? history.events.tailMap(lastSeenRevision, false)
+                : null;
+        // Revisions without an event (e.g. config item or environment edits) cannot be replayed either.
+        if (missed == null || !coversRevisions(missed.values(), lastSeenRevision, latestRevision)) {
+            log.info("Cannot replay SSE events for {}/{} since revision {} (buffered after {}), requesting resync.",
+                     projectId, environmentId, lastEventId, history.floorRevision);
+            sendFrame(subscriber.getEmitter(), encodeResyncFrame(latestRevision));
+            return;
+        }
+        // Events about other keys still count towards the coverage check above, they are just not sent.
+        int replayed = 0;
+        for (BufferedEvent event : missed.values()) {
+            if (subscriber.isInterestedInAny(event.configKeys())) {
+                sendFrame(subscriber.getEmitter(), event.frame());
+                replayed++;
+            }
+            if (event.followUp() != null && subscriber.isInterestedInAny(event.followUp().configKeys())) {
+                sendFrame(subscriber.getEmitter(), event.followUp().frame());
+            }
+        }
+        // The latest revision may be committed before its event is relayed here; that event must not come again
+        subscriber.caughtUpTo(latestRevision);
+        log.info("Replayed {} missed SSE events for {}/{} since revision {}.", replayed, projectId, environmentId, lastSeenRevision);
+    }
+
+    private static boolean coversRevisions(Iterable<BufferedEvent> events, long fromRevision, long toRevision) {
+        long covered = fromRevision;
+        for (BufferedEvent event : events) {
+            if (event.fromRevision() > covered) {
+                return false;
+            }
+            covered = event.revision();
+        }
+        return covered == toRevision;
+    }
 
-        emitter.onCompletion(() -> {
-            log.info("SseEmitter completed for {}/{}", projectId, environmentId);
-            removeEmitter(projectId, environmentId, emitter);
+    private SseSubscriber addSubscriber(Long projectId, Long environmentId, SseEmitter emitter,
+                                        Set<String> configKeys, Set<String> configKeyPrefixes) {
+        SseSubscriber[] added = new SseSubscriber[1];
+        channels.compute(projectId, (p, projectChannels) -> {
+            Map<Long, Channel> target = projectChannels != null ? projectChannels : new ConcurrentHashMap<>();
+            Channel channel = target.computeIfAbsent(environmentId, e -> new Channel(projectId, environmentId));
+            added[0] = new SseSubscriber(emitter, projectId + "/" + environmentId,
+                    configKeys != null ? configKeys : Set.of(), configKeyPrefixes != null ? configKeyPrefixes : Set.of(),
+                    subscriberQueueCapacity, slowSubscriberTimeoutMs, fanoutExecutor, channel.droppedEvents, channel.fanoutLatency,
+                    s -> closedSubscribers.add(new ClosedSubscriber(projectId, environmentId, s)), channel.draining::add);
+            channel.subscribers.add(added[0]);
+            channel.index.add(added[0]);
+            log.info("SseEmitter created and registered for Project: {}, Environment: {}. Current active for environment: {}",
+                     projectId, environmentId, channel.subscribers.size());
+            return target;
         });
-        emitter.onTimeout(() -> {
-            log.info("SseEmitter timed out for {}/{}", projectId, environmentId);
-            removeEmitter(projectId, environmentId, emitter);
+        heartbeatWheel.add(added[0]);
+        return added[0];
+    }
+
+    // Unindexes closed subscribers in bulk: one copy of each affected subscriber list, however many closed.
+    private void removeClosedSubscribers() {
+        Map<Long, Map<Long, Set<SseSubscriber>>> closedByEnvironment = new HashMap<>();
+        for (ClosedSubscriber closed; (closed = closedSubscribers.poll()) != null; ) {
+            closedByEnvironment.computeIfAbsent(closed.projectId(), p -> new HashMap<>())
+                    .computeIfAbsent(closed.environmentId(), e -> new HashSet<>())
+                    .add(closed.subscriber());
+        }
+        closedByEnvironment.forEach((projectId, closedInProject) -> channels.computeIfPresent(projectId, (p, projectChannels) -> {
+            closedInProject.forEach((environmentId, closed) -> {
+                Channel channel = projectChannels.get(environmentId);
+                if (channel == null || !channel.subscribers.removeAll(closed)) {
+                    return; // Already unindexed with its environment or project
+                }
+                closed.forEach(channel.index::remove);
+                log.info("Removed {} closed SSE connections for Project: {}, Environment: {}. Remaining for environment: {}",
+                         closed.size(), projectId, environmentId, channel.subscribers.size());
+                if (channel.subscribers.isEmpty()) {
+                    projectChannels.remove(environmentId);
+                    channel.removeMeters();
+                }
+            });
+            return projectChannels.isEmpty() ? null : projectChannels;
+        }));
+    }
+
+    /**
+     * Sends an event produced by the given environment revision to the environment's clients interested in the
+     * given config keys, and buffers it for replay to clients that reconnect after missing it.
+     * @param configKeys The keys the event is about, or {@code null} if it is about the whole environment.
+     */
+    public void sendUpdateToClients(Long projectId, Long environmentId, long revision, Collection<String> configKeys,
+                                    ConfigUpdateSseDto ssePayload) {
+        sendUpdateToClients(projectId, environmentId, revision - 1, revision, configKeys, ssePayload);
+    }
+
+    /**
+     * Sends an event that accounts for all the revisions after {@code fromRevision} up to {@code revision}, such as
+     * a batch of coalesced updates, and buffers it for replay under {@code revision}.
+     */
+    public void sendUpdateToClients(Long projectId, Long environmentId, long fromRevision, long revision,
+                                    Collection<String> configKeys, ConfigUpdateSseDto ssePayload) {
+        sendUpdateToClients(projectId, environmentId, fromRevision, revision, configKeys, ssePayload, null, null);
+    }
+
+    /**
+     * Like {@link #sendUpdateToClients(Long, Long, long, long, Collection, ConfigUpdateSseDto)}, followed by a second
+     * event derived from the same change, such as the keys of its dependents. The follow-up has no id of its own: it
+     * is routed by its own keys, delivered right after the update and replayed along with it.
+     */
+    public void sendUpdateToClients(Long projectId, Long environmentId, long fromRevision, long revision,
+                                    Collection<String> configKeys, ConfigUpdateSseDto ssePayload,
+                                    Collection<String> followUpConfigKeys, ConfigUpdateSseDto followUpPayload) {
+        Map<Long, Channel> projectChannels = channels.get(projectId);
+        FollowUp followUp = followUpPayload != null ? new FollowUp(followUpConfigKeys, followUpPayload.getType(), encodeFrame(followUpPayload, null)) : null;
+        sendRevisionedEvent(projectId, environmentId, projectChannels != null ? projectChannels.get(environmentId) : null,
+                fromRevision, revision, configKeys, ssePayload, encodeFrame(ssePayload, revision), followUp);
+    }
+
+    /**
+     * Sends an event that changed every environment of a project, each under the revision it produced there.
+     * The project's subscribers are found with a single lookup.
+     * @param environmentRevisions Environment id to the revision the change produced in it.
+     */
+    public void sendUpdateToProject(Long projectId, Map<Long, Long> environmentRevisions, Collection<String> configKeys,
+                                    ConfigUpdateSseDto ssePayload) {
+        Map<Long, Channel> projectChannels = channels.getOrDefault(projectId, Map.of());
+        log.info("Sending SSE update to {} environments with clients in Project: {}. Payload type: {}",
+                 projectChannels.size(), projectId, ssePayload.getType());
+        byte[] payloadJson = serialize(ssePayload); // Frames differ only in their id
+        environmentRevisions.forEach((environmentId, revision) ->
+                sendRevisionedEvent(projectId, environmentId, projectChannels.get(environmentId), revision - 1, revision, configKeys, ssePayload,
+                        frame(ssePayload.getType(), revision, payloadJson), null));
+    }
+
+    private void sendRevisionedEvent(Long projectId, Long environmentId, Channel channel, long fromRevision, long revision,
+                                     Collection<String> configKeys, ConfigUpdateSseDto ssePayload, byte[] frame, FollowUp followUp) {
+        EventHistory history = historyFor(projectId, environmentId, fromRevision);
+        byte[] resyncFrame = encodeResyncFrame(revision);
+        // Queuing under the lock keeps each client's events in revision order.
+        synchronized (history) {
+            if (history.covers(revision)) {
+                // Delivered again, the outbox relay and cluster bus being at-least-once
+                log.debug("Skipping SSE event for {}/{} at revision {}, it was already sent.", projectId, environmentId, revision);
+                return;
+            }
+            history.add(new BufferedEvent(fromRevision, revision, configKeys, frame, followUp), replayBufferSize);
+            sendToSubscribers(projectId, environmentId, channel, revision, configKeys, ssePayload.getType(), frame, resyncFrame);
+            if (followUp != null) {
+                sendToSubscribers(projectId, environmentId, channel, revision, followUp.configKeys(), followUp.eventType(), followUp.frame(), resyncFrame);
+            }
+        }
+    }
+
+    /**
+     * Sends a last event to the clients of a deleted environment, then closes their connections and drops the
+     * environment's event history.
+     */
+    public void closeEnvironment(Long projectId, Long environmentId, ConfigUpdateSseDto ssePayload) {
+        eventHistories.computeIfPresent(projectId, (p, histories) -> {
+            histories.remove(environmentId);
+            return histories.isEmpty() ? null : histories;
         });
-        emitter.onError(e -> {
-            log.error("SseEmitter error for {}/{}: {}", projectId, environmentId, e.getMessage());
-            removeEmitter(projectId, environmentId, emitter);
+        Channel[] removed = new Channel[1];
+        channels.computeIfPresent(projectId, (p, projectChannels) -> {
+            removed[0] = projectChannels.remove(environmentId);
+            return projectChannels.isEmpty() ? null : projectChannels;
         });
+        if (removed[0] != null) {
+            int closed = finishChannel(removed[0], encodeFrame(ssePayload, null));
+            log.info("Closing {} SSE connections of deleted Environment: {} in Project: {}", closed, environmentId, projectId);
+        }
+    }
 
-        projectEnvEmitters.computeIfAbsent(emitterKey, k -> new CopyOnWriteArrayList<>()).add(emitter);
-        log.info("SseEmitter created and registered for Project: {}, Environment: {}. Current active for key: {}", 
-                 projectId, environmentId, projectEnvEmitters.get(emitterKey).size());
-        
-        try {
-            emitter.send(SseEmitter.event().name("connection_established").data("SSE connection established for " + emitterKey).id(String.valueOf(System.currentTimeMillis())));
-            emitter.send(SseEmitter.event().comment("ping"));
-        } catch (IOException e) {
-            log.warn("Failed to send initial messages for emitter {}: {}. Removing.", emitterKey, e.getMessage());
-            removeEmitter(projectId, environmentId, emitter);
+    /**
+     * Sends a last event to every client of a deleted project, then closes all their connections and drops the
+     * project's event histories, in bulk.
+     */
+    public void closeProject(Long projectId, ConfigUpdateSseDto ssePayload) {
+        eventHistories.remove(projectId);
+        Map<Long, Channel> projectChannels = channels.remove(projectId);
+        if (projectChannels == null) {
+            return;
         }
-        return emitter;
+        byte[] frame = encodeFrame(ssePayload, null);
+        int closed = 0;
+        for (Channel channel : projectChannels.values()) {
+            closed += finishChannel(channel, frame);
+        }
+        log.info("Closing {} SSE connections of deleted Project: {}", closed, projectId);
     }
 
-    public void removeEmitter(Long projectId, Long environmentId, SseEmitter emitter) {
-        String emitterKey = getEmitterKey(projectId, environmentId);
-        List<SseEmitter> emitters = projectEnvEmitters.get(emitterKey);
-        if (emitters != null) {
-            boolean removed = emitters.remove(emitter);
-            if (removed) {
-                log.info("SseEmitter removed for Project: {}, Environment: {}. Remaining for key: {}", 
-                         projectId, environmentId, emitters.size());
-            }
-            if (emitters.isEmpty()) {
-                projectEnvEmitters.remove(emitterKey);
-                log.info("No more emitters for key {}, removing from map.", emitterKey);
+    /**
+     * Tells every connected client to reload its state and forgets all buffered events, for when events may have
+     * been missed (e.g. while this node was cut off from the other nodes of a cluster). Clients reconnecting with an
+     * older id are then asked to resync as well.
+     */
+    public void resyncAll() {
+        eventHistories.clear();
+        byte[] resyncFrame = encodeResyncFrame(null);
+        int resynced = 0;
+        for (Map<Long, Channel> projectChannels : channels.values()) {
+            for (Channel channel : projectChannels.values()) {
+                for (SseSubscriber subscriber : channel.subscribers) {
+                    subscriber.offer(resyncFrame, resyncFrame);
+                    resynced++;
+                }
             }
         }
+        log.info("Requested resync from {} SSE clients.", resynced);
     }
 
-    public void sendUpdateToClients(Long projectId, Long environmentId, ConfigUpdateSseDto ssePayload) {
-        String emitterKey = getEmitterKey(projectId, environmentId);
-        List<SseEmitter> emitters = projectEnvEmitters.get(emitterKey);
+    // The channel is already unindexed, so the subscribers' own close callbacks find nothing left to remove.
+    private int finishChannel(Channel channel, byte[] lastFrame) {
+        channel.removeMeters();
+        channel.subscribers.forEach(subscriber -> subscriber.finish(lastFrame));
+        return channel.subscribers.size();
+    }
 
-        if (emitters == null || emitters.isEmpty()) {
+    private EventHistory historyFor(Long projectId, Long environmentId, long floorRevision) {
+        return eventHistories.computeIfAbsent(projectId, p -> new ConcurrentHashMap<>())
+                .computeIfAbsent(environmentId, e -> new EventHistory(floorRevision));
+    }
+
+    // The frame is encoded once and queued as-is for every interested subscriber; the fan-out executor does the writing.
+    private void sendToSubscribers(Long projectId, Long environmentId, Channel channel, long revision, Collection<String> configKeys,
+                                   String eventType, byte[] frame, byte[] resyncFrame) {
+        if (channel == null || channel.subscribers.isEmpty()) {
             log.debug("No active SSE clients for Project: {}, Environment: {} to send update.", projectId, environmentId);
             return;
         }
 
-        log.info("Sending SSE update to {} clients for Project: {}, Environment: {}. Payload type: {}", 
-                 emitters.size(), projectId, environmentId, ssePayload.getType());
+        Collection<SseSubscriber> recipients = configKeys != null ? channel.index.route(configKeys) : channel.subscribers;
+        log.info("Sending SSE update to {} of {} clients for Project: {}, Environment: {}. Payload type: {}",
+                 recipients.size(), channel.subscribers.size(), projectId, environmentId, eventType);
 
-        List<SseEmitter> emittersToRemove = new CopyOnWriteArrayList<>();
-        for (SseEmitter emitter : emitters) {
-            try {
-                SseEmitter.SseEventBuilder event = SseEmitter.event()
-                        .data(ssePayload, MediaType.APPLICATION_JSON)
-                        .name(ssePayload.getType())
-                        .id(String.valueOf(System.currentTimeMillis()));
-                emitter.send(event);
-                log.debug("Successfully sent SSE event to an emitter for key {}", emitterKey);
-            } catch (IOException e) {
-                log.warn("Failed to send SSE event to an emitter for key {}: {}. Marking for removal.", emitterKey, e.getMessage());
-                emittersToRemove.add(emitter); 
+        for (SseSubscriber subscriber : recipients) {
+            if (subscriber.hasRevision(revision)) {
+                continue;
+            }
+            if (subscriber.offer(frame, resyncFrame) == SseSubscriber.OfferResult.COALESCED) {
+                log.debug("SSE queue of a subscriber for {}/{} overflowed, pending events coalesced into a resync.", projectId, environmentId);
             }
         }
-        
-        emittersToRemove.forEach(e -> {
-            List<SseEmitter> currentEmitters = projectEnvEmitters.get(emitterKey);
-            if(currentEmitters != null) currentEmitters.remove(e);
-        });
     }
 
-    private String getEmitterKey(Long projectId, Long environmentId) {
-        return projectId + ":" + environmentId;
+    /**
+     * Encodes a complete SSE event ({@code id}, {@code event} and a single-line JSON {@code data} field) into the
+     * bytes written to the wire, so it is serialized once however many clients receive it.
+     */
+    private byte[] encodeFrame(ConfigUpdateSseDto ssePayload, Long revision) {
+        return frame(ssePayload.getType(), revision, serialize(ssePayload));
+    }
+
+    private byte[] serialize(ConfigUpdateSseDto ssePayload) {
+        try {
+            return objectMapper.writeValueAsBytes(ssePayload); // Compact JSON never contains a raw line break
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize SSE payload of type " + ssePayload.getType(), e);
+        }
+    }
+
+    private byte[] frame(String eventType, Long revision, byte[] payloadJson) {
+        StringBuilder fields = new StringBuilder();
+        if (revision != null) {
+            fields.append("id:").append(revision).append('\n');
+        }
+        fields.append("event:").append(eventType).append('\n').append("data:");
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payloadJson.length + 64);
+        frame.writeBytes(fields.toString().getBytes(StandardCharsets.UTF_8));
+        frame.writeBytes(payloadJson);
+        frame.writeBytes(new byte[] {'\n', '\n'});
+        return frame.toByteArray();
+    }
+
+    private byte[] encodeResyncFrame(Long revision) {
+        Map<String, Object> payload = revision != null ? Map.of("revision", revision) : Map.of();
+        return encodeFrame(new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_RESYNC, payload), revision);
+    }
+
+    private void sendFrame(SseEmitter emitter, byte[] frame) throws IOException {
+        emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(frame, MediaType.TEXT_PLAIN)));
     }
 
-    @Scheduled(fixedRate = HEARTBEAT_INTERVAL_MS)
+    /**
+     * Advances the heartbeat wheel by one slot, evicts stalled subscribers and unindexes the subscribers closed since
+     * the previous tick. Heartbeats are only queued here; the fan-out executor writes them.
+     */
+    @Scheduled(fixedRate = HEARTBEAT_TICK_MS)
     public void sendHeartbeats() {
-        if (projectEnvEmitters.isEmpty()) {
-            return;
+        evictStalledSubscribers();
+        removeClosedSubscribers();
+        int sent = heartbeatWheel.tick();
+        log.trace("Queued {} SSE heartbeats, {} connections on the heartbeat wheel", sent, heartbeatWheel.size());
+    }
+
+    // Only subscribers with frames pending can be stalled, so only those are checked: a stalled one keeps its frames
+    // pending, a blocked write never ends its drain. Checked every tick, a client that stopped reading is evicted in
+    // time even when nothing more is published to it.
+    private void evictStalledSubscribers() {
+        long now = System.nanoTime();
+        channels.forEach((projectId, projectChannels) -> projectChannels.forEach((environmentId, channel) -> {
+            for (SseSubscriber subscriber : channel.draining) {
+                channel.draining.remove(subscriber);
+                if (subscriber.isClosed()) {
+                    continue;
+                }
+                if (subscriber.isStalled(now)) {
+                    log.warn("Disconnecting slow SSE subscriber for {}/{}: it has not kept up for longer than {} ms.",
+                             projectId, environmentId, slowSubscriberTimeoutMs);
+                    channel.evictedSubscribers.increment();
+                    subscriber.evict(this::borrowFanoutThread);
+                } else if (subscriber.isDraining()) {
+                    channel.draining.add(subscriber); // Checked after removing it, as a new drain only adds it before starting
+                }
+            }
+        }));
+    }
+
+    // Stands in for a fan-out thread held by a write blocked on an evicted client, until that write fails, so the other
+    // clients keep being written to. At most as many as the pool has: beyond that, stalled clients do hold it up.
+    private Runnable borrowFanoutThread() {
+        if (borrowedFanoutThreads.incrementAndGet() > fanoutThreads) {
+            borrowedFanoutThreads.decrementAndGet();
+            return () -> { };
         }
-        log.trace("Sending heartbeats to SSE clients. Number of emitter keys: {}", projectEnvEmitters.size());
-        projectEnvEmitters.forEach((key, emitters) -> {
-            if (emitters.isEmpty()) {
-                return;
+        resizeFanoutPool();
+        return () -> {
+            borrowedFanoutThreads.decrementAndGet();
+            resizeFanoutPool();
+        };
+    }
+
+    private synchronized void resizeFanoutPool() {
+        int size = fanoutThreads + borrowedFanoutThreads.get();
+        if (size > fanoutExecutor.getMaximumPoolSize()) { // The core size may never exceed the maximum
+            fanoutExecutor.setMaximumPoolSize(size);
+            fanoutExecutor.setCorePoolSize(size);
+        } else {
+            fanoutExecutor.setCorePoolSize(size);
+            fanoutExecutor.setMaximumPoolSize(size);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanoutExecutor.shutdownNow();
+    }
+
+    private record ClosedSubscriber(Long projectId, Long environmentId, SseSubscriber subscriber) {}
+
+    /**
+     * The subscribers of one environment and their fan-out metrics, tagged with the project and environment.
+     */
+    private final class Channel {
+        private final List<SseSubscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final SubscriptionIndex index = new SubscriptionIndex(); // Same subscribers, by the keys they follow
+        private final Set<SseSubscriber> draining = ConcurrentHashMap.newKeySet(); // May have frames pending, checked for stalls
+        private final Gauge queueDepth;
+        private final Counter droppedEvents;
+        private final Counter evictedSubscribers;
+        private final Timer fanoutLatency;
+
+        private Channel(Long projectId, Long environmentId) {
+            Tags tags = Tags.of("project", String.valueOf(projectId), "environment", String.valueOf(environmentId));
+            this.queueDepth = Gauge.builder("confx.sse.queue.depth", subscribers,
+                            list -> list.stream().mapToInt(SseSubscriber::queueDepth).sum())
+                    .description("SSE frames queued and not yet written, over all subscribers of the environment")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.droppedEvents = Counter.builder("confx.sse.events.dropped")
+                    .description("SSE events coalesced into a resync hint because a subscriber's queue was full")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.evictedSubscribers = Counter.builder("confx.sse.subscribers.evicted")
+                    .description("SSE subscribers disconnected for not keeping up (queue overflowing or a write blocked) for too long")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.fanoutLatency = Timer.builder("confx.sse.fanout.latency")
+                    .description("Time from queuing an SSE frame to writing it to a subscriber")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        private void removeMeters() {
+            meterRegistry.remove(queueDepth);
+            meterRegistry.remove(droppedEvents);
+            meterRegistry.remove(evictedSubscribers);
+            meterRegistry.remove(fanoutLatency);
+        }
+    }
+
+    /**
+     * An encoded event accounting for the revisions after {@code fromRevision} up to {@code revision}, about the given
+     * config keys ({@code null}: the whole environment).
+     */
+    private record BufferedEvent(long fromRevision, long revision, Collection<String> configKeys, byte[] frame, FollowUp followUp) {}
+
+    /**
+     * An encoded event without id that is sent, and replayed, right after the buffered event it belongs to.
+     */
+    private record FollowUp(Collection<String> configKeys, String eventType, byte[] frame) {}
+
+    /**
+     * Bounded, revision-ordered buffer of the recent events of one environment. Guarded by its own monitor.
+     */
+    private static final class EventHistory {
+        private final NavigableMap<Long, BufferedEvent> events = new TreeMap<>(); // By the revision they end at
+        // Events up to this revision are not buffered (evicted, or from before the buffer existed).
+        private long floorRevision;
+
+        private EventHistory(long floorRevision) {
+            this.floorRevision = floorRevision;
+        }
+
+        private void add(BufferedEvent event, int capacity) {
+            if (event.revision() <= floorRevision) {
+                return; // Already covered by what clients connecting after the floor loaded
             }
-            List<SseEmitter> emittersToRemoveOnHeartbeat = new ArrayList<>();
-            log.trace("Sending heartbeat to {} emitters for key: {}", emitters.size(), key);
-            for (SseEmitter emitter : emitters) {
-                try {
-                    emitter.send(SseEmitter.event().comment("ping"));
-                } catch (IOException e) {
-                    log.warn("Failed to send heartbeat to emitter for key {}: {}. Marking for removal.", key, e.getMessage());
-                    emittersToRemoveOnHeartbeat.add(emitter);
-                }
+            events.put(event.revision(), event); // Keyed by revision, so events committed out of order still replay in order
+            while (events.size() > capacity) {
+                floorRevision = events.pollFirstEntry().getKey();
             }
-            emittersToRemoveOnHeartbeat.forEach(e -> {
-                 emitters.remove(e);
-                 String[] parts = key.split(":");
-                 if (parts.length == 2) {
-                     try {
-                         Long pId = Long.parseLong(parts[0]);
-                         Long eId = Long.parseLong(parts[1]);
-                         removeEmitter(pId, eId, e);
-                     } catch (NumberFormatException nfe) {
-                         log.error("Could not parse project/environment ID from emitter key: {}", key, nfe);
-                     }
-                 }
-            });
-        });
+        }
+
+        // Whether a buffered event already accounts for the revision. Older revisions, no longer buffered, cannot tell.
+        private boolean covers(long revision) {
+            Map.Entry<Long, BufferedEvent> covering = events.ceilingEntry(revision);
+            return covering != null && covering.getValue().fromRevision() < revision;
+        }
     }
-} 
\ No newline at end of file
+}
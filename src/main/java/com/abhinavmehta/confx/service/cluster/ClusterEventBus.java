@@ -0,0 +1,400 @@
+package com.abhinavmehta.confx.service.cluster;
+
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.events.ConfigDependenciesChangedEvent;
+import com.abhinavmehta.confx.events.ConfigItemDeletedEvent;
+import com.abhinavmehta.confx.events.ConfigItemUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionsPublishedEvent;
+import com.abhinavmehta.confx.events.EnvironmentDeletedEvent;
+import com.abhinavmehta.confx.events.EnvironmentUpdatedEvent;
+import com.abhinavmehta.confx.events.ProjectDeletedEvent;
+import com.abhinavmehta.confx.service.ConfigVersionService;
+import com.abhinavmehta.confx.service.SseService;
+import com.abhinavmehta.confx.service.dependency.DependencyGraphService;
+import com.abhinavmehta.confx.service.dependency.DependencyIndexService;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.service.snapshot.EvaluationSnapshotService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Relays committed config changes between the nodes of a cluster through PostgreSQL {@code LISTEN/NOTIFY} on the
+ * application's datasource, so SSE clients and in-memory caches on every node see changes handled by any of them.
+ * <p>
+ * Outgoing, local events are turned into {@link ClusterMessage}s after commit and queued; each flush sends the
+ * queue as few notifications as fit PostgreSQL's payload limit. Incoming, a dedicated connection listens on the
+ * channel. Notifications sent by this node are skipped; for the others, the affected caches are evicted and the
+ * change is re-published as a local event, so the SSE listeners handle it like a local one. Re-published events
+ * have the bus as their source and are not relayed again.
+ * <p>
+ * Notifications sent while the listening connection is down are lost. On reconnect, every local cache is dropped
+ * and the connected SSE clients are asked to resync.
+ */
+@Component
+@ConditionalOnProperty(name = "confx.cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterEventBus {
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final int MAX_PAYLOAD_BYTES = 7900; // PostgreSQL rejects payloads of 8000 bytes or more
+    private static final int MAX_ITEMS_PER_MESSAGE = 250; // Keeps a bulk publish message below the limit, whatever the ids
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConfigVersionService configVersionService;
+    private final EnvironmentRevisionService environmentRevisionService;
+    private final EvaluationSnapshotService evaluationSnapshotService;
+    private final DependencyGraphService dependencyGraphService;
+    private final DependencyIndexService dependencyIndexService;
+    private final SseService sseService;
+    private final String channel;
+    private final long pollTimeoutMs;
+    private final long reconnectDelayMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Queue<ClusterMessage> outgoing = new ConcurrentLinkedQueue<>();
+    private final List<String> unsentPayloads = new ArrayList<>(); // Left over by a failed flush. Only touched by flush()
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public ClusterEventBus(DataSource dataSource,
+                           JdbcTemplate jdbcTemplate,
+                           ObjectMapper objectMapper,
+                           ApplicationEventPublisher eventPublisher,
+                           ConfigVersionService configVersionService,
+                           EnvironmentRevisionService environmentRevisionService,
+                           EvaluationSnapshotService evaluationSnapshotService,
+                           DependencyGraphService dependencyGraphService,
+                           DependencyIndexService dependencyIndexService,
+                           SseService sseService,
+                           @Value("${confx.cluster.channel:confx_cluster_events}") String channel,
+                           @Value("${confx.cluster.poll-timeout-ms:500}") long pollTimeoutMs,
+                           @Value("${confx.cluster.reconnect-delay-ms:5000}") long reconnectDelayMs) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid cluster channel name: " + channel + ". Use lowercase letters, digits and underscores.");
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.configVersionService = configVersionService;
+        this.environmentRevisionService = environmentRevisionService;
+        this.evaluationSnapshotService = evaluationSnapshotService;
+        this.dependencyGraphService = dependencyGraphService;
+        this.dependencyIndexService = dependencyIndexService;
+        this.sseService = sseService;
+        this.channel = channel;
+        this.pollTimeoutMs = pollTimeoutMs;
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    // Started once the application is ready, so migrations have run and requests can be served.
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listenerThread = Thread.ofPlatform().daemon().name("confx-cluster-listener").start(this::listen);
+        log.info("Cluster event bus started on channel '{}' as node {}", channel, nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+        flush(); // Changes committed just before shutdown still reach the other nodes
+    }
+
+    // Outgoing: relay committed local changes
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigVersionUpdated(ConfigVersionUpdatedEvent event) {
+        if (event.getSource() != this) {
+            ConfigVersionResponseDto version = event.getUpdatedConfigVersionData();
+            outgoing.add(ClusterMessage.versionPublished(event.getProjectId(), event.getEnvironmentId(),
+                    version.getConfigItemId(), version.getVersionNumber(), event.getRevision()));
+        }
+    }
+
+    // Split into messages of a bounded size, each standing for its own slice of the revision range.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigVersionsPublished(ConfigVersionsPublishedEvent event) {
+        if (event.getSource() != this) {
+            for (ConfigVersionsPublishedEvent.EnvironmentVersions published : event.getEnvironments()) {
+                List<Long> itemIds = published.versions().stream().map(ConfigVersionResponseDto::getConfigItemId).toList();
+                for (int from = 0; from < itemIds.size(); from += MAX_ITEMS_PER_MESSAGE) {
+                    int to = Math.min(from + MAX_ITEMS_PER_MESSAGE, itemIds.size());
+                    outgoing.add(ClusterMessage.versionsPublished(event.getProjectId(), published.environmentId(),
+                            itemIds.subList(from, to), published.fromRevision() + to));
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigItemUpdated(ConfigItemUpdatedEvent event) {
+        if (event.getSource() != this) {
+            outgoing.add(ClusterMessage.configItemUpdated(event.getProjectId(), event.getConfigItemId(), event.getConfigKey()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigItemDeleted(ConfigItemDeletedEvent event) {
+        if (event.getSource() != this) {
+            outgoing.add(ClusterMessage.configItemDeleted(event.getProjectId(), event.getConfigItemId(), event.getConfigKey(),
+                    event.getEnvironmentRevisions()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleConfigDependenciesChanged(ConfigDependenciesChangedEvent event) {
+        if (event.getSource() != this) {
+            outgoing.add(ClusterMessage.dependenciesChanged(event.getProjectId()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleEnvironmentUpdated(EnvironmentUpdatedEvent event) {
+        if (event.getSource() != this) {
+            outgoing.add(ClusterMessage.environmentUpdated(event.getProjectId(), event.getEnvironmentId()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleEnvironmentDeleted(EnvironmentDeletedEvent event) {
+        if (event.getSource() != this) {
+            outgoing.add(ClusterMessage.environmentDeleted(event.getProjectId(), event.getEnvironmentId()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleProjectDeleted(ProjectDeletedEvent event) {
+        if (event.getSource() != this) {
+            outgoing.add(ClusterMessage.projectDeleted(event.getProjectId()));
+        }
+    }
+
+    /**
+     * Sends everything queued since the last flush, packed into as few notifications as possible. Payloads that
+     * could not be sent are retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${confx.cluster.flush-interval-ms:50}")
+    public synchronized void flush() {
+        List<ClusterMessage> messages = new ArrayList<>();
+        for (ClusterMessage message; (message = outgoing.poll()) != null; ) {
+            messages.add(message);
+        }
+        unsentPayloads.addAll(pack(messages));
+        while (!unsentPayloads.isEmpty()) {
+            String payload = unsentPayloads.get(0);
+            try {
+                jdbcTemplate.execute("SELECT pg_notify(?, ?)", (PreparedStatementCallback<Void>) statement -> {
+                    statement.setString(1, channel);
+                    statement.setString(2, payload);
+                    statement.execute();
+                    return null;
+                });
+            } catch (DataAccessException e) {
+                log.warn("Could not send {} cluster notifications, retrying on the next flush: {}", unsentPayloads.size(), e.getMessage());
+                return;
+            }
+            unsentPayloads.remove(0);
+        }
+        if (!messages.isEmpty()) {
+            log.debug("Sent {} cluster messages on channel '{}'", messages.size(), channel);
+        }
+    }
+
+    // Packs messages into envelopes of at most MAX_PAYLOAD_BYTES each, keeping their order.
+    private List<String> pack(List<ClusterMessage> messages) {
+        List<String> payloads = new ArrayList<>();
+        String header = "{\"node\":\"" + nodeId + "\",\"messages\":[";
+        StringBuilder payload = new StringBuilder(header);
+        int payloadBytes = header.length() + 2; // Plus the closing "]}"
+        int count = 0;
+        for (ClusterMessage message : messages) {
+            String json = toJson(message);
+            int jsonBytes = json.getBytes(StandardCharsets.UTF_8).length + 1; // Plus a separating comma
+            if (count > 0 && payloadBytes + jsonBytes > MAX_PAYLOAD_BYTES) {
+                payloads.add(payload.append("]}").toString());
+                payload = new StringBuilder(header);
+                payloadBytes = header.length() + 2;
+                count = 0;
+            }
+            if (count > 0) {
+                payload.append(',');
+            }
+            payload.append(json);
+            payloadBytes += jsonBytes;
+            count++;
+        }
+        if (count > 0) {
+            payloads.add(payload.append("]}").toString());
+        }
+        return payloads;
+    }
+
+    private String toJson(ClusterMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize cluster message of type " + message.type(), e);
+        }
+    }
+
+    // Incoming: apply the other nodes' changes
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    log.warn("Cluster listener reconnected; changes may have been missed, dropping local caches.");
+                    dropLocalState();
+                }
+                connectedBefore = true;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeoutMs);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cluster listener lost its connection, reconnecting in {} ms: {}", reconnectDelayMs, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelayMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        Envelope envelope;
+        try {
+            envelope = objectMapper.readValue(payload, Envelope.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed cluster notification: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(envelope.node())) {
+            return; // Our own, already applied locally
+        }
+        for (ClusterMessage message : envelope.messages()) {
+            try {
+                apply(message);
+            } catch (RuntimeException e) {
+                log.error("Failed to apply cluster message {} from node {}", message, envelope.node(), e);
+            }
+        }
+    }
+
+    // Caches evicted here are the ones the publishing node evicts in its own transaction; the rest is done by the
+    // listeners of the re-published event.
+    private void apply(ClusterMessage message) {
+        log.debug("Applying cluster message {}", message);
+        switch (message.type()) {
+            case VERSION_PUBLISHED -> {
+                environmentRevisionService.evictEnvironment(message.projectId(), message.environmentId());
+                ConfigVersionResponseDto version;
+                try {
+                    version = configVersionService.getConfigVersionByNumber(message.projectId(), message.environmentId(),
+                            message.configItemId(), message.versionNumber());
+                } catch (EntityNotFoundException e) {
+                    log.debug("Skipping relayed version update, it was deleted meanwhile: {}", e.getMessage());
+                    return;
+                }
+                eventPublisher.publishEvent(new ConfigVersionUpdatedEvent(this, message.projectId(), message.environmentId(),
+                        version, message.revision()));
+            }
+            case VERSIONS_PUBLISHED -> {
+                environmentRevisionService.evictEnvironment(message.projectId(), message.environmentId());
+                // The items' current versions, which are the published ones unless they changed again meanwhile
+                List<ConfigVersionResponseDto> versions;
+                try {
+                    versions = configVersionService.getActiveConfigVersions(message.projectId(), message.environmentId(),
+                            message.configItemIds());
+                } catch (EntityNotFoundException e) {
+                    log.debug("Skipping relayed bulk publish, its environment was deleted meanwhile: {}", e.getMessage());
+                    return;
+                }
+                long fromRevision = message.revision() - message.configItemIds().size();
+                eventPublisher.publishEvent(new ConfigVersionsPublishedEvent(this, message.projectId(), List.of(
+                        new ConfigVersionsPublishedEvent.EnvironmentVersions(message.environmentId(), fromRevision, message.revision(), versions))));
+            }
+            case CONFIG_ITEM_UPDATED -> {
+                environmentRevisionService.evictProject(message.projectId());
+                eventPublisher.publishEvent(new ConfigItemUpdatedEvent(this, message.projectId(), message.configItemId(), message.configKey()));
+            }
+            case CONFIG_ITEM_DELETED -> {
+                environmentRevisionService.evictProject(message.projectId());
+                eventPublisher.publishEvent(new ConfigItemDeletedEvent(this, message.projectId(), message.configItemId(),
+                        message.configKey(), message.environmentRevisions()));
+            }
+            case DEPENDENCIES_CHANGED -> {
+                dependencyIndexService.evictProject(message.projectId()); // Kept up to date in place on the writing node
+                eventPublisher.publishEvent(new ConfigDependenciesChangedEvent(this, message.projectId()));
+            }
+            case ENVIRONMENT_UPDATED -> {
+                environmentRevisionService.evictEnvironment(message.projectId(), message.environmentId());
+                eventPublisher.publishEvent(new EnvironmentUpdatedEvent(this, message.projectId(), message.environmentId()));
+            }
+            case ENVIRONMENT_DELETED ->
+                eventPublisher.publishEvent(new EnvironmentDeletedEvent(this, message.projectId(), message.environmentId()));
+            case PROJECT_DELETED ->
+                eventPublisher.publishEvent(new ProjectDeletedEvent(this, message.projectId()));
+        }
+    }
+
+    private void dropLocalState() {
+        environmentRevisionService.evictAll();
+        evaluationSnapshotService.evictAll();
+        dependencyGraphService.evictAll();
+        dependencyIndexService.evictAll();
+        sseService.resyncAll();
+    }
+
+    private record Envelope(String node, List<ClusterMessage> messages) {}
+}
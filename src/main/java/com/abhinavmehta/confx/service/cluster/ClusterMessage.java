@@ -0,0 +1,66 @@
+package com.abhinavmehta.confx.service.cluster;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A committed change as relayed to the other nodes. Only identifiers travel: receivers reload whatever else they
+ * need, which keeps notifications far below PostgreSQL's payload limit. Fields a type does not use are null.
+ */
+public record ClusterMessage(Type type,
+                             Long projectId,
+                             Long environmentId,
+                             Long configItemId,
+                             String configKey,
+                             Integer versionNumber,
+                             Long revision,
+                             Map<Long, Long> environmentRevisions,
+                             List<Long> configItemIds) {
+
+    public enum Type {
+        VERSION_PUBLISHED,
+        VERSIONS_PUBLISHED,
+        CONFIG_ITEM_UPDATED,
+        CONFIG_ITEM_DELETED,
+        DEPENDENCIES_CHANGED,
+        ENVIRONMENT_UPDATED,
+        ENVIRONMENT_DELETED,
+        PROJECT_DELETED
+    }
+
+    public static ClusterMessage versionPublished(Long projectId, Long environmentId, Long configItemId, Integer versionNumber, long revision) {
+        return new ClusterMessage(Type.VERSION_PUBLISHED, projectId, environmentId, configItemId, null, versionNumber, revision, null, null);
+    }
+
+    /**
+     * Versions of the given config items published together in one environment, as the revisions right up to
+     * {@code revision}, one per item.
+     */
+    public static ClusterMessage versionsPublished(Long projectId, Long environmentId, List<Long> configItemIds, long revision) {
+        return new ClusterMessage(Type.VERSIONS_PUBLISHED, projectId, environmentId, null, null, null, revision, null, configItemIds);
+    }
+
+    public static ClusterMessage configItemUpdated(Long projectId, Long configItemId, String configKey) {
+        return new ClusterMessage(Type.CONFIG_ITEM_UPDATED, projectId, null, configItemId, configKey, null, null, null, null);
+    }
+
+    public static ClusterMessage configItemDeleted(Long projectId, Long configItemId, String configKey, Map<Long, Long> environmentRevisions) {
+        return new ClusterMessage(Type.CONFIG_ITEM_DELETED, projectId, null, configItemId, configKey, null, null, environmentRevisions, null);
+    }
+
+    public static ClusterMessage dependenciesChanged(Long projectId) {
+        return new ClusterMessage(Type.DEPENDENCIES_CHANGED, projectId, null, null, null, null, null, null, null);
+    }
+
+    public static ClusterMessage environmentUpdated(Long projectId, Long environmentId) {
+        return new ClusterMessage(Type.ENVIRONMENT_UPDATED, projectId, environmentId, null, null, null, null, null, null);
+    }
+
+    public static ClusterMessage environmentDeleted(Long projectId, Long environmentId) {
+        return new ClusterMessage(Type.ENVIRONMENT_DELETED, projectId, environmentId, null, null, null, null, null, null);
+    }
+
+    public static ClusterMessage projectDeleted(Long projectId) {
+        return new ClusterMessage(Type.PROJECT_DELETED, projectId, null, null, null, null, null, null, null);
+    }
+}
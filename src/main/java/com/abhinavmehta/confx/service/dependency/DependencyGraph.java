@@ -0,0 +1,184 @@
+package com.abhinavmehta.confx.service.dependency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, topologically sorted view of a project's config dependencies.
+ * Nodes are numbered by rank: every prerequisite has a lower rank than its dependents, so walking ranks in
+ * ascending order always visits prerequisites first. Nodes on (or downstream of) a cycle cannot be ordered;
+ * they get the highest ranks and are flagged as cyclic.
+ */
+public class DependencyGraph {
+
+    private static final int[] NO_EDGES = new int[0];
+    private static final String[] NO_VALUES = new String[0];
+
+    private final Long projectId;
+    private final long[] itemIdByRank;
+    private final Map<Long, Integer> rankByItemId;
+    // Per rank, in dependency creation order: prerequisite ranks and the value each one is expected to evaluate to
+    private final int[][] prerequisiteRanks;
+    private final String[][] expectedValues;
+    // Reverse adjacency: per rank, the ranks of its direct dependents
+    private final int[][] dependentRanks;
+    private final int acyclicCount;
+
+    private DependencyGraph(Long projectId, long[] itemIdByRank, Map<Long, Integer> rankByItemId,
+                            int[][] prerequisiteRanks, String[][] expectedValues, int[][] dependentRanks, int acyclicCount) {
+        this.projectId = projectId;
+        this.itemIdByRank = itemIdByRank;
+        this.rankByItemId = rankByItemId;
+        this.prerequisiteRanks = prerequisiteRanks;
+        this.expectedValues = expectedValues;
+        this.dependentRanks = dependentRanks;
+        this.acyclicCount = acyclicCount;
+    }
+
+    public record Edge(long dependentItemId, long prerequisiteItemId, String expectedValue) {}
+
+    /**
+     * Builds the graph with Kahn's algorithm in O(nodes + edges).
+     * @param edges Dependencies in creation order; that order is kept for each dependent's prerequisites.
+     */
+    public static DependencyGraph build(Long projectId, List<Edge> edges) {
+        Map<Long, Integer> nodeByItemId = new HashMap<>();
+        List<Long> itemIds = new ArrayList<>();
+        for (Edge edge : edges) {
+            for (long itemId : new long[]{edge.dependentItemId(), edge.prerequisiteItemId()}) {
+                if (nodeByItemId.putIfAbsent(itemId, itemIds.size()) == null) {
+                    itemIds.add(itemId);
+                }
+            }
+        }
+        int nodeCount = itemIds.size();
+        int[] inDegree = new int[nodeCount];
+        List<List<Integer>> dependentsByNode = new ArrayList<>(nodeCount);
+        List<List<Edge>> prerequisitesByNode = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            dependentsByNode.add(new ArrayList<>());
+            prerequisitesByNode.add(new ArrayList<>());
+        }
+        for (Edge edge : edges) {
+            int dependent = nodeByItemId.get(edge.dependentItemId());
+            int prerequisite = nodeByItemId.get(edge.prerequisiteItemId());
+            dependentsByNode.get(prerequisite).add(dependent);
+            prerequisitesByNode.get(dependent).add(edge);
+            inDegree[dependent]++;
+        }
+
+        int[] nodeByRank = new int[nodeCount];
+        int ranked = 0;
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int node = 0; node < nodeCount; node++) {
+            if (inDegree[node] == 0) {
+                ready.add(node);
+            }
+        }
+        while (!ready.isEmpty()) {
+            int node = ready.poll();
+            nodeByRank[ranked++] = node;
+            for (int dependent : dependentsByNode.get(node)) {
+                if (--inDegree[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        int acyclicCount = ranked;
+        for (int node = 0; node < nodeCount; node++) {
+            if (inDegree[node] > 0) {
+                nodeByRank[ranked++] = node; // Left over by Kahn's algorithm: part of, or behind, a cycle
+            }
+        }
+
+        long[] itemIdByRank = new long[nodeCount];
+        Map<Long, Integer> rankByItemId = new HashMap<>(nodeCount * 2);
+        for (int rank = 0; rank < nodeCount; rank++) {
+            itemIdByRank[rank] = itemIds.get(nodeByRank[rank]);
+            rankByItemId.put(itemIdByRank[rank], rank);
+        }
+        int[][] prerequisiteRanks = new int[nodeCount][];
+        String[][] expectedValues = new String[nodeCount][];
+        for (int rank = 0; rank < nodeCount; rank++) {
+            List<Edge> prerequisites = prerequisitesByNode.get(nodeByRank[rank]);
+            if (prerequisites.isEmpty()) {
+                prerequisiteRanks[rank] = NO_EDGES;
+                expectedValues[rank] = NO_VALUES;
+                continue;
+            }
+            prerequisiteRanks[rank] = new int[prerequisites.size()];
+            expectedValues[rank] = new String[prerequisites.size()];
+            for (int i = 0; i < prerequisites.size(); i++) {
+                prerequisiteRanks[rank][i] = rankByItemId.get(prerequisites.get(i).prerequisiteItemId());
+                expectedValues[rank][i] = prerequisites.get(i).expectedValue();
+            }
+        }
+        int[][] dependentRanks = new int[nodeCount][];
+        for (int rank = 0; rank < nodeCount; rank++) {
+            List<Integer> dependents = dependentsByNode.get(nodeByRank[rank]);
+            dependentRanks[rank] = dependents.isEmpty() ? NO_EDGES : new int[dependents.size()];
+            for (int i = 0; i < dependents.size(); i++) {
+                dependentRanks[rank][i] = rankByItemId.get(itemIds.get(dependents.get(i)));
+            }
+        }
+        return new DependencyGraph(projectId, itemIdByRank, rankByItemId, prerequisiteRanks, expectedValues, dependentRanks, acyclicCount);
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public int size() {
+        return itemIdByRank.length;
+    }
+
+    /**
+     * @return The node's rank, or -1 if the item takes part in no dependency.
+     */
+    public int rankOf(Long itemId) {
+        Integer rank = rankByItemId.get(itemId);
+        return rank == null ? -1 : rank;
+    }
+
+    public long itemIdAt(int rank) {
+        return itemIdByRank[rank];
+    }
+
+    public int[] prerequisiteRanksAt(int rank) {
+        return prerequisiteRanks[rank];
+    }
+
+    public String[] expectedValuesAt(int rank) {
+        return expectedValues[rank];
+    }
+
+    public boolean isCyclic(int rank) {
+        return rank >= acyclicCount;
+    }
+
+    /**
+     * Marks the direct and transitive dependents of the given node, i.e. every node whose evaluation can change
+     * when it does. The node itself is not marked (unless it sits on a cycle).
+     */
+    public BitSet dependentClosure(int rank) {
+        BitSet closure = new BitSet(itemIdByRank.length);
+        int[] stack = new int[itemIdByRank.length];
+        int size = 0;
+        stack[size++] = rank;
+        while (size > 0) {
+            int current = stack[--size];
+            for (int dependent : dependentRanks[current]) {
+                if (!closure.get(dependent)) {
+                    closure.set(dependent);
+                    stack[size++] = dependent;
+                }
+            }
+        }
+        return closure;
+    }
+}
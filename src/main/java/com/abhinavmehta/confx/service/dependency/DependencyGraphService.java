@@ -0,0 +1,50 @@
+package com.abhinavmehta.confx.service.dependency;
+
+import com.abhinavmehta.confx.entity.ConfigDependency;
+import com.abhinavmehta.confx.repository.ConfigDependencyRepository;
+import com.abhinavmehta.confx.service.helpers.SingleFlightCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Caches one {@link DependencyGraph} per project. Graphs are built on first use and dropped when the
+ * project's dependencies change; the next evaluation rebuilds it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DependencyGraphService {
+
+    private final ConfigDependencyRepository dependencyRepository;
+    private final SingleFlightCache<Long, DependencyGraph> graphs = new SingleFlightCache<>();
+
+    public DependencyGraph getGraph(Long projectId) {
+        return graphs.get(projectId, this::load);
+    }
+
+    public void evictProject(Long projectId) {
+        graphs.evict(projectId);
+        log.debug("Evicted dependency graph for Project: {}", projectId);
+    }
+
+    public void evictAll() {
+        graphs.evictAll();
+        log.debug("Evicted all dependency graphs");
+    }
+
+    private DependencyGraph load(Long projectId) {
+        // Only ids are read from the lazy item associations, so this stays a single query.
+        List<DependencyGraph.Edge> edges = dependencyRepository.findAllByDependentProject(projectId).stream()
+            .sorted(Comparator.comparing(ConfigDependency::getId))
+            .map(d -> new DependencyGraph.Edge(
+                d.getDependentConfigItem().getId(),
+                d.getPrerequisiteConfigItem().getId(),
+                d.getPrerequisiteExpectedValue()))
+            .toList();
+        return DependencyGraph.build(projectId, edges);
+    }
+}
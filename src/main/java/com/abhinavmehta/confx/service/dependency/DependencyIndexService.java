@@ -0,0 +1,156 @@
+package com.abhinavmehta.confx.service.dependency;
+
+import com.abhinavmehta.confx.entity.ConfigDependency;
+import com.abhinavmehta.confx.repository.ConfigDependencyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link ProjectDependencyIndex} per project for validating new dependencies in memory.
+ * <p>
+ * Edges are added to the index as soon as they pass validation, inside the caller's transaction, and taken out
+ * again if that transaction rolls back. Concurrent writers therefore see each other's pending edges, which can
+ * only make the check stricter. Callers are expected to serialize dependency writes per project (see
+ * {@code ConfigDependencyService}) and to {@link #synchronize} the index under that lock: an index is only used at
+ * the project's current dependency version, which every dependency change bumps, so it reflects all committed
+ * edges even when they were written by another node whose eviction message has not arrived yet.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DependencyIndexService {
+
+    private final ConfigDependencyRepository dependencyRepository;
+    private final Map<Long, VersionedIndex> indexes = new ConcurrentHashMap<>();
+
+    // An index with the project's dependency version it reflects, -1 if unknown
+    private record VersionedIndex(ProjectDependencyIndex index, long dependencyVersion) {}
+
+    /**
+     * Reloads the project's index unless it reflects the given dependency version. To be called holding the
+     * project's dependency lock, with the version read under it.
+     */
+    public void synchronize(Long projectId, long dependencyVersion) {
+        VersionedIndex current = indexes.get(projectId);
+        if (current != null && current.dependencyVersion() == dependencyVersion) {
+            return;
+        }
+        if (current != null) {
+            log.debug("Reloading dependency index for Project: {} (version {}, now {})", projectId, current.dependencyVersion(), dependencyVersion);
+        }
+        indexes.put(projectId, new VersionedIndex(load(projectId), dependencyVersion));
+    }
+
+    /**
+     * Records that the surrounding transaction bumps the project's dependency version to the given one. The index,
+     * holding this transaction's changes, takes it on commit.
+     */
+    public void advanceVersion(Long projectId, long dependencyVersion) {
+        ProjectDependencyIndex index = getIndex(projectId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            indexes.computeIfPresent(projectId, (id, current) -> current.index() == index ? new VersionedIndex(index, dependencyVersion) : current);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Unless it was replaced meanwhile, e.g. reloaded by the next writer
+                indexes.computeIfPresent(projectId, (id, current) -> current.index() == index ? new VersionedIndex(index, dependencyVersion) : current);
+            }
+        });
+    }
+
+    public boolean hasDependency(Long projectId, Long dependentItemId, Long prerequisiteItemId) {
+        return getIndex(projectId).hasEdge(dependentItemId, prerequisiteItemId);
+    }
+
+    /**
+     * Adds the dependency to the project's index unless it would create a cycle.
+     * @return false if adding it would create a circular dependency.
+     */
+    public boolean tryAddDependency(Long projectId, Long dependentItemId, Long prerequisiteItemId) {
+        ProjectDependencyIndex index = getIndex(projectId);
+        if (!index.tryAddEdge(dependentItemId, prerequisiteItemId)) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        index.removeEdge(dependentItemId, prerequisiteItemId);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Drops a tentatively added dependency right away, e.g. when a later entry of the same batch is rejected.
+     */
+    public void discardDependency(Long projectId, Long dependentItemId, Long prerequisiteItemId) {
+        getIndex(projectId).removeEdge(dependentItemId, prerequisiteItemId);
+    }
+
+    /**
+     * Removes the dependency from the index once the surrounding transaction commits.
+     */
+    public void removeDependency(Long projectId, Long dependentItemId, Long prerequisiteItemId) {
+        ProjectDependencyIndex index = getIndex(projectId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            index.removeEdge(dependentItemId, prerequisiteItemId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                index.removeEdge(dependentItemId, prerequisiteItemId);
+            }
+        });
+    }
+
+    public void evictProject(Long projectId) {
+        if (indexes.remove(projectId) != null) {
+            log.debug("Evicted dependency index for Project: {}", projectId);
+        }
+    }
+
+    public void evictAll() {
+        indexes.clear();
+        log.debug("Evicted all dependency indexes");
+    }
+
+    private ProjectDependencyIndex getIndex(Long projectId) {
+        return indexes.computeIfAbsent(projectId, id -> new VersionedIndex(load(id), -1)).index();
+    }
+
+    private ProjectDependencyIndex load(Long projectId) {
+        List<DependencyGraph.Edge> edges = dependencyRepository.findAllByDependentProject(projectId).stream()
+            .sorted(Comparator.comparing(ConfigDependency::getId))
+            .map(d -> new DependencyGraph.Edge(d.getDependentConfigItem().getId(), d.getPrerequisiteConfigItem().getId(), d.getPrerequisiteExpectedValue()))
+            .toList();
+        // Seeding in topological order makes every insertion agree with the index's order, so loading is linear.
+        DependencyGraph graph = DependencyGraph.build(projectId, edges);
+        ProjectDependencyIndex index = new ProjectDependencyIndex(graph.size());
+        for (int rank = 0; rank < graph.size(); rank++) {
+            index.addItem(graph.itemIdAt(rank));
+        }
+        for (int rank = 0; rank < graph.size(); rank++) {
+            for (int prerequisiteRank : graph.prerequisiteRanksAt(rank)) {
+                if (!index.tryAddEdge(graph.itemIdAt(rank), graph.itemIdAt(prerequisiteRank))) {
+                    log.warn("Stored dependencies of project {} contain a cycle through config item {}.", projectId, graph.itemIdAt(rank));
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,73 @@
+package com.abhinavmehta.confx.service.dependency;
+
+import java.util.Arrays;
+
+/**
+ * Minimal open-addressing map from {@code long} keys to non-negative {@code int} values, so item id lookups in
+ * large dependency indexes do not box every key.
+ */
+final class LongIntHashMap {
+
+    private static final int ABSENT = -1;
+
+    private long[] keys;
+    private int[] values; // ABSENT marks a free slot
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+    }
+
+    /**
+     * @return The value for the key, or -1 if there is none.
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; values[slot] != ABSENT; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return ABSENT;
+    }
+
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != ABSENT) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, ABSENT);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != ABSENT) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,249 @@
+package com.abhinavmehta.confx.service.dependency;
+
+import java.util.Arrays;
+
+/**
+ * Mutable adjacency structure of one project's dependencies, used to validate new dependencies without
+ * touching the database. It maintains a topological order online (Pearce-Kelly): adding an edge that already
+ * agrees with the order is O(1); otherwise only the nodes between the two endpoints' positions are visited and
+ * reordered. A cycle exists exactly when that search reaches the new edge's other endpoint.
+ * <p>
+ * Nodes are dense ints mapped from item ids; an edge runs from a prerequisite to its dependent, and the order
+ * keeps every prerequisite before its dependents. All methods are synchronized on the instance.
+ */
+public class ProjectDependencyIndex {
+
+    private final LongIntHashMap nodeByItemId;
+    private long[] itemIdByNode;
+    private int[] order;               // Position of each node in the topological order
+    private int[][] dependents;        // Outgoing edges: prerequisite -> dependents
+    private int[] dependentCounts;
+    private int[][] prerequisites;     // Incoming edges: dependent -> prerequisites
+    private int[] prerequisiteCounts;
+    private int nodeCount;
+    private int nextOrder;
+
+    // Scratch space for searches, reused between calls
+    private boolean[] visited;
+    private int[] stack;
+    private final IntBuffer forward = new IntBuffer();
+    private final IntBuffer backward = new IntBuffer();
+
+    public ProjectDependencyIndex(int expectedNodes) {
+        int capacity = Math.max(16, expectedNodes);
+        nodeByItemId = new LongIntHashMap(capacity);
+        itemIdByNode = new long[capacity];
+        order = new int[capacity];
+        dependents = new int[capacity][];
+        dependentCounts = new int[capacity];
+        prerequisites = new int[capacity][];
+        prerequisiteCounts = new int[capacity];
+        visited = new boolean[capacity];
+        stack = new int[capacity];
+    }
+
+    /**
+     * Registers an item without edges, placing it last in the order.
+     */
+    public synchronized void addItem(long itemId) {
+        nodeFor(itemId);
+    }
+
+    public synchronized boolean hasEdge(long dependentItemId, long prerequisiteItemId) {
+        int dependent = nodeByItemId.get(dependentItemId);
+        int prerequisite = nodeByItemId.get(prerequisiteItemId);
+        return dependent >= 0 && prerequisite >= 0 && indexOf(dependents[prerequisite], dependentCounts[prerequisite], dependent) >= 0;
+    }
+
+    /**
+     * Adds "dependent depends on prerequisite" unless it would close a cycle.
+     * @return false (and no change) if the prerequisite already depends, directly or transitively, on the dependent.
+     */
+    public synchronized boolean tryAddEdge(long dependentItemId, long prerequisiteItemId) {
+        if (dependentItemId == prerequisiteItemId) {
+            return false;
+        }
+        int dependent = nodeFor(dependentItemId);
+        int prerequisite = nodeFor(prerequisiteItemId);
+        if (indexOf(dependents[prerequisite], dependentCounts[prerequisite], dependent) >= 0) {
+            return true;
+        }
+        int lowerBound = order[dependent];
+        int upperBound = order[prerequisite];
+        if (lowerBound < upperBound) {
+            // The dependent currently sits before its new prerequisite: look at the affected region only
+            if (!collectForward(dependent, upperBound, prerequisite)) {
+                return false;
+            }
+            collectBackward(prerequisite, lowerBound);
+            reorder();
+        }
+        dependents[prerequisite] = append(dependents[prerequisite], dependentCounts[prerequisite]++, dependent);
+        prerequisites[dependent] = append(prerequisites[dependent], prerequisiteCounts[dependent]++, prerequisite);
+        return true;
+    }
+
+    public synchronized void removeEdge(long dependentItemId, long prerequisiteItemId) {
+        int dependent = nodeByItemId.get(dependentItemId);
+        int prerequisite = nodeByItemId.get(prerequisiteItemId);
+        if (dependent < 0 || prerequisite < 0) {
+            return;
+        }
+        // Removing an edge never invalidates the topological order
+        dependentCounts[prerequisite] = remove(dependents[prerequisite], dependentCounts[prerequisite], dependent);
+        prerequisiteCounts[dependent] = remove(prerequisites[dependent], prerequisiteCounts[dependent], prerequisite);
+    }
+
+    // Forward search from the dependent through nodes ordered before the prerequisite. Hitting the prerequisite means a cycle.
+    private boolean collectForward(int start, int upperBound, int target) {
+        forward.clear();
+        int size = 0;
+        stack[size++] = start;
+        visited[start] = true;
+        while (size > 0) {
+            int node = stack[--size];
+            forward.add(node);
+            for (int i = 0; i < dependentCounts[node]; i++) {
+                int next = dependents[node][i];
+                if (next == target) {
+                    clearVisited(forward);
+                    for (int j = 0; j < size; j++) {
+                        visited[stack[j]] = false;
+                    }
+                    return false;
+                }
+                if (!visited[next] && order[next] < upperBound) {
+                    visited[next] = true;
+                    stack[size++] = next;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Backward search from the prerequisite through nodes ordered after the dependent.
+    private void collectBackward(int start, int lowerBound) {
+        backward.clear();
+        int size = 0;
+        stack[size++] = start;
+        visited[start] = true;
+        while (size > 0) {
+            int node = stack[--size];
+            backward.add(node);
+            for (int i = 0; i < prerequisiteCounts[node]; i++) {
+                int next = prerequisites[node][i];
+                if (!visited[next] && order[next] > lowerBound) {
+                    visited[next] = true;
+                    stack[size++] = next;
+                }
+            }
+        }
+    }
+
+    // Reuses the positions held by both sets: everything reaching the prerequisite goes first, then everything reachable from the dependent.
+    private void reorder() {
+        clearVisited(forward);
+        clearVisited(backward);
+        sortByOrder(backward);
+        sortByOrder(forward);
+        int[] slots = new int[backward.size + forward.size];
+        for (int i = 0; i < backward.size; i++) {
+            slots[i] = order[backward.values[i]];
+        }
+        for (int i = 0; i < forward.size; i++) {
+            slots[backward.size + i] = order[forward.values[i]];
+        }
+        Arrays.sort(slots);
+        for (int i = 0; i < backward.size; i++) {
+            order[backward.values[i]] = slots[i];
+        }
+        for (int i = 0; i < forward.size; i++) {
+            order[forward.values[i]] = slots[backward.size + i];
+        }
+    }
+
+    private void sortByOrder(IntBuffer nodes) {
+        // Sort (order, node) pairs packed into longs, avoiding boxed comparators
+        long[] packed = new long[nodes.size];
+        for (int i = 0; i < nodes.size; i++) {
+            packed[i] = ((long) order[nodes.values[i]] << 32) | nodes.values[i];
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < nodes.size; i++) {
+            nodes.values[i] = (int) packed[i];
+        }
+    }
+
+    private void clearVisited(IntBuffer nodes) {
+        for (int i = 0; i < nodes.size; i++) {
+            visited[nodes.values[i]] = false;
+        }
+    }
+
+    private int nodeFor(long itemId) {
+        int node = nodeByItemId.get(itemId);
+        if (node >= 0) {
+            return node;
+        }
+        if (nodeCount == itemIdByNode.length) {
+            int capacity = nodeCount * 2;
+            itemIdByNode = Arrays.copyOf(itemIdByNode, capacity);
+            order = Arrays.copyOf(order, capacity);
+            dependents = Arrays.copyOf(dependents, capacity);
+            dependentCounts = Arrays.copyOf(dependentCounts, capacity);
+            prerequisites = Arrays.copyOf(prerequisites, capacity);
+            prerequisiteCounts = Arrays.copyOf(prerequisiteCounts, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+        node = nodeCount++;
+        itemIdByNode[node] = itemId;
+        order[node] = nextOrder++; // A node without edges can go anywhere; the end is simplest
+        nodeByItemId.put(itemId, node);
+        return node;
+    }
+
+    private static int indexOf(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] append(int[] values, int count, int value) {
+        if (values == null) {
+            values = new int[4];
+        } else if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count] = value;
+        return values;
+    }
+
+    private static int remove(int[] values, int count, int value) {
+        int index = values == null ? -1 : indexOf(values, count, value);
+        if (index < 0) {
+            return count;
+        }
+        values[index] = values[count - 1];
+        return count - 1;
+    }
+
+    private static final class IntBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
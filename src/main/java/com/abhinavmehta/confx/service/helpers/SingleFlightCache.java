@@ -0,0 +1,72 @@
+package com.abhinavmehta.confx.service.helpers;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cache of values loaded on first use, at most one load per key at a time: concurrent misses on a key wait for the
+ * load started by the first one instead of each running their own.
+ * <p>
+ * Evicting a key also drops a load in progress for it. That load still answers the callers already waiting for it,
+ * but its result is not kept, so data changed before the eviction is never cached past it. Evictions only affect
+ * the keys they name.
+ */
+public final class SingleFlightCache<K, V> {
+
+    private final Map<K, CompletableFuture<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cached value, loading it if needed. Exceptions of the loader are thrown to every caller waiting
+     * for that load, and nothing is cached, so the next call loads again.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> entry = entries.get(key);
+        if (entry == null) {
+            CompletableFuture<V> load = new CompletableFuture<>();
+            entry = entries.putIfAbsent(key, load);
+            if (entry == null) {
+                return runLoad(key, load, loader);
+            }
+        }
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void evict(K key) {
+        entries.remove(key);
+    }
+
+    public void evictIf(Predicate<? super K> predicate) {
+        entries.keySet().removeIf(predicate);
+    }
+
+    public void evictAll() {
+        entries.clear();
+    }
+
+    private V runLoad(K key, CompletableFuture<V> load, Function<? super K, ? extends V> loader) {
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            entries.remove(key, load);
+            load.completeExceptionally(e);
+            throw e;
+        }
+        load.complete(value);
+        return value;
+    }
+}
@@ -0,0 +1,38 @@
+package com.abhinavmehta.confx.service.outbox;
+
+import com.abhinavmehta.confx.repository.OutboxEntryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Records change events in the outbox table, in the caller's transaction, instead of publishing them right away.
+ * They reach their listeners through the {@link OutboxRelay} once the transaction has committed, and never if it
+ * rolls back.
+ * <p>
+ * Callers append after bumping the affected environments' revisions, so entries of one environment get their ids
+ * while holding its row lock and the relay, reading in id order, sees them in commit order.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChangeOutbox {
+
+    private final OutboxEntryRepository outboxRepository;
+    private final OutboxEventCodec codec;
+    private final OutboxRelay relay;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(ApplicationEvent event) {
+        outboxRepository.save(codec.encode(event));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.requestDrain(); // Bursts of commits are coalesced into a single pass
+            }
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.abhinavmehta.confx.service.outbox;
+
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.entity.OutboxEntry;
+import com.abhinavmehta.confx.events.ConfigDependenciesChangedEvent;
+import com.abhinavmehta.confx.events.ConfigItemDeletedEvent;
+import com.abhinavmehta.confx.events.ConfigItemUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionUpdatedEvent;
+import com.abhinavmehta.confx.events.ConfigVersionsPublishedEvent;
+import com.abhinavmehta.confx.events.EnvironmentDeletedEvent;
+import com.abhinavmehta.confx.events.EnvironmentUpdatedEvent;
+import com.abhinavmehta.confx.events.ProjectDeletedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts change events to outbox entries and back. Entries carry everything the event's listeners need (e.g. the
+ * published version with its rules), so relaying them takes no query besides reading the outbox.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxEventCodec {
+
+    private final ObjectMapper objectMapper;
+
+    private record VersionPublished(Long projectId, Long environmentId, long revision, ConfigVersionResponseDto version) {}
+
+    private record VersionsPublished(Long projectId, List<ConfigVersionsPublishedEvent.EnvironmentVersions> environments) {}
+
+    private record ConfigItemChange(Long projectId, Long configItemId, String configKey, Map<Long, Long> environmentRevisions) {}
+
+    private record Scope(Long projectId, Long environmentId) {}
+
+    public OutboxEntry encode(ApplicationEvent event) {
+        if (event instanceof ConfigVersionUpdatedEvent e) {
+            return entry(e.getProjectId(), e.getEnvironmentId(), event,
+                    new VersionPublished(e.getProjectId(), e.getEnvironmentId(), e.getRevision(), e.getUpdatedConfigVersionData()));
+        } else if (event instanceof ConfigVersionsPublishedEvent e) {
+            return entry(e.getProjectId(), null, event, new VersionsPublished(e.getProjectId(), e.getEnvironments()));
+        } else if (event instanceof ConfigItemUpdatedEvent e) {
+            return entry(e.getProjectId(), null, event, new ConfigItemChange(e.getProjectId(), e.getConfigItemId(), e.getConfigKey(), null));
+        } else if (event instanceof ConfigItemDeletedEvent e) {
+            return entry(e.getProjectId(), null, event,
+                    new ConfigItemChange(e.getProjectId(), e.getConfigItemId(), e.getConfigKey(), e.getEnvironmentRevisions()));
+        } else if (event instanceof ConfigDependenciesChangedEvent e) {
+            return entry(e.getProjectId(), null, event, new Scope(e.getProjectId(), null));
+        } else if (event instanceof EnvironmentUpdatedEvent e) {
+            return entry(e.getProjectId(), e.getEnvironmentId(), event, new Scope(e.getProjectId(), e.getEnvironmentId()));
+        } else if (event instanceof EnvironmentDeletedEvent e) {
+            return entry(e.getProjectId(), e.getEnvironmentId(), event, new Scope(e.getProjectId(), e.getEnvironmentId()));
+        } else if (event instanceof ProjectDeletedEvent e) {
+            return entry(e.getProjectId(), null, event, new Scope(e.getProjectId(), null));
+        }
+        throw new IllegalArgumentException("Unsupported outbox event type: " + event.getClass().getName());
+    }
+
+    /**
+     * @param source The source of the re-created event.
+     */
+    public ApplicationEvent decode(OutboxEntry entry, Object source) {
+        String payload = entry.getPayload();
+        return switch (entry.getEventType()) {
+            case "ConfigVersionUpdatedEvent" -> {
+                VersionPublished p = read(payload, VersionPublished.class);
+                yield new ConfigVersionUpdatedEvent(source, p.projectId(), p.environmentId(), p.version(), p.revision());
+            }
+            case "ConfigVersionsPublishedEvent" -> {
+                VersionsPublished p = read(payload, VersionsPublished.class);
+                yield new ConfigVersionsPublishedEvent(source, p.projectId(), p.environments());
+            }
+            case "ConfigItemUpdatedEvent" -> {
+                ConfigItemChange p = read(payload, ConfigItemChange.class);
+                yield new ConfigItemUpdatedEvent(source, p.projectId(), p.configItemId(), p.configKey());
+            }
+            case "ConfigItemDeletedEvent" -> {
+                ConfigItemChange p = read(payload, ConfigItemChange.class);
+                yield new ConfigItemDeletedEvent(source, p.projectId(), p.configItemId(), p.configKey(), p.environmentRevisions());
+            }
+            case "ConfigDependenciesChangedEvent" -> new ConfigDependenciesChangedEvent(source, read(payload, Scope.class).projectId());
+            case "EnvironmentUpdatedEvent" -> {
+                Scope p = read(payload, Scope.class);
+                yield new EnvironmentUpdatedEvent(source, p.projectId(), p.environmentId());
+            }
+            case "EnvironmentDeletedEvent" -> {
+                Scope p = read(payload, Scope.class);
+                yield new EnvironmentDeletedEvent(source, p.projectId(), p.environmentId());
+            }
+            case "ProjectDeletedEvent" -> new ProjectDeletedEvent(source, read(payload, Scope.class).projectId());
+            default -> throw new IllegalArgumentException("Unsupported outbox event type: " + entry.getEventType());
+        };
+    }
+
+    private OutboxEntry entry(Long projectId, Long environmentId, ApplicationEvent event, Object payload) {
+        try {
+            return OutboxEntry.builder()
+                    .projectId(projectId)
+                    .environmentId(environmentId)
+                    .eventType(event.getClass().getSimpleName())
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize outbox event " + event.getClass().getSimpleName(), e);
+        }
+    }
+
+    private <T> T read(String payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed outbox payload: " + e.getMessage(), e);
+        }
+    }
+}
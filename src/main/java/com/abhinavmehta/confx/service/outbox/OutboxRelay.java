@@ -0,0 +1,155 @@
+package com.abhinavmehta.confx.service.outbox;
+
+import com.abhinavmehta.confx.entity.OutboxEntry;
+import com.abhinavmehta.confx.repository.OutboxEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves change events from the outbox table to the application's listeners (SSE, cache invalidation, the cluster
+ * bus). Entries are read in id order, in batches; each batch is dispatched and then deleted, within one transaction
+ * holding the relay lock. An entry is thus only deleted once its event was dispatched, and a node stopping in
+ * between leaves it to be dispatched again: every entry reaches the listeners at least once, which they tolerate
+ * (they evict caches and send current state, and SSE clients are not sent a revision twice). An event whose
+ * dispatch fails, a listener throwing, is logged and counted ({@code confx.outbox.dispatch.failures}) and not
+ * retried: the listeners after the failing one miss it, but the entries behind it are still relayed.
+ * <p>
+ * A single thread relays per node, and an advisory lock lets only one node relay at a time; the other nodes get
+ * the changes through the cluster bus. Passes are requested after every commit that wrote entries and by a
+ * periodic poll, which also picks up entries left behind by a node that stopped before relaying them.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final long RELAY_LOCK_KEY = 0x636f6e66786f7574L; // "confxout"
+
+    private final OutboxEntryRepository outboxRepository;
+    private final OutboxEventCodec codec;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate dispatchTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("outbox-relay-"));
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    public OutboxRelay(OutboxEntryRepository outboxRepository,
+                       OutboxEventCodec codec,
+                       ApplicationEventPublisher eventPublisher,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${confx.outbox.batch-size:100}") int batchSize) {
+        this.outboxRepository = outboxRepository;
+        this.codec = codec;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dispatchTemplate = new TransactionTemplate(transactionManager);
+        this.dispatchTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Schedules a pass over the outbox, unless one is already waiting to start.
+     */
+    public void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainRequested.set(false); // Shutting down; the entries stay for the next node to start
+            }
+        }
+    }
+
+    // Catches up with entries written before this node (re)started.
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        requestDrain();
+    }
+
+    @Scheduled(fixedDelayString = "${confx.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        requestDrain();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void drain() {
+        drainRequested.set(false); // Commits from now on request another pass
+        try {
+            boolean fullBatch;
+            do {
+                fullBatch = Boolean.TRUE.equals(transactionTemplate.execute(status -> relayBatch()));
+            } while (fullBatch);
+        } catch (RuntimeException e) {
+            log.error("Outbox relay pass failed, remaining entries are retried on the next pass.", e);
+        }
+    }
+
+    // Dispatches and deletes the oldest entries. Returns whether it relayed a full batch; false if another node is relaying.
+    private boolean relayBatch() {
+        if (!outboxRepository.tryAdvisoryTransactionLock(RELAY_LOCK_KEY)) {
+            log.debug("Outbox is being relayed by another node.");
+            return false;
+        }
+        List<OutboxEntry> entries = outboxRepository.findOldest(PageRequest.of(0, batchSize));
+        if (entries.isEmpty()) {
+            return false;
+        }
+        log.debug("Relaying {} outbox entries ({} to {})", entries.size(), entries.get(0).getId(), entries.get(entries.size() - 1).getId());
+        // Outside of this transaction, which keeps the lock: listeners (transactional ones included) run right away
+        dispatchTemplate.executeWithoutResult(status -> entries.forEach(this::dispatch));
+        outboxRepository.deleteAllInBatch(entries);
+        return entries.size() == batchSize;
+    }
+
+    private void dispatch(OutboxEntry entry) {
+        ApplicationEvent event;
+        try {
+            event = codec.decode(entry, this);
+        } catch (IllegalArgumentException e) {
+            log.error("Dropping undecodable outbox entry {} ({}): {}", entry.getId(), entry.getEventType(), e.getMessage());
+            countFailure(entry);
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.error("Dispatching outbox entry {} ({}) failed, it is not retried.", entry.getId(), entry.getEventType(), e);
+            countFailure(entry);
+        }
+    }
+
+    private void countFailure(OutboxEntry entry) {
+        Counter.builder("confx.outbox.dispatch.failures")
+                .description("Outbox entries that could not be decoded or whose dispatch failed")
+                .tag("event", entry.getEventType())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,120 @@
+package com.abhinavmehta.confx.service.revision;
+
+import com.abhinavmehta.confx.entity.ConfigChangeLogEntry;
+import com.abhinavmehta.confx.entity.ConfigItem;
+import com.abhinavmehta.confx.model.enums.ConfigChangeType;
+import com.abhinavmehta.confx.repository.ConfigChangeLogRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the per-environment change log. Each record method bumps the affected environments' revisions and appends
+ * one entry per bumped revision, in the caller's transaction, so the log and the data it describes commit together.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConfigChangeLogService {
+
+    private final ConfigChangeLogRepository changeLogRepository;
+    private final EnvironmentRevisionService environmentRevisionService;
+
+    @Value("${confx.changes.retention:P7D}")
+    private Duration retention;
+
+    /**
+     * @return The environment's new revision.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long recordVersionPublished(Long projectId, Long environmentId, Long configItemId, String configKey) {
+        long revision = environmentRevisionService.bumpEnvironment(projectId, environmentId);
+        changeLogRepository.save(entry(environmentId, revision, ConfigChangeType.VERSION_PUBLISHED, configItemId, configKey));
+        return revision;
+    }
+
+    /**
+     * Records the publishing of a version of each given config item in one environment, as one revision per item,
+     * in the given order.
+     * @return The environment's new revision, the one of the last item.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long recordVersionsPublished(Long projectId, Long environmentId, List<ConfigItem> configItems) {
+        long revision = environmentRevisionService.bumpEnvironment(projectId, environmentId, configItems.size());
+        long itemRevision = revision - configItems.size();
+        List<ConfigChangeLogEntry> entries = new ArrayList<>(configItems.size());
+        for (ConfigItem configItem : configItems) {
+            entries.add(entry(environmentId, ++itemRevision, ConfigChangeType.VERSION_PUBLISHED, configItem.getId(), configItem.getConfigKey()));
+        }
+        changeLogRepository.saveAll(entries);
+        return revision;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordConfigItemUpdated(Long projectId, Long configItemId, String configKey) {
+        recordForAllEnvironments(projectId, ConfigChangeType.CONFIG_ITEM_UPDATED, configItemId, configKey);
+    }
+
+    /**
+     * @return Environment id to the environment's new revision.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, Long> recordConfigItemDeleted(Long projectId, Long configItemId, String configKey) {
+        return recordForAllEnvironments(projectId, ConfigChangeType.CONFIG_ITEM_DELETED, configItemId, configKey);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordEnvironmentUpdated(Long projectId, Long environmentId) {
+        long revision = environmentRevisionService.bumpEnvironment(projectId, environmentId);
+        changeLogRepository.save(entry(environmentId, revision, ConfigChangeType.ENVIRONMENT_UPDATED, null, null));
+    }
+
+    /**
+     * Returns the entries of revisions {@code fromRevision + 1} to {@code toRevision}, ordered by revision. Fewer
+     * entries than revisions in the range means part of it has been compacted away.
+     */
+    @Transactional(readOnly = true)
+    public List<ConfigChangeLogEntry> getEntries(Long environmentId, long fromRevision, long toRevision) {
+        return changeLogRepository.findRevisionRange(environmentId, fromRevision, toRevision);
+    }
+
+    /**
+     * Drops entries older than the retention period. Clients further behind than that get a full snapshot instead.
+     */
+    @Scheduled(fixedDelayString = "${confx.changes.compaction-interval-ms:3600000}")
+    @Transactional
+    public void compact() {
+        int deleted = changeLogRepository.deleteByCreatedAtBefore(Instant.now().minus(retention).toEpochMilli());
+        if (deleted > 0) {
+            log.info("Compacted config change log, removed {} entries older than {}", deleted, retention);
+        }
+    }
+
+    private Map<Long, Long> recordForAllEnvironments(Long projectId, ConfigChangeType changeType, Long configItemId, String configKey) {
+        Map<Long, Long> revisions = environmentRevisionService.bumpProject(projectId);
+        changeLogRepository.saveAll(revisions.entrySet().stream()
+            .map(e -> entry(e.getKey(), e.getValue(), changeType, configItemId, configKey))
+            .toList());
+        return revisions;
+    }
+
+    private ConfigChangeLogEntry entry(Long environmentId, long revision, ConfigChangeType changeType, Long configItemId, String configKey) {
+        return ConfigChangeLogEntry.builder()
+                .environmentId(environmentId)
+                .revision(revision)
+                .changeType(changeType)
+                .configItemId(configItemId)
+                .configKey(configKey)
+                .build();
+    }
+}
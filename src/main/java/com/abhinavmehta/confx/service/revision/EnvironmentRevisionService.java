@@ -0,0 +1,100 @@
+package com.abhinavmehta.confx.service.revision;
+
+import com.abhinavmehta.confx.repository.EnvironmentRepository;
+import com.abhinavmehta.confx.service.helpers.SingleFlightCache;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the revision of each environment, a counter that increases whenever anything visible in the environment's
+ * active configuration changes. Revisions are persisted on the environment row and bumped inside the writing
+ * transaction; reads are served from memory so that conditional requests can be answered without a query.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EnvironmentRevisionService {
+
+    private final EnvironmentRepository environmentRepository;
+    private final SingleFlightCache<RevisionKey, Long> revisions = new SingleFlightCache<>();
+
+    /**
+     * Returns the current revision of the environment.
+     * @throws EntityNotFoundException if the environment does not exist in the project.
+     */
+    public long getRevision(Long projectId, Long environmentId) {
+        return revisions.get(new RevisionKey(projectId, environmentId), key ->
+            environmentRepository.findRevisionByIdAndProjectId(environmentId, projectId)
+                .orElseThrow(() -> new EntityNotFoundException("Environment not found with id: " + environmentId + " in project: " + projectId)));
+    }
+
+    /**
+     * Increments the environment's revision. The row stays locked until the transaction ends, so concurrent bumps
+     * of the same environment commit in revision order.
+     * @return The new revision.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long bumpEnvironment(Long projectId, Long environmentId) {
+        return bumpEnvironment(projectId, environmentId, 1);
+    }
+
+    /**
+     * Advances the environment's revision by {@code count} at once, for a change made of that many revisions.
+     * @return The new revision, the last of the range.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long bumpEnvironment(Long projectId, Long environmentId, int count) {
+        environmentRepository.incrementRevision(environmentId, count);
+        afterCommit(() -> evictEnvironment(projectId, environmentId));
+        return environmentRepository.findRevisionByIdAndProjectId(environmentId, projectId)
+            .orElseThrow(() -> new EntityNotFoundException("Environment not found with id: " + environmentId + " in project: " + projectId));
+    }
+
+    /**
+     * Bumps all environments of the project, for changes to config items which show up in every environment.
+     * @return The new revision per environment id.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, Long> bumpProject(Long projectId) {
+        environmentRepository.incrementRevisionsByProjectId(projectId);
+        afterCommit(() -> evictProject(projectId));
+        return environmentRepository.findRevisionsByProjectId(projectId).stream()
+            .collect(Collectors.toMap(EnvironmentRepository.EnvironmentRevision::getEnvironmentId,
+                                      EnvironmentRepository.EnvironmentRevision::getRevision));
+    }
+
+    public void evictEnvironment(Long projectId, Long environmentId) {
+        revisions.evict(new RevisionKey(projectId, environmentId));
+        log.debug("Evicted revision for Project: {}, Environment: {}", projectId, environmentId);
+    }
+
+    public void evictProject(Long projectId) {
+        revisions.evictIf(key -> key.projectId().equals(projectId));
+        log.debug("Evicted revisions for Project: {}", projectId);
+    }
+
+    private void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    public void evictAll() {
+        revisions.evictAll();
+        log.debug("Evicted all revisions");
+    }
+
+    private record RevisionKey(Long projectId, Long environmentId) {}
+}
@@ -0,0 +1,170 @@
+package com.abhinavmehta.confx.service.snapshot;
+
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.dto.RuleDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the active configs of an environment in the compact binary snapshot format served to SDKs as
+ * {@value #MEDIA_TYPE}. Compared to the JSON list it drops per-entry repetition (environment, timestamps,
+ * descriptions), interns all strings into one table and stores values in their typed form.
+ * <p>
+ * Layout (version 1). {@code varint} is an unsigned LEB128 integer, {@code zigzag} a signed one in zigzag encoding.
+ * <pre>
+ * magic "CFXS", u8 format version
+ * varint projectId, varint environmentId, varint revision
+ * varint stringCount, stringCount x (varint byteLength, UTF-8 bytes)
+ * varint configCount, configCount x config
+ *   config: varint configItemId, varint versionId, varint versionNumber, varint keyIndex, u8 dataType, value,
+ *           varint ruleCount, ruleCount x (varint ruleId, varint priority, varint conditionIndex, value)
+ *   value:  u8 tag, then nothing (0 null, 1 false, 2 true), zigzag (3 integer), 8-byte IEEE 754 (4 double)
+ *           or varint stringIndex (5 string)
+ *   dataType: 0 BOOLEAN, 1 STRING, 2 INTEGER, 3 DOUBLE, 4 JSON
+ * </pre>
+ * Values that do not parse as their declared type are written as strings.
+ * Rules have no ids of their own, so the ruleId slot carries the rule's priority, unique within its version.
+ */
+@Component
+public class BinarySnapshotEncoder {
+
+    public static final String MEDIA_TYPE = "application/vnd.confx.snapshot.v1";
+    static final byte FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'C', 'F', 'X', 'S'};
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_DOUBLE = 4;
+    private static final int TAG_STRING = 5;
+
+    public byte[] encode(Long projectId, Long environmentId, long revision, List<ConfigVersionResponseDto> activeConfigs) {
+        StringTable strings = new StringTable();
+        Output body = new Output();
+        body.writeVarint(activeConfigs.size());
+        for (ConfigVersionResponseDto config : activeConfigs) {
+            ConfigDataType dataType = config.getConfigItemDataType();
+            body.writeVarint(config.getConfigItemId());
+            body.writeVarint(config.getId());
+            body.writeVarint(config.getVersionNumber());
+            body.writeVarint(strings.indexOf(config.getConfigItemKey()));
+            body.write(dataTypeCode(dataType));
+            writeValue(body, strings, config.getValue(), dataType);
+
+            List<RuleDto> rules = config.getRules() != null ? config.getRules() : List.of();
+            body.writeVarint(rules.size());
+            for (RuleDto rule : rules) {
+                body.writeVarint(rule.getPriority()); // ruleId slot, see the layout
+                body.writeVarint(rule.getPriority());
+                body.writeVarint(strings.indexOf(rule.getConditionExpression()));
+                writeValue(body, strings, rule.getValueToServe(), dataType);
+            }
+        }
+
+        Output out = new Output();
+        out.writeBytes(MAGIC);
+        out.write(FORMAT_VERSION);
+        out.writeVarint(projectId);
+        out.writeVarint(environmentId);
+        out.writeVarint(revision);
+        out.writeVarint(strings.values.size());
+        for (String value : strings.values) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(utf8.length);
+            out.writeBytes(utf8);
+        }
+        body.copyTo(out);
+        return out.toByteArray();
+    }
+
+    private void writeValue(Output out, StringTable strings, String value, ConfigDataType dataType) {
+        if (value == null) {
+            out.write(TAG_NULL);
+            return;
+        }
+        switch (dataType) {
+            case BOOLEAN -> {
+                if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                    out.write(Boolean.parseBoolean(value) ? TAG_TRUE : TAG_FALSE);
+                    return;
+                }
+            }
+            case INTEGER -> {
+                try {
+                    long parsed = Long.parseLong(value);
+                    out.write(TAG_INTEGER);
+                    out.writeVarint((parsed << 1) ^ (parsed >> 63));
+                    return;
+                } catch (NumberFormatException ignored) {
+                    // Falls through to the string form
+                }
+            }
+            case DOUBLE -> {
+                try {
+                    long bits = Double.doubleToLongBits(Double.parseDouble(value));
+                    out.write(TAG_DOUBLE);
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) (bits >>> shift));
+                    }
+                    return;
+                } catch (NumberFormatException ignored) {
+                    // Falls through to the string form
+                }
+            }
+            default -> {
+                // STRING and JSON are stored as strings
+            }
+        }
+        out.write(TAG_STRING);
+        out.writeVarint(strings.indexOf(value));
+    }
+
+    private static int dataTypeCode(ConfigDataType dataType) {
+        // Explicit codes, so reordering the enum cannot change the wire format
+        return switch (dataType) {
+            case BOOLEAN -> 0;
+            case STRING -> 1;
+            case INTEGER -> 2;
+            case DOUBLE -> 3;
+            case JSON -> 4;
+        };
+    }
+
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            return indexes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        Output() {
+            super(4096);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void copyTo(Output target) {
+            target.write(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.abhinavmehta.confx.service.snapshot;
+
+import com.abhinavmehta.confx.service.ConfigVersionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the latest encoded binary snapshot per environment, keyed by the revision it was built for, so repeated
+ * downloads of an unchanged environment write the same byte array without touching the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BinarySnapshotService {
+
+    private final ConfigVersionService configVersionService;
+    private final BinarySnapshotEncoder encoder;
+    private final Map<SnapshotKey, EncodedSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the encoded snapshot for the given revision.
+     * @param revision The environment's revision, read by the caller before this call. The configs are loaded
+     *                 afterwards, so the bytes are never older than the revision they are cached under.
+     */
+    public byte[] getSnapshot(Long projectId, Long environmentId, long revision) {
+        SnapshotKey key = new SnapshotKey(projectId, environmentId);
+        EncodedSnapshot cached = snapshots.get(key);
+        if (cached != null && cached.revision() == revision) {
+            return cached.bytes();
+        }
+        byte[] bytes = encoder.encode(projectId, environmentId, revision,
+                configVersionService.getAllActiveConfigsForEnvironment(projectId, environmentId));
+        // Never replace a newer snapshot with an older one when loads of different revisions race.
+        snapshots.merge(key, new EncodedSnapshot(revision, bytes),
+                (current, loaded) -> loaded.revision() >= current.revision() ? loaded : current);
+        log.debug("Encoded binary snapshot for Project: {}, Environment: {}, Revision: {} ({} bytes)", projectId, environmentId, revision, bytes.length);
+        return bytes;
+    }
+
+    public void evictEnvironment(Long projectId, Long environmentId) {
+        snapshots.remove(new SnapshotKey(projectId, environmentId));
+    }
+
+    public void evictProject(Long projectId) {
+        snapshots.keySet().removeIf(key -> key.projectId().equals(projectId));
+    }
+
+    private record SnapshotKey(Long projectId, Long environmentId) {}
+
+    private record EncodedSnapshot(long revision, byte[] bytes) {}
+}
@@ -0,0 +1,45 @@
+package com.abhinavmehta.confx.service.snapshot;
+
+import com.abhinavmehta.confx.dto.RuleDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, read-optimized view of everything needed to evaluate configs of one project/environment:
+ * config items and their active versions with rules (sorted by priority). Dependencies are project-wide and live in
+ * the project's {@code DependencyGraph}.
+ * Instances are never modified; a changed environment gets a brand-new snapshot.
+ */
+@Getter
+public class EvaluationSnapshot {
+
+    private final Long projectId;
+    private final Long environmentId;
+    private final Map<String, Item> itemsByKey;
+    private final Map<Long, Item> itemsById;
+
+    public EvaluationSnapshot(Long projectId, Long environmentId, Map<String, Item> itemsByKey, Map<Long, Item> itemsById) {
+        this.projectId = projectId;
+        this.environmentId = environmentId;
+        this.itemsByKey = Map.copyOf(itemsByKey);
+        this.itemsById = Map.copyOf(itemsById);
+    }
+
+    public Item getItem(String configKey) {
+        return itemsByKey.get(configKey);
+    }
+
+    public Item getItem(Long configItemId) {
+        return itemsById.get(configItemId);
+    }
+
+    /**
+     * A config item as seen from this environment. {@code activeVersion} is null when nothing was published here yet.
+     */
+    public record Item(Long id, String configKey, ConfigDataType dataType, ActiveVersion activeVersion) {}
+
+    public record ActiveVersion(Long id, Integer versionNumber, String value, List<RuleDto> rules) {}
+}
@@ -0,0 +1,62 @@
+package com.abhinavmehta.confx.service.snapshot;
+
+import com.abhinavmehta.confx.dto.RuleDto;
+import com.abhinavmehta.confx.entity.ConfigItem;
+import com.abhinavmehta.confx.entity.ConfigVersion;
+import com.abhinavmehta.confx.repository.ConfigItemRepository;
+import com.abhinavmehta.confx.repository.ConfigVersionRepository;
+import com.abhinavmehta.confx.repository.EnvironmentRepository;
+import com.abhinavmehta.confx.service.RuleService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds {@link EvaluationSnapshot}s with a fixed number of set-based queries, independent of the number of configs.
+ */
+@Component
+@RequiredArgsConstructor
+public class EvaluationSnapshotLoader {
+
+    private final EnvironmentRepository environmentRepository;
+    private final ConfigItemRepository configItemRepository;
+    private final ConfigVersionRepository configVersionRepository;
+    private final RuleService ruleService;
+
+    @Transactional(readOnly = true)
+    public EvaluationSnapshot load(Long projectId, Long environmentId) {
+        environmentRepository.findByIdAndProjectId(environmentId, projectId)
+            .orElseThrow(() -> new EntityNotFoundException(String.format("Environment with id %d not found in project %d", environmentId, projectId)));
+
+        List<ConfigVersion> activeVersions = configVersionRepository.findActiveByProjectIdAndEnvironmentId(projectId, environmentId);
+        // Versions with the same rules share one list
+        Map<String, List<RuleDto>> rulesByHash = ruleService.getRuleSets(
+            activeVersions.stream().map(ConfigVersion::getRuleSetHash).toList());
+        Map<Long, EvaluationSnapshot.ActiveVersion> activeVersionByItemId = new HashMap<>();
+        for (ConfigVersion version : activeVersions) {
+            activeVersionByItemId.put(version.getConfigItem().getId(), new EvaluationSnapshot.ActiveVersion(
+                version.getId(),
+                version.getVersionNumber(),
+                version.getValue(),
+                version.getRuleSetHash() == null ? List.of() : rulesByHash.get(version.getRuleSetHash())));
+        }
+
+        Map<String, EvaluationSnapshot.Item> itemsByKey = new HashMap<>();
+        Map<Long, EvaluationSnapshot.Item> itemsById = new HashMap<>();
+        for (ConfigItem configItem : configItemRepository.findByProjectId(projectId)) {
+            EvaluationSnapshot.Item item = new EvaluationSnapshot.Item(
+                configItem.getId(),
+                configItem.getConfigKey(),
+                configItem.getDataType(),
+                activeVersionByItemId.get(configItem.getId()));
+            itemsByKey.put(item.configKey(), item);
+            itemsById.put(item.id(), item);
+        }
+        return new EvaluationSnapshot(projectId, environmentId, itemsByKey, itemsById);
+    }
+}
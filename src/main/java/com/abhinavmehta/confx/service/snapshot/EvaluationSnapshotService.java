@@ -0,0 +1,41 @@
+package com.abhinavmehta.confx.service.snapshot;
+
+import com.abhinavmehta.confx.service.helpers.SingleFlightCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds the current {@link EvaluationSnapshot} per project/environment. Snapshots are loaded lazily on first use
+ * and dropped when the underlying data changes, so the next evaluation swaps in a freshly built one. Concurrent
+ * evaluations missing the same snapshot share a single load.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EvaluationSnapshotService {
+
+    private final EvaluationSnapshotLoader snapshotLoader;
+    private final SingleFlightCache<SnapshotKey, EvaluationSnapshot> snapshots = new SingleFlightCache<>();
+
+    public EvaluationSnapshot getSnapshot(Long projectId, Long environmentId) {
+        return snapshots.get(new SnapshotKey(projectId, environmentId), key -> snapshotLoader.load(key.projectId(), key.environmentId()));
+    }
+
+    public void evictEnvironment(Long projectId, Long environmentId) {
+        snapshots.evict(new SnapshotKey(projectId, environmentId));
+        log.debug("Evicted evaluation snapshot for Project: {}, Environment: {}", projectId, environmentId);
+    }
+
+    public void evictProject(Long projectId) {
+        snapshots.evictIf(key -> key.projectId().equals(projectId));
+        log.debug("Evicted evaluation snapshots for Project: {}", projectId);
+    }
+
+    public void evictAll() {
+        snapshots.evictAll();
+        log.debug("Evicted all evaluation snapshots");
+    }
+
+    private record SnapshotKey(Long projectId, Long environmentId) {}
+}
@@ -0,0 +1,84 @@
+package com.abhinavmehta.confx.service.sse;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel for SSE heartbeats. Subscribers are spread over {@code slots} buckets, and each
+ * {@link #tick()} visits a single bucket, so one heartbeat interval is covered in {@code slots} small passes
+ * instead of one pass over every connection. {@link #tick()} must be called every {@code interval / slots}.
+ * <p>
+ * A subscriber sits in the bucket of the tick its next heartbeat is due at. A tick queues heartbeat frames (the
+ * fan-out executor writes them) to the subscribers that are due; one written to since it was placed is moved to
+ * the bucket its last write makes it due at, so no connection goes much more than an interval without a write.
+ * Closed subscribers are dropped from their bucket when it is next visited.
+ */
+public final class HeartbeatWheel {
+
+    private final List<Set<SseSubscriber>> slots;
+    private final long intervalNanos;
+    private final long tickNanos;
+    private final byte[] heartbeatFrame;
+    private final AtomicLong ticks = new AtomicLong();
+
+    public HeartbeatWheel(int slotCount, long intervalMs, byte[] heartbeatFrame) {
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.tickNanos = intervalNanos / slotCount;
+        this.heartbeatFrame = heartbeatFrame;
+    }
+
+    /**
+     * Adds a subscriber that was just written to: it is placed one interval ahead.
+     */
+    public void add(SseSubscriber subscriber) {
+        slots.get(slotIndex(ticks.get() - 1 + slots.size())).add(subscriber);
+    }
+
+    /**
+     * Visits the next bucket. Not thread-safe against itself: call it from a single scheduler.
+     * @return The number of heartbeats queued.
+     */
+    public int tick() {
+        return tick(System.nanoTime());
+    }
+
+    int tick(long nowNanos) {
+        long tick = ticks.getAndIncrement();
+        Set<SseSubscriber> slot = slots.get(slotIndex(tick));
+        int sent = 0;
+        for (Iterator<SseSubscriber> it = slot.iterator(); it.hasNext(); ) {
+            SseSubscriber subscriber = it.next();
+            long untilDue = subscriber.getLastWriteNanos() + intervalNanos - nowNanos;
+            if (subscriber.isClosed()) {
+                it.remove();
+            } else if (untilDue <= tickNanos / 2) {
+                subscriber.offerHeartbeat(heartbeatFrame); // Stays: due again a whole rotation from now
+                sent++;
+            } else {
+                long ticksAhead = Math.min(slots.size(), Math.round((double) untilDue / tickNanos));
+                if (ticksAhead < slots.size()) {
+                    it.remove();
+                    slots.get(slotIndex(tick + ticksAhead)).add(subscriber);
+                }
+            }
+        }
+        return sent;
+    }
+
+    public int size() {
+        return slots.stream().mapToInt(Set::size).sum();
+    }
+
+    private int slotIndex(long tick) {
+        return (int) (tick % slots.size());
+    }
+}
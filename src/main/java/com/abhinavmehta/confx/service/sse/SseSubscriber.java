@@ -0,0 +1,327 @@
+package com.abhinavmehta.confx.service.sse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * One connected SSE client. Encoded frames are queued per subscriber and written by the fan-out executor, so a
+ * slow or half-dead client only ever delays itself.
+ * <p>
+ * The queue is bounded. When it overflows, everything pending is coalesced into a single resync hint, which tells
+ * the client to reload its state instead of catching up event by event. A client that is still overflowing after
+ * the allowed time, or that a single write has been blocked on for that long, is {@link #isStalled stalled}: the
+ * service's periodic sweep {@link #evict evicts} it, whether or not anything else is published to it.
+ * <p>
+ * A subscriber may be interested in some config keys only, given as exact keys and/or key prefixes; it then only
+ * receives the events about those keys (and the events that concern the whole environment).
+ * <p>
+ * Closing is asynchronous where frames are pending: {@link #finish} queues a last frame and completes the emitter
+ * once everything before it has been written.
+ */
+@Slf4j
+public final class SseSubscriber {
+
+    public enum OfferResult { QUEUED, COALESCED, CLOSED }
+
+    private record Pending(byte[] frame, long enqueuedAtNanos) {}
+
+    private final SseEmitter emitter;
+    private final String key; // "projectId/environmentId", for logging
+    private final Set<String> configKeys; // Exact keys of interest
+    private final Set<String> configKeyPrefixes; // Key prefixes of interest. Both empty: every key
+    private final int capacity;
+    private final long maxOverflowNanos;
+    private final Executor executor;
+    private final Counter droppedEvents;
+    private final Timer deliveryLatency;
+    private final Consumer<SseSubscriber> onClose;
+    private final Consumer<SseSubscriber> onDrainScheduled;
+
+    // Guarded by this
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private boolean draining; // A drain task is scheduled or running
+    private long overflowingSinceNanos; // 0 while the queue has drained since the last overflow
+    private long writeStartedNanos; // 0 unless a frame is being written
+    private Runnable afterEvictedWrite; // Set when evicted during a write, run by the drain once that write returns
+    private boolean finishing; // No more frames are accepted, the emitter completes once the queue is flushed
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile long lastWriteNanos = System.nanoTime(); // Connecting counts as activity
+    private volatile long caughtUpToRevision = Long.MIN_VALUE; // The client has every event up to this revision
+
+    public SseSubscriber(SseEmitter emitter, String key, Set<String> configKeys, Set<String> configKeyPrefixes,
+                         int capacity, long maxOverflowMs, Executor executor,
+                         Counter droppedEvents, Timer deliveryLatency, Consumer<SseSubscriber> onClose,
+                         Consumer<SseSubscriber> onDrainScheduled) {
+        this.emitter = emitter;
+        this.key = key;
+        this.configKeys = Set.copyOf(configKeys);
+        this.configKeyPrefixes = Set.copyOf(configKeyPrefixes);
+        this.capacity = capacity;
+        this.maxOverflowNanos = TimeUnit.MILLISECONDS.toNanos(maxOverflowMs);
+        this.executor = executor;
+        this.droppedEvents = droppedEvents;
+        this.deliveryLatency = deliveryLatency;
+        this.onClose = onClose;
+        this.onDrainScheduled = onDrainScheduled;
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    public Set<String> getConfigKeys() {
+        return configKeys;
+    }
+
+    public Set<String> getConfigKeyPrefixes() {
+        return configKeyPrefixes;
+    }
+
+    public boolean isFiltered() {
+        return !configKeys.isEmpty() || !configKeyPrefixes.isEmpty();
+    }
+
+    /**
+     * Whether an event about the given keys is of interest. {@code null} stands for an event about the whole
+     * environment, which every subscriber receives.
+     */
+    public boolean isInterestedInAny(Collection<String> eventConfigKeys) {
+        if (eventConfigKeys == null || !isFiltered()) {
+            return true;
+        }
+        for (String eventConfigKey : eventConfigKeys) {
+            if (configKeys.contains(eventConfigKey)) {
+                return true;
+            }
+            for (String prefix : configKeyPrefixes) {
+                if (eventConfigKey.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queues a frame for this subscriber.
+     * @param resyncFrame Sent instead of everything pending (including {@code frame}) if the queue is full.
+     */
+    public OfferResult offer(byte[] frame, byte[] resyncFrame) {
+        OfferResult result;
+        boolean schedule;
+        synchronized (this) {
+            if (closed.get() || finishing) {
+                return OfferResult.CLOSED;
+            }
+            long now = System.nanoTime();
+            if (queue.size() < capacity) {
+                queue.add(new Pending(frame, now));
+                result = OfferResult.QUEUED;
+            } else {
+                if (overflowingSinceNanos == 0) {
+                    overflowingSinceNanos = now;
+                }
+                droppedEvents.increment(queue.size() + 1);
+                queue.clear();
+                queue.add(new Pending(resyncFrame, now));
+                result = OfferResult.COALESCED;
+            }
+            schedule = !draining;
+            draining = true;
+        }
+        if (schedule) {
+            scheduleDrain();
+        }
+        return result;
+    }
+
+    /**
+     * Queues a heartbeat, unless frames are already pending: those keep the connection alive just as well.
+     */
+    public void offerHeartbeat(byte[] frame) {
+        synchronized (this) {
+            if (closed.get() || finishing || draining) {
+                return;
+            }
+            queue.add(new Pending(frame, System.nanoTime()));
+            draining = true;
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Queues a last frame, after which the emitter is completed. Nothing is accepted after it.
+     */
+    public void finish(byte[] lastFrame) {
+        boolean schedule;
+        synchronized (this) {
+            if (closed.get() || finishing) {
+                return;
+            }
+            queue.add(new Pending(lastFrame, System.nanoTime())); // May exceed the capacity by this one frame
+            finishing = true;
+            schedule = !draining;
+            draining = true;
+        }
+        if (schedule) {
+            scheduleDrain();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Whether frames are queued or being written.
+     */
+    public synchronized boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Whether the client has fallen too far behind to keep: its queue has been overflowing, or a single write to it
+     * has been blocked, for longer than the allowed time.
+     */
+    public synchronized boolean isStalled(long nowNanos) {
+        return (writeStartedNanos != 0 && nowNanos - writeStartedNanos > maxOverflowNanos)
+                || (overflowingSinceNanos != 0 && nowNanos - overflowingSinceNanos > maxOverflowNanos);
+    }
+
+    /**
+     * Disconnects a stalled client right away: nothing pending is written any more, and the emitter is completed.
+     * A write already blocked on the client holds the emitter until it fails (the server's write timeout), so the
+     * emitter is then completed by the drain instead, and its fan-out thread is made up for in the meantime.
+     * @param borrowFanoutThread Called if a write is blocked: adds a fan-out thread and returns how to give it back,
+     *                           which the drain does once the write returns.
+     */
+    public void evict(Supplier<Runnable> borrowFanoutThread) {
+        boolean writing;
+        synchronized (this) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            queue.clear();
+            writing = writeStartedNanos != 0;
+            if (writing) {
+                afterEvictedWrite = borrowFanoutThread.get();
+            }
+        }
+        onClose.accept(this);
+        if (!writing) {
+            emitter.complete(); // No write can start any more, so the emitter is free
+        }
+    }
+
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * Records that the client has every event up to the given revision, e.g. after replaying what it missed.
+     * Events up to it that are still on their way are not sent to it again.
+     */
+    public void caughtUpTo(long revision) {
+        caughtUpToRevision = revision;
+    }
+
+    public boolean hasRevision(long revision) {
+        return revision <= caughtUpToRevision;
+    }
+
+    public synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops delivery and hands the subscriber to the close callback for unregistering. Called on emitter
+     * completion, timeout and error, and when a write fails. Idempotent.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            queue.clear();
+        }
+        onClose.accept(this);
+    }
+
+    private void scheduleDrain() {
+        onDrainScheduled.accept(this);
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            log.warn("SSE fan-out executor rejected delivery for key {}, closing subscriber.", key);
+            emitter.complete();
+            close();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Pending next;
+            synchronized (this) {
+                next = closed.get() ? null : queue.poll();
+                if (next == null) {
+                    draining = false;
+                    overflowingSinceNanos = 0;
+                    if (!finishing || closed.get()) {
+                        return;
+                    }
+                } else {
+                    writeStartedNanos = System.nanoTime();
+                }
+            }
+            if (next == null) {
+                log.debug("All frames written to SSE subscriber for key {}, completing its emitter.", key);
+                emitter.complete();
+                close();
+                return;
+            }
+            Exception failure = null;
+            try {
+                emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(next.frame(), MediaType.TEXT_PLAIN)));
+            } catch (IOException | IllegalStateException e) { // IllegalStateException: the emitter is already complete
+                failure = e;
+            }
+            long now = System.nanoTime();
+            Runnable afterEviction;
+            synchronized (this) {
+                writeStartedNanos = 0;
+                afterEviction = afterEvictedWrite;
+                afterEvictedWrite = null;
+            }
+            if (afterEviction != null) {
+                afterEviction.run();
+                if (failure == null) {
+                    emitter.complete(); // The client took the write after all; eviction left completing to this drain
+                }
+                return;
+            }
+            if (failure != null) {
+                log.warn("Failed to send SSE frame to an emitter for key {}: {}. Removing.", key, failure.getMessage());
+                close();
+                return;
+            }
+            lastWriteNanos = now;
+            deliveryLatency.record(now - next.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.abhinavmehta.confx.service.sse;
+
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.dto.sse.ConfigUpdateSseDto;
+import com.abhinavmehta.confx.service.SseService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional debounce stage between config version publishes and the SSE broadcast. Updates of an environment are
+ * held until no new one arrived for {@code window-ms} (but never longer than {@code max-delay-ms} after the first),
+ * then sent as a single {@link ConfigUpdateSseDto#TYPE_CONFIG_BATCH_UPDATED} event carrying the last version per key.
+ * A batch holding a single key goes out as a plain {@link ConfigUpdateSseDto#TYPE_CONFIG_VERSION_UPDATED}.
+ * Versions published together by a bulk publish always share a batch.
+ * <p>
+ * Either way, when the updated configs have dependents, the update is followed by one
+ * {@link ConfigUpdateSseDto#TYPE_DEPENDENTS_AFFECTED} event listing them, routed to the clients following those keys.
+ * <p>
+ * When disabled, every update is forwarded immediately, bulk publishes as a single batch event.
+ */
+@Component
+@Slf4j
+public class SseUpdateCoalescer {
+
+    private final SseService sseService;
+    private final boolean enabled;
+    private final long windowMs;
+    private final long maxDelayMs;
+    private final ScheduledExecutorService scheduler;
+
+    // Project id -> environment id -> updates waiting for their window to close. Guarded by this.
+    private final Map<Long, Map<Long, PendingBatch>> pending = new HashMap<>();
+
+    public SseUpdateCoalescer(SseService sseService,
+                              @Value("${confx.sse.coalescing.enabled:false}") boolean enabled,
+                              @Value("${confx.sse.coalescing.window-ms:200}") long windowMs,
+                              @Value("${confx.sse.coalescing.max-delay-ms:1000}") long maxDelayMs) {
+        this.sseService = sseService;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxDelayMs = maxDelayMs;
+        this.scheduler = enabled ? Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("sse-coalescer-")) : null;
+    }
+
+    /**
+     * Queues the new active version of a config, published as the given environment revision.
+     * @param dependentKeys Keys of the configs depending on it, directly or transitively.
+     */
+    public void publish(Long projectId, Long environmentId, long revision, ConfigVersionResponseDto configVersion,
+                        Collection<String> dependentKeys) {
+        publishAll(projectId, environmentId, revision - 1, List.of(configVersion), dependentKeys);
+    }
+
+    /**
+     * Queues versions published together, as revisions {@code fromRevision + 1} onwards in list order. Without
+     * coalescing they are still sent as one event.
+     * @param dependentKeys Keys of the configs depending on any of them, directly or transitively.
+     */
+    public synchronized void publishAll(Long projectId, Long environmentId, long fromRevision, List<ConfigVersionResponseDto> configVersions,
+                                        Collection<String> dependentKeys) {
+        if (configVersions.isEmpty()) {
+            return;
+        }
+        if (!enabled) {
+            List<String> updatedKeys = configVersions.stream().map(ConfigVersionResponseDto::getConfigItemKey).toList();
+            sseService.sendUpdateToClients(projectId, environmentId, fromRevision, fromRevision + configVersions.size(), updatedKeys,
+                    update(configVersions), dependentKeys, dependentsAffected(updatedKeys, dependentKeys));
+            return;
+        }
+        long now = System.currentTimeMillis();
+        PendingBatch batch = pending.computeIfAbsent(projectId, p -> new HashMap<>())
+                .computeIfAbsent(environmentId, e -> new PendingBatch(now));
+        long revision = fromRevision;
+        for (ConfigVersionResponseDto configVersion : configVersions) {
+            batch.add(++revision, configVersion);
+        }
+        batch.dependentKeys.addAll(dependentKeys);
+        if (batch.flushTask != null) {
+            batch.flushTask.cancel(false);
+        }
+        long delay = Math.max(0, Math.min(windowMs, batch.firstUpdateAt + maxDelayMs - now));
+        batch.flushTask = scheduler.schedule(() -> flush(projectId, environmentId, batch), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the pending updates of every environment of a project right away, so an event about to be sent for
+     * the project (e.g. a config item deletion) is not overtaken by older updates still in their window.
+     */
+    public synchronized void flushProject(Long projectId) {
+        Map<Long, PendingBatch> projectBatches = pending.remove(projectId);
+        if (projectBatches != null) {
+            projectBatches.forEach((environmentId, batch) -> send(projectId, environmentId, batch));
+        }
+    }
+
+    public synchronized void discardEnvironment(Long projectId, Long environmentId) {
+        Map<Long, PendingBatch> projectBatches = pending.get(projectId);
+        if (projectBatches != null) {
+            PendingBatch batch = projectBatches.remove(environmentId);
+            if (batch != null) {
+                batch.flushTask.cancel(false);
+            }
+            if (projectBatches.isEmpty()) {
+                pending.remove(projectId);
+            }
+        }
+    }
+
+    public synchronized void discardProject(Long projectId) {
+        Map<Long, PendingBatch> projectBatches = pending.remove(projectId);
+        if (projectBatches != null) {
+            projectBatches.values().forEach(batch -> batch.flushTask.cancel(false));
+        }
+    }
+
+    private synchronized void flush(Long projectId, Long environmentId, PendingBatch batch) {
+        Map<Long, PendingBatch> projectBatches = pending.get(projectId);
+        if (projectBatches == null || !projectBatches.remove(environmentId, batch)) {
+            return; // Already flushed or discarded
+        }
+        if (projectBatches.isEmpty()) {
+            pending.remove(projectId);
+        }
+        send(projectId, environmentId, batch);
+    }
+
+    private void send(Long projectId, Long environmentId, PendingBatch batch) {
+        batch.flushTask.cancel(false);
+        ConfigUpdateSseDto sseDto = update(batch.latestByKey.values());
+        log.debug("Sending {} coalesced updates ({} keys) for Project: {}, Environment: {}",
+                  batch.updateCount, batch.latestByKey.size(), projectId, environmentId);
+        List<String> updatedKeys = List.copyOf(batch.latestByKey.keySet());
+        List<String> dependentKeys = List.copyOf(batch.dependentKeys);
+        sseService.sendUpdateToClients(projectId, environmentId, batch.fromRevision(), batch.maxRevision, updatedKeys, sseDto,
+                dependentKeys, dependentsAffected(updatedKeys, dependentKeys));
+    }
+
+    private static ConfigUpdateSseDto update(Collection<ConfigVersionResponseDto> configVersions) {
+        return configVersions.size() == 1
+                ? new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_CONFIG_VERSION_UPDATED, configVersions.iterator().next())
+                : new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_CONFIG_BATCH_UPDATED, new ArrayList<>(configVersions));
+    }
+
+    // Null when there is nothing to follow the update with.
+    private static ConfigUpdateSseDto dependentsAffected(Collection<String> updatedKeys, Collection<String> dependentKeys) {
+        if (dependentKeys.isEmpty()) {
+            return null;
+        }
+        return new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_DEPENDENTS_AFFECTED,
+                Map.of("configKeys", updatedKeys, "affectedKeys", dependentKeys));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static final class PendingBatch {
+        private final long firstUpdateAt;
+        private final Map<String, ConfigVersionResponseDto> latestByKey = new LinkedHashMap<>();
+        private final Set<String> dependentKeys = new LinkedHashSet<>();
+        private long minRevision = Long.MAX_VALUE;
+        private long maxRevision = Long.MIN_VALUE;
+        private int updateCount;
+        private ScheduledFuture<?> flushTask;
+
+        private PendingBatch(long firstUpdateAt) {
+            this.firstUpdateAt = firstUpdateAt;
+        }
+
+        private void add(long revision, ConfigVersionResponseDto configVersion) {
+            String key = configVersion.getConfigItemKey();
+            ConfigVersionResponseDto current = latestByKey.get(key);
+            // Listeners run concurrently, so a newer version may already be here
+            if (current == null || current.getVersionNumber() <= configVersion.getVersionNumber()) {
+                latestByKey.remove(key); // Re-inserted last, keeping the batch in update order
+                latestByKey.put(key, configVersion);
+            }
+            minRevision = Math.min(minRevision, revision);
+            maxRevision = Math.max(maxRevision, revision);
+            updateCount++;
+        }
+
+        /**
+         * The revision the batch brings clients from. It only stands for the whole range if the batch holds every
+         * revision in it; otherwise other changes happened in between and the batch only accounts for its last one.
+         */
+        private long fromRevision() {
+            return maxRevision - minRevision + 1 == updateCount ? minRevision - 1 : maxRevision - 1;
+        }
+    }
+}
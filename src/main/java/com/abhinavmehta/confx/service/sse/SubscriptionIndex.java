@@ -0,0 +1,105 @@
+package com.abhinavmehta.confx.service.sse;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes events of one environment to the subscribers interested in them. Unfiltered subscribers receive every
+ * event; filtered ones are indexed by their exact keys (hash lookup) and by their key prefixes (a character trie
+ * walked along the event's key), so routing costs one lookup plus one walk per event key, however many filtered
+ * subscribers there are.
+ * <p>
+ * Reads are lock-free. Writers must be serialized by the caller.
+ */
+public final class SubscriptionIndex {
+
+    private final Set<SseSubscriber> unfiltered = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<SseSubscriber>> byKey = new ConcurrentHashMap<>();
+    private final PrefixNode prefixRoot = new PrefixNode();
+
+    public void add(SseSubscriber subscriber) {
+        if (!subscriber.isFiltered()) {
+            unfiltered.add(subscriber);
+            return;
+        }
+        for (String configKey : subscriber.getConfigKeys()) {
+            byKey.computeIfAbsent(configKey, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        for (String prefix : subscriber.getConfigKeyPrefixes()) {
+            PrefixNode node = prefixRoot;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixNode());
+            }
+            node.subscribers.add(subscriber);
+        }
+    }
+
+    public void remove(SseSubscriber subscriber) {
+        if (!subscriber.isFiltered()) {
+            unfiltered.remove(subscriber);
+            return;
+        }
+        for (String configKey : subscriber.getConfigKeys()) {
+            byKey.computeIfPresent(configKey, (k, subscribers) -> {
+                subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+        for (String prefix : subscriber.getConfigKeyPrefixes()) {
+            removePrefix(prefixRoot, prefix, 0, subscriber);
+        }
+    }
+
+    /**
+     * Returns the subscribers interested in an event about the given keys, each once.
+     */
+    public Collection<SseSubscriber> route(Collection<String> eventConfigKeys) {
+        if (byKey.isEmpty() && prefixRoot.isEmpty()) {
+            return unfiltered; // Common case: nobody filters
+        }
+        Set<SseSubscriber> routed = Collections.newSetFromMap(new IdentityHashMap<>());
+        routed.addAll(unfiltered);
+        for (String eventConfigKey : eventConfigKeys) {
+            Set<SseSubscriber> exact = byKey.get(eventConfigKey);
+            if (exact != null) {
+                routed.addAll(exact);
+            }
+            PrefixNode node = prefixRoot;
+            routed.addAll(node.subscribers); // The empty prefix matches every key
+            for (int i = 0; i < eventConfigKey.length() && node != null; i++) {
+                node = node.children.get(eventConfigKey.charAt(i));
+                if (node != null) {
+                    routed.addAll(node.subscribers);
+                }
+            }
+        }
+        return routed;
+    }
+
+    // Returns whether the node became empty, so the parent can drop it.
+    private boolean removePrefix(PrefixNode node, String prefix, int depth, SseSubscriber subscriber) {
+        if (depth == prefix.length()) {
+            node.subscribers.remove(subscriber);
+        } else {
+            char c = prefix.charAt(depth);
+            PrefixNode child = node.children.get(c);
+            if (child != null && removePrefix(child, prefix, depth + 1, subscriber)) {
+                node.children.remove(c);
+            }
+        }
+        return node.isEmpty();
+    }
+
+    private static final class PrefixNode {
+        private final Map<Character, PrefixNode> children = new ConcurrentHashMap<>();
+        private final Set<SseSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+        private boolean isEmpty() {
+            return subscribers.isEmpty() && children.isEmpty();
+        }
+    }
+}
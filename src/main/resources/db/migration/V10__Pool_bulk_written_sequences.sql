@@ -0,0 +1,5 @@
+-- Ids of config versions and change log entries are allocated by the application in blocks of 50 (pooled
+-- sequence ids), so the rows of a bulk publish can be inserted in JDBC batches. The sequences must step by the
+-- block size; their next value stays above every existing id.
+ALTER SEQUENCE confx_schema.config_versions_id_seq INCREMENT BY 50;
+ALTER SEQUENCE confx_schema.config_change_log_id_seq INCREMENT BY 50;
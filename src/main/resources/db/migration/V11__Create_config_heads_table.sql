@@ -0,0 +1,29 @@
+-- Create config_heads table
+-- One row per config item and environment with versions: the active version and the last version number handed
+-- out. A publish claims the next number by updating the row under optimistic locking (row_version), so concurrent
+-- publishes of the same config conflict here before writing anything, and the active version is a key lookup away.
+CREATE TABLE confx_schema.config_heads (
+    config_item_id BIGINT NOT NULL,
+    environment_id BIGINT NOT NULL,
+    active_version_id BIGINT, -- Null while no version is active
+    last_version_number INT NOT NULL,
+    row_version BIGINT NOT NULL DEFAULT 0,
+    created_at BIGINT NOT NULL DEFAULT (EXTRACT(EPOCH FROM NOW()) * 1000),
+    updated_at BIGINT NOT NULL DEFAULT (EXTRACT(EPOCH FROM NOW()) * 1000),
+    PRIMARY KEY (config_item_id, environment_id),
+    CONSTRAINT fk_ch_config_item FOREIGN KEY (config_item_id) REFERENCES confx_schema.config_items(id) ON DELETE CASCADE,
+    CONSTRAINT fk_ch_environment FOREIGN KEY (environment_id) REFERENCES confx_schema.environments(id) ON DELETE CASCADE,
+    CONSTRAINT fk_ch_active_version FOREIGN KEY (active_version_id) REFERENCES confx_schema.config_versions(id) ON DELETE SET NULL
+);
+
+-- Heads of the versions published so far
+INSERT INTO confx_schema.config_heads (config_item_id, environment_id, active_version_id, last_version_number)
+SELECT config_item_id, environment_id, MAX(id) FILTER (WHERE is_active), MAX(version_number)
+FROM confx_schema.config_versions
+GROUP BY config_item_id, environment_id;
+
+-- Trigger to update updated_at timestamp on any change
+CREATE TRIGGER update_config_head_modtime
+BEFORE UPDATE ON confx_schema.config_heads
+FOR EACH ROW
+EXECUTE FUNCTION confx_schema.update_modified_column();
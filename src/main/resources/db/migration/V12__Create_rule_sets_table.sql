@@ -0,0 +1,38 @@
+-- Create rule_sets table and move the rules of every version into it
+-- Each distinct rule set is stored once, as a JSON array sorted by priority, under the SHA-256 (hex) of its canonical
+-- jsonb text. Versions reference their rule set by hash (null without rules), so identical rule sets across versions
+-- and environments share one row, and reading a version's rules is a key lookup.
+CREATE TABLE confx_schema.rule_sets (
+    hash VARCHAR(64) PRIMARY KEY,
+    rules JSONB NOT NULL, -- [{"priority", "conditionExpression", "valueToServe", "description"}], sorted by priority, no nulls
+    created_at BIGINT NOT NULL DEFAULT (EXTRACT(EPOCH FROM NOW()) * 1000) -- Rows are immutable, there is no updated_at
+);
+
+ALTER TABLE confx_schema.config_versions
+    ADD COLUMN rule_set_hash VARCHAR(64),
+    ADD CONSTRAINT fk_cv_rule_set FOREIGN KEY (rule_set_hash) REFERENCES confx_schema.rule_sets(hash);
+
+-- Rule sets of the existing versions, built and hashed the way the application does
+CREATE TEMPORARY TABLE version_rule_sets AS
+SELECT config_version_id, rules, encode(sha256(convert_to(rules::text, 'UTF8')), 'hex') AS hash
+FROM (
+    SELECT config_version_id,
+           jsonb_strip_nulls(jsonb_agg(jsonb_build_object(
+               'priority', priority,
+               'conditionExpression', condition_expression,
+               'valueToServe', value_to_serve,
+               'description', description) ORDER BY priority)) AS rules
+    FROM confx_schema.rules
+    GROUP BY config_version_id
+) per_version;
+
+INSERT INTO confx_schema.rule_sets (hash, rules)
+SELECT DISTINCT hash, rules FROM version_rule_sets;
+
+UPDATE confx_schema.config_versions cv
+SET rule_set_hash = vrs.hash
+FROM version_rule_sets vrs
+WHERE vrs.config_version_id = cv.id;
+
+DROP TABLE version_rule_sets;
+DROP TABLE confx_schema.rules;
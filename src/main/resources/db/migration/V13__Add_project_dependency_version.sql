@@ -0,0 +1,5 @@
+-- Version of a project's dependency graph, bumped by every transaction that changes its dependencies (while holding
+-- the project row lock that serializes them). A node's in-memory dependency index remembers the version it reflects,
+-- so one that missed another node's change is reloaded before it validates a new dependency.
+ALTER TABLE confx_schema.projects
+    ADD COLUMN dependency_version BIGINT NOT NULL DEFAULT 0;
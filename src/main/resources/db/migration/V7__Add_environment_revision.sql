@@ -0,0 +1,4 @@
+-- Monotonically increasing revision per environment, bumped whenever the environment's effective configuration changes.
+-- Served as ETag by the all-active-configs endpoint.
+ALTER TABLE confx_schema.environments
+    ADD COLUMN revision BIGINT NOT NULL DEFAULT 0;
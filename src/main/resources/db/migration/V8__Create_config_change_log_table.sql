@@ -0,0 +1,18 @@
+-- Create config_change_log table
+-- Append-only log of changes per environment. Every revision bump of an environment writes exactly one entry,
+-- so the entries after revision N are complete exactly when their count equals (current revision - N).
+CREATE TABLE confx_schema.config_change_log (
+    id BIGSERIAL PRIMARY KEY,
+    environment_id BIGINT NOT NULL,
+    revision BIGINT NOT NULL, -- The environment's revision this change produced
+    change_type VARCHAR(50) NOT NULL, -- VERSION_PUBLISHED, CONFIG_ITEM_UPDATED, CONFIG_ITEM_DELETED, ENVIRONMENT_UPDATED
+    config_item_id BIGINT, -- No foreign key: entries must outlive deleted config items
+    config_key VARCHAR(255),
+    created_at BIGINT NOT NULL DEFAULT (EXTRACT(EPOCH FROM NOW()) * 1000),
+    updated_at BIGINT NOT NULL DEFAULT (EXTRACT(EPOCH FROM NOW()) * 1000),
+    CONSTRAINT fk_ccl_environment FOREIGN KEY (environment_id) REFERENCES confx_schema.environments(id) ON DELETE CASCADE,
+    CONSTRAINT uq_ccl_environment_revision UNIQUE (environment_id, revision)
+);
+
+-- Index for compaction by age
+CREATE INDEX idx_ccl_created_at ON confx_schema.config_change_log (created_at);
@@ -0,0 +1,13 @@
+-- Create config_event_outbox table
+-- Change events written in the same transaction as the change they describe, and deleted once relayed to
+-- SSE clients, caches and other nodes. Ids are assigned at insert; changes of one environment are written under
+-- its row lock, so their ids follow their commit order.
+CREATE TABLE confx_schema.config_event_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    project_id BIGINT NOT NULL, -- No foreign keys: entries must outlive deleted projects and environments
+    environment_id BIGINT, -- Null for changes to the whole project
+    event_type VARCHAR(100) NOT NULL,
+    payload TEXT NOT NULL, -- JSON
+    created_at BIGINT NOT NULL DEFAULT (EXTRACT(EPOCH FROM NOW()) * 1000),
+    updated_at BIGINT NOT NULL DEFAULT (EXTRACT(EPOCH FROM NOW()) * 1000)
+);
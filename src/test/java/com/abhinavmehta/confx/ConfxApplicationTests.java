@@ -0,0 +1,11 @@
+package com.abhinavmehta.confx;
+
+import com.abhinavmehta.confx.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+
+class ConfxApplicationTests extends IntegrationTest {
+
+    @Test
+    void contextLoads() {
+    }
+}
@@ -0,0 +1,94 @@
+package com.abhinavmehta.confx;
+
+import com.abhinavmehta.confx.support.SseConnections;
+import com.abhinavmehta.confx.support.TestDatabase;
+import com.abhinavmehta.confx.support.TestFixtures;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds many SSE connections open on a node with platform threads (the default) and on one with virtual threads
+ * ({@code spring.threads.virtual.enabled}), and reports the platform threads and heap each connection costs. The
+ * clients run in the same JVM, so the heap per connection includes their (small) share. Run with
+ * {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class SseConnectionLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SseConnectionLoadTest.class);
+    private static final int CONNECTIONS = 2000; // Each costs two sockets in this JVM
+    private static final int WARMUP_CONNECTIONS = 100;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void connectionsHeldWithPlatformAndVirtualThreads() throws Exception {
+        Result platform = holdConnections(false);
+        Result virtual = holdConnections(true);
+
+        log.info(String.format("%16s %12s %20s %20s", "thread mode", "connections", "platform threads", "heap KB/connection"));
+        for (Result result : new Result[] {platform, virtual}) {
+            log.info(String.format("%16s %12d %20s %20.1f", result.mode(), result.connections(),
+                    result.threadsBefore() + " -> " + result.threadsAfter(), result.heapBytesPerConnection() / 1024.0));
+        }
+        assertThat(platform.connections()).isEqualTo(CONNECTIONS);
+        assertThat(virtual.connections()).isEqualTo(CONNECTIONS);
+    }
+
+    private Result holdConnections(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext node = startNode(virtualThreads)) {
+            int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+            TestFixtures fixtures = node.getBean(TestFixtures.class);
+            Long projectId = fixtures.project();
+            Long environmentId = fixtures.environment(projectId);
+
+            // Lazily started server threads and loaded classes are not the connections' cost
+            try (SseConnections warmup = new SseConnections(port, projectId, environmentId, false)) {
+                warmup.openUpTo(WARMUP_CONNECTIONS);
+            }
+            long heapBefore = usedHeapAfterGc();
+            int threadsBefore = threads.getThreadCount();
+            try (SseConnections connections = new SseConnections(port, projectId, environmentId, false)) {
+                connections.openUpTo(CONNECTIONS);
+                long heapAfter = usedHeapAfterGc();
+                return new Result(virtualThreads ? "virtual" : "platform", connections.size(), threadsBefore,
+                        threads.getThreadCount(), (heapAfter - heapBefore) / (double) connections.size());
+            }
+        }
+    }
+
+    private long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static ConfigurableApplicationContext startNode(boolean virtualThreads) {
+        // As arguments, which take precedence over application.properties
+        return new SpringApplicationBuilder(ConfxApplication.class, TestFixtures.class)
+                .run("--spring.datasource.url=" + TestDatabase.jdbcUrl(),
+                        "--spring.datasource.username=" + TestDatabase.username(),
+                        "--spring.datasource.password=" + TestDatabase.password(),
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads);
+    }
+
+    private record Result(String mode, int connections, int threadsBefore, int threadsAfter, double heapBytesPerConnection) {
+    }
+}
@@ -0,0 +1,66 @@
+package com.abhinavmehta.confx.controller;
+
+import com.abhinavmehta.confx.dto.UpdateConfigItemRequestDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.service.ConfigItemService;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ConfigDependencyControllerTest extends IntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ConfigItemService configItemService;
+
+    @Test
+    void dependencyListingIsRevalidatedByETag() throws Exception {
+        Long projectId = fixtures.project();
+        Long parentId = fixtures.item(projectId, "parent", ConfigDataType.BOOLEAN);
+        Long childId = fixtures.item(projectId, "child", ConfigDataType.STRING);
+        fixtures.dependency(projectId, childId, parentId, "true");
+
+        String eTag = eTag(projectId);
+        mockMvc.perform(get("/api/v1/projects/{projectId}/dependencies/all", projectId).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        fixtures.item(projectId, "unrelated", ConfigDataType.STRING);
+        assertThat(eTag(projectId)).isEqualTo(eTag);
+
+        Long otherId = fixtures.item(projectId, "other", ConfigDataType.BOOLEAN);
+        fixtures.dependency(projectId, otherId, parentId, "false");
+        String afterAdd = eTag(projectId);
+        assertThat(afterAdd).isNotEqualTo(eTag);
+
+        // The prerequisite's data type is part of the listing
+        UpdateConfigItemRequestDto update = new UpdateConfigItemRequestDto();
+        update.setDataType(ConfigDataType.STRING);
+        configItemService.updateConfigItem(projectId, parentId, update);
+        String afterTypeChange = eTag(projectId);
+        assertThat(afterTypeChange).isNotEqualTo(afterAdd);
+
+        configItemService.deleteConfigItem(projectId, otherId);
+        assertThat(eTag(projectId)).isNotEqualTo(afterTypeChange);
+    }
+
+    @Test
+    void unknownProjectIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/v1/projects/{projectId}/dependencies/all", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    private String eTag(Long projectId) throws Exception {
+        String eTag = mockMvc.perform(get("/api/v1/projects/{projectId}/dependencies/all", projectId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(eTag).isNotNull();
+        return eTag;
+    }
+}
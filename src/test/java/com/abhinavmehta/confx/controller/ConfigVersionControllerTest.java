@@ -0,0 +1,137 @@
+package com.abhinavmehta.confx.controller;
+
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static com.abhinavmehta.confx.support.TestFixtures.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ConfigVersionControllerTest extends IntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void historyIsTheWholeHistoryAsAJsonArray() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        Long itemId = fixtures.item(projectId, "listed", ConfigDataType.STRING);
+        for (int i = 1; i <= 3; i++) {
+            fixtures.publish(projectId, environmentId, itemId, "value" + i, rule(1, "['tier'] == 'gold'", "gold" + i));
+        }
+
+        MvcResult started = mockMvc.perform(get(versionsUrl(projectId, environmentId, itemId)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode history = objectMapper.readTree(body);
+        assertThat(history.isArray()).isTrue();
+        assertThat(history).extracting(version -> version.get("versionNumber").asInt()).containsExactly(3, 2, 1);
+        assertThat(history).allSatisfy(version -> assertThat(version.get("rules")).hasSize(1));
+    }
+
+    @Test
+    void historyPagesFollowTheirCursor() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        Long itemId = fixtures.item(projectId, "paged", ConfigDataType.STRING);
+        for (int i = 1; i <= 3; i++) {
+            fixtures.publish(projectId, environmentId, itemId, "value" + i);
+        }
+        String pageUrl = versionsUrl(projectId, environmentId, itemId) + "/page";
+
+        JsonNode first = objectMapper.readTree(mockMvc.perform(get(pageUrl).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        JsonNode last = objectMapper.readTree(mockMvc.perform(get(pageUrl).param("limit", "2").param("cursor", first.get("nextCursor").asText()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        assertThat(first.get("versions")).extracting(version -> version.get("versionNumber").asInt()).containsExactly(3, 2);
+        assertThat(last.get("versions")).extracting(version -> version.get("versionNumber").asInt()).containsExactly(1);
+        assertThat(last.hasNonNull("nextCursor")).isFalse(); // Left out on the last page
+    }
+
+    @Test
+    void historyPageWithAnInvalidLimitOrCursorIsABadRequest() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        Long itemId = fixtures.item(projectId, "paged", ConfigDataType.STRING);
+        String pageUrl = versionsUrl(projectId, environmentId, itemId) + "/page";
+
+        for (String limit : List.of("0", "-1", "1001")) {
+            mockMvc.perform(get(pageUrl).param("limit", limit)).andExpect(status().isBadRequest());
+        }
+        String notAVersion = Base64.getUrlEncoder().encodeToString("v:three".getBytes(StandardCharsets.UTF_8));
+        for (String cursor : List.of("not base64!", "bm9wZQ", notAVersion)) {
+            mockMvc.perform(get(pageUrl).param("cursor", cursor)).andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    void exportStreamsTheHistoryAsNdjson() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        Long itemId = fixtures.item(projectId, "exported", ConfigDataType.STRING);
+        for (int i = 1; i <= 3; i++) {
+            fixtures.publish(projectId, environmentId, itemId, "value" + i, rule(1, "['tier'] == 'gold'", "gold" + i));
+        }
+
+        MvcResult started = mockMvc.perform(get(exportUrl(projectId, environmentId, itemId)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).endsWith("\n");
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        assertThat(lines).extracting(line -> line.get("versionNumber").asInt()).containsExactly(3, 2, 1);
+        assertThat(lines).allSatisfy(line -> assertThat(line.get("rules")).hasSize(1));
+    }
+
+    @Test
+    void exportOfUnknownConfigItemIsNotFound() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+
+        mockMvc.perform(get(exportUrl(projectId, environmentId, Long.MAX_VALUE)))
+                .andExpect(status().isNotFound());
+    }
+
+    private static String versionsUrl(Long projectId, Long environmentId, Long configItemId) {
+        return "/api/v1/projects/" + projectId + "/environments/" + environmentId + "/configs/" + configItemId + "/versions";
+    }
+
+    private static String exportUrl(Long projectId, Long environmentId, Long configItemId) {
+        return versionsUrl(projectId, environmentId, configItemId) + "/export";
+    }
+}
@@ -0,0 +1,69 @@
+package com.abhinavmehta.confx.sdk;
+
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.sdk.dto.EvaluationContext;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.abhinavmehta.confx.support.TestFixtures.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * The SDK against this server, started on a random port. Its behaviour in isolation (revalidation, retries) is
+ * tested in the confx-client module, against a stub.
+ */
+class ConfXClientTest extends IntegrationTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void closeResources() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void evaluatesLocallyAndFollowsPublishes() {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        Long itemId = fixtures.item(projectId, "greeting", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, itemId, "hello", rule(1, "['tier'] == 'gold'", "welcome back"));
+
+        ConfXClient client = client(config(projectId, environmentId).build());
+        await().atMost(Duration.ofSeconds(10)).until(client::isInitialized);
+
+        assertThat(client.getStringValue("greeting", context("tier", "gold"), null)).isEqualTo("welcome back");
+        assertThat(client.getStringValue("greeting", context("tier", "free"), null)).isEqualTo("hello");
+        assertThat(client.getStringValue("missing", context("tier", "free"), "fallback")).isEqualTo("fallback");
+
+        // Delivered by the update stream: the poll interval is far longer than the wait
+        fixtures.publish(projectId, environmentId, itemId, "hi");
+        await().atMost(Duration.ofSeconds(10))
+                .untilAsserted(() -> assertThat(client.getStringValue("greeting", context("tier", "gold"), null)).isEqualTo("hi"));
+    }
+
+    private ConfXClient client(ConfXSDKConfig config) {
+        ConfXClient client = new ConfXClient(config);
+        resources.add(0, client);
+        return client;
+    }
+
+    private ConfXSDKConfig.ConfXSDKConfigBuilder config(Long projectId, Long environmentId) {
+        return ConfXSDKConfig.builder()
+                .serverUrl("http://localhost:" + port)
+                .projectId(projectId)
+                .environmentId(environmentId);
+    }
+
+    private static EvaluationContext context(String attribute, Object value) {
+        return new EvaluationContext(Map.of(attribute, value));
+    }
+}
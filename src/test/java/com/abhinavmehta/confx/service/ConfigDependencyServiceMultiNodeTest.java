@@ -0,0 +1,81 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.ConfxApplication;
+import com.abhinavmehta.confx.dto.ConfigDependencyRequestDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.support.TestDatabase;
+import com.abhinavmehta.confx.support.TestFixtures;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Two application nodes on one database. They do not talk to each other: the cluster bus is off, and the outbox is
+ * only polled hourly, so each relay runs right after its own node's commits and has dispatched them before the other
+ * node writes. (Either relay reads every node's outbox entries; one lagging behind would let the other node dispatch
+ * them.) So a node's caches never hear of the other's changes: the worst case of a late cluster message.
+ */
+class ConfigDependencyServiceMultiNodeTest {
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void cycleIsRejectedAgainstEdgesWrittenByAnotherNode() {
+        TestFixtures fixtures = nodeA.getBean(TestFixtures.class);
+        Long projectId = fixtures.project();
+        Long x = fixtures.item(projectId, "x", ConfigDataType.BOOLEAN);
+        Long y = fixtures.item(projectId, "y", ConfigDataType.BOOLEAN);
+        Long v = fixtures.item(projectId, "v", ConfigDataType.BOOLEAN);
+        Long w = fixtures.item(projectId, "w", ConfigDataType.BOOLEAN);
+
+        addDependency(nodeB, projectId, w, v); // Loads node B's index
+        addDependency(nodeA, projectId, x, y);
+
+        assertThatThrownBy(() -> addDependency(nodeB, projectId, y, x))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("circular");
+        assertThatThrownBy(() -> addDependency(nodeB, projectId, x, y))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("already exists");
+        addDependency(nodeB, projectId, y, v);
+        assertThat(nodeA.getBean(ConfigDependencyService.class).getAllDependenciesForProject(projectId)).hasSize(3);
+    }
+
+    private static void addDependency(ConfigurableApplicationContext node, Long projectId, Long dependentItemId, Long prerequisiteItemId) {
+        ConfigDependencyRequestDto dto = new ConfigDependencyRequestDto();
+        dto.setPrerequisiteConfigItemId(prerequisiteItemId);
+        dto.setPrerequisiteExpectedValue("true");
+        node.getBean(ConfigDependencyService.class).addDependency(projectId, dependentItemId, dto);
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        // As arguments, which take precedence over application.properties
+        return new SpringApplicationBuilder(ConfxApplication.class, TestFixtures.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + TestDatabase.jdbcUrl(),
+                        "--spring.datasource.username=" + TestDatabase.username(),
+                        "--spring.datasource.password=" + TestDatabase.password(),
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--confx.outbox.poll-interval-ms=3600000");
+    }
+}
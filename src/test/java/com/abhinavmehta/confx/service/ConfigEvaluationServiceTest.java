@@ -0,0 +1,203 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.dto.EvaluatedConfigResponseDto;
+import com.abhinavmehta.confx.dto.EvaluationContext;
+import com.abhinavmehta.confx.dto.RuleDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.service.dependency.DependencyGraphService;
+import com.abhinavmehta.confx.service.snapshot.EvaluationSnapshotService;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.abhinavmehta.confx.support.TestFixtures.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConfigEvaluationServiceTest extends IntegrationTest {
+
+    @Autowired
+    private ConfigEvaluationService evaluationService;
+
+    @Autowired
+    private EvaluationSnapshotService evaluationSnapshotService;
+
+    @Autowired
+    private DependencyGraphService dependencyGraphService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long projectId;
+    private Long environmentId;
+
+    @BeforeEach
+    void setUp() {
+        projectId = fixtures.project();
+        environmentId = fixtures.environment(projectId);
+    }
+
+    @Test
+    void evaluatesRulesAndDefaults() {
+        Long itemId = fixtures.item(projectId, "checkout.enabled", ConfigDataType.BOOLEAN);
+        fixtures.publish(projectId, environmentId, itemId, "false",
+                rule(1, "['region'] == 'EU'", "true"), rule(5, "['tier'] == 'gold'", "true"));
+
+        EvaluatedConfigResponseDto matched = evaluate("checkout.enabled", Map.of("region", "US", "tier", "gold"));
+        assertThat(matched.getValue()).isEqualTo(true);
+        assertThat(matched.getEvaluationSource()).isEqualTo("RULE_MATCH");
+        assertThat(matched.getMatchedRuleId()).isEqualTo(5L); // Its priority
+        EvaluatedConfigResponseDto fallback = evaluate("checkout.enabled", Map.of("region", "US"));
+        assertThat(fallback.getValue()).isEqualTo(false);
+        assertThat(fallback.getEvaluationSource()).isEqualTo("DEFAULT_VALUE");
+        assertThat(fallback.getMatchedRuleId()).isNull();
+    }
+
+    @Test
+    void prerequisiteNotMetTurnsDependentOff() {
+        Long parentId = fixtures.item(projectId, "parent", ConfigDataType.BOOLEAN);
+        Long childId = fixtures.item(projectId, "child", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, parentId, "false");
+        fixtures.publish(projectId, environmentId, childId, "on");
+        fixtures.dependency(projectId, childId, parentId, "true");
+
+        EvaluatedConfigResponseDto child = evaluate("child", Map.of());
+        assertThat(child.getValue()).isNull();
+        assertThat(child.getEvaluationSource()).isEqualTo("PREREQUISITE_NOT_MET");
+    }
+
+    @Test
+    void prerequisitesAfterTheFirstUnmetOneAreNotEvaluated() {
+        Long unmetId = fixtures.item(projectId, "unmet", ConfigDataType.BOOLEAN);
+        Long brokenId = fixtures.item(projectId, "broken", ConfigDataType.BOOLEAN);
+        Long childId = fixtures.item(projectId, "child", ConfigDataType.BOOLEAN);
+        fixtures.publish(projectId, environmentId, unmetId, "false");
+        fixtures.publish(projectId, environmentId, childId, "true");
+        fixtures.dependency(projectId, childId, unmetId, "true");
+        fixtures.dependency(projectId, childId, brokenId, "true"); // No active version: would fail if evaluated
+
+        EvaluatedConfigResponseDto child = evaluate("child", Map.of());
+        assertThat(child.getValue()).isEqualTo(false);
+        assertThat(child.getEvaluationSource()).isEqualTo("PREREQUISITE_NOT_MET");
+    }
+
+    @Test
+    void deepPrerequisiteChainsAreEvaluated() {
+        Long previousId = fixtures.item(projectId, "level0", ConfigDataType.BOOLEAN);
+        fixtures.publish(projectId, environmentId, previousId, "true");
+        for (int level = 1; level <= 20; level++) {
+            Long itemId = fixtures.item(projectId, "level" + level, ConfigDataType.BOOLEAN);
+            fixtures.publish(projectId, environmentId, itemId, "true");
+            fixtures.dependency(projectId, itemId, previousId, "true");
+            previousId = itemId;
+        }
+
+        EvaluatedConfigResponseDto top = evaluate("level20", Map.of());
+        assertThat(top.getValue()).isEqualTo(true);
+        assertThat(top.getEvaluationSource()).isEqualTo("DEFAULT_VALUE");
+    }
+
+    @Test
+    void singleEvaluationOfUnknownKeyFails() {
+        assertThatThrownBy(() -> evaluate("missing", Map.of())).isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    void bulkEvaluationReportsFailuresPerKeyWhenKeysAreGiven() {
+        Long publishedId = fixtures.item(projectId, "published", ConfigDataType.INTEGER);
+        fixtures.item(projectId, "unpublished", ConfigDataType.INTEGER);
+        fixtures.publish(projectId, environmentId, publishedId, "7");
+
+        Map<String, EvaluatedConfigResponseDto> results = evaluationService.evaluateConfigs(
+                projectId, environmentId, List.of("published", "unpublished", "missing"), new EvaluationContext(Map.of()));
+
+        assertThat(results).containsOnlyKeys("published", "unpublished", "missing");
+        assertThat(results.get("published").getValue()).isEqualTo(7);
+        assertThat(results.get("unpublished").getEvaluationSource()).isEqualTo("EVALUATION_ERROR");
+        assertThat(results.get("unpublished").getDataType()).isEqualTo(ConfigDataType.INTEGER);
+        assertThat(results.get("missing").getEvaluationSource()).isEqualTo("EVALUATION_ERROR");
+        assertThat(results.get("missing").getError()).contains("missing");
+    }
+
+    @Test
+    void bulkEvaluationOfEverythingReportsFailuresTheSameWay() {
+        Long parentId = fixtures.item(projectId, "parent", ConfigDataType.BOOLEAN);
+        Long childId = fixtures.item(projectId, "child", ConfigDataType.BOOLEAN);
+        fixtures.publish(projectId, environmentId, childId, "true");
+        fixtures.dependency(projectId, childId, parentId, "true"); // The parent has no active version
+
+        Map<String, EvaluatedConfigResponseDto> all = evaluationService.evaluateConfigs(projectId, environmentId, List.of(), new EvaluationContext(Map.of()));
+        Map<String, EvaluatedConfigResponseDto> byKey = evaluationService.evaluateConfigs(projectId, environmentId, List.of("child"), new EvaluationContext(Map.of()));
+
+        assertThat(all.get("child").getEvaluationSource()).isEqualTo("EVALUATION_ERROR");
+        assertThat(all.get("child")).isEqualTo(byKey.get("child"));
+    }
+
+    @Test
+    void configsOnAndBehindACycleReportItWhicheverIsAskedFor() {
+        Long firstId = fixtures.item(projectId, "first", ConfigDataType.BOOLEAN);
+        Long secondId = fixtures.item(projectId, "second", ConfigDataType.BOOLEAN);
+        Long dependentId = fixtures.item(projectId, "dependent", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, firstId, "true");
+        fixtures.publish(projectId, environmentId, secondId, "true");
+        fixtures.publish(projectId, environmentId, dependentId, "on");
+        // The API refuses cycles: only rows written around it can hold one, seen once the graph is rebuilt (e.g. on restart)
+        insertDependency(firstId, secondId);
+        insertDependency(secondId, firstId);
+        insertDependency(dependentId, firstId);
+        dependencyGraphService.evictProject(projectId);
+
+        for (String configKey : List.of("dependent", "first", "second")) {
+            EvaluatedConfigResponseDto result = evaluate(configKey, Map.of());
+            assertThat(result.getEvaluationSource()).as(configKey).isEqualTo("CYCLIC_DEPENDENCY_ERROR");
+        }
+        assertThat(evaluate("first", Map.of()).getValue()).isEqualTo(false);
+        assertThat(evaluate("dependent", Map.of()).getValue()).isNull();
+
+        Map<String, EvaluatedConfigResponseDto> all = evaluationService.evaluateConfigs(projectId, environmentId, List.of(), new EvaluationContext(Map.of()));
+        assertThat(all.values()).extracting(EvaluatedConfigResponseDto::getEvaluationSource).containsOnly("CYCLIC_DEPENDENCY_ERROR");
+    }
+
+    @Test
+    void bulkEvaluationConfinesUnexpectedFailuresToTheirKey() {
+        Long healthyId = fixtures.item(projectId, "healthy", ConfigDataType.STRING);
+        Long failingId = fixtures.item(projectId, "failing", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, healthyId, "fine");
+        fixtures.publish(projectId, environmentId, failingId, "fine", rule(1, "['boom'] == true", "never"));
+        RuleEvaluationService rules = mock(RuleEvaluationService.class);
+        when(rules.findMatchingRule(argThat(this::hasBoomRule), any())).thenThrow(new IllegalStateException("Rule engine broke"));
+        ConfigEvaluationService service = new ConfigEvaluationService(evaluationSnapshotService, dependencyGraphService, rules);
+
+        Map<String, EvaluatedConfigResponseDto> results = service.evaluateConfigs(
+                projectId, environmentId, List.of("healthy", "failing"), new EvaluationContext(Map.of()));
+
+        assertThat(results.get("healthy").getValue()).isEqualTo("fine");
+        assertThat(results.get("failing").getEvaluationSource()).isEqualTo("EVALUATION_ERROR");
+        assertThat(results.get("failing").getError()).isEqualTo("Rule engine broke");
+        assertThat(results.get("failing").getDataType()).isEqualTo(ConfigDataType.STRING);
+    }
+
+    private boolean hasBoomRule(List<RuleDto> rules) {
+        return rules != null && rules.stream().anyMatch(rule -> rule.getConditionExpression().contains("boom"));
+    }
+
+    private void insertDependency(Long dependentId, Long prerequisiteId) {
+        jdbcTemplate.update("INSERT INTO confx_schema.config_dependencies "
+                + "(dependent_config_item_id, prerequisite_config_item_id, prerequisite_expected_value) VALUES (?, ?, 'true')",
+                dependentId, prerequisiteId);
+    }
+
+    private EvaluatedConfigResponseDto evaluate(String configKey, Map<String, Object> attributes) {
+        return evaluationService.evaluateConfig(projectId, environmentId, configKey, new EvaluationContext(attributes));
+    }
+}
@@ -0,0 +1,98 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.repository.ConfigHeadRepository;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Retries of conflicting publishes, with head claims made to fail on demand. Closes its context afterwards (the spy
+ * makes it a context of its own), so its outbox relay does not compete with the shared one's.
+ */
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class ConfigVersionPublishRetryTest extends IntegrationTest {
+
+    @SpyBean
+    private ConfigHeadRepository configHeadRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Long projectId;
+    private Long environmentId;
+    private Long itemId;
+
+    @BeforeEach
+    void setUp() {
+        projectId = fixtures.project();
+        environmentId = fixtures.environment(projectId);
+        itemId = fixtures.item(projectId, "retried", ConfigDataType.STRING);
+    }
+
+    @Test
+    void deadlockedPublishIsRetried() {
+        doThrow(new CannotAcquireLockException("deadlock detected")).doAnswer(delegateToRepository())
+                .when(configHeadRepository).saveAllAndFlush(any());
+        double retries = count("confx.publish.retries");
+
+        assertThat(fixtures.publish(projectId, environmentId, itemId, "a").getVersionNumber()).isEqualTo(1);
+        verify(configHeadRepository, times(2)).saveAllAndFlush(any());
+        assertThat(count("confx.publish.retries")).isEqualTo(retries + 1);
+    }
+
+    @Test
+    void publishStillConflictingAfterTheLastAttemptIsAConflict() throws Exception {
+        doThrow(new OptimisticLockingFailureException("Head changed concurrently"))
+                .when(configHeadRepository).saveAllAndFlush(any());
+        double retries = count("confx.publish.retries");
+        double conflicts = count("confx.publish.conflicts");
+
+        mockMvc.perform(post("/api/v1/projects/" + projectId + "/environments/" + environmentId + "/configs/" + itemId + "/versions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"value\": \"a\", \"rules\": []}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value(409));
+
+        verify(configHeadRepository, times(5)).saveAllAndFlush(any()); // confx.publish.max-attempts
+        assertThat(count("confx.publish.retries")).isEqualTo(retries + 4);
+        assertThat(count("confx.publish.conflicts")).isEqualTo(conflicts + 1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM confx_schema.config_versions WHERE config_item_id = ?", Long.class, itemId)).isZero();
+    }
+
+    private double count(String counter) {
+        return meterRegistry.counter(counter).count();
+    }
+
+    // The spy's own behaviour: it wraps a repository proxy, which has no real methods to call
+    private Answer<?> delegateToRepository() {
+        return Mockito.mockingDetails(configHeadRepository).getMockCreationSettings().getDefaultAnswer();
+    }
+}
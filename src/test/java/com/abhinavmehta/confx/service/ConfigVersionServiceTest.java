@@ -0,0 +1,287 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.dto.BulkPublishConfigRequestDto;
+import com.abhinavmehta.confx.dto.ConfigChangesResponseDto;
+import com.abhinavmehta.confx.dto.ConfigVersionHistoryPageDto;
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static com.abhinavmehta.confx.support.TestFixtures.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ConfigVersionServiceTest extends IntegrationTest {
+
+    @Autowired
+    private ConfigVersionService configVersionService;
+
+    @Autowired
+    private ConfigItemService configItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Long projectId;
+    private Long environmentId;
+
+    @BeforeEach
+    void setUp() {
+        projectId = fixtures.project();
+        environmentId = fixtures.environment(projectId);
+    }
+
+    @Test
+    void activeConfigsAreReadWithAConstantNumberOfStatements() {
+        Long firstId = fixtures.item(projectId, "first", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, firstId, "a", rule(1, "['tier'] == 'gold'", "b"));
+        long oneConfig = sqlStatements.count(() -> configVersionService.getAllActiveConfigsForEnvironment(projectId, environmentId));
+
+        for (int i = 0; i < 20; i++) {
+            Long itemId = fixtures.item(projectId, "config" + i, ConfigDataType.STRING);
+            for (int version = 0; version < 3; version++) {
+                fixtures.publish(projectId, environmentId, itemId, "v" + version, rule(1, "['tier'] == 'gold'", "gold" + i));
+            }
+        }
+        // Versions of another project must be filtered out in SQL, not loaded
+        Long otherProjectId = fixtures.project();
+        Long otherEnvironmentId = fixtures.environment(otherProjectId);
+        fixtures.publish(otherProjectId, otherEnvironmentId, fixtures.item(otherProjectId, "first", ConfigDataType.STRING), "x");
+
+        AtomicReference<List<ConfigVersionResponseDto>> configs = new AtomicReference<>();
+        long manyConfigs = sqlStatements.count(
+                () -> configs.set(configVersionService.getAllActiveConfigsForEnvironment(projectId, environmentId)));
+
+        assertThat(configs.get()).hasSize(21).allSatisfy(config -> assertThat(config.getRules()).hasSize(1));
+        assertThat(manyConfigs).isEqualTo(oneConfig).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void bulkWrittenTablesAllocateIdsInBlocks() {
+        List<Long> increments = jdbcTemplate.queryForList(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = 'confx_schema' AND sequencename IN (?, ?)",
+                Long.class, "config_versions_id_seq", "config_change_log_id_seq");
+        assertThat(increments).containsExactly(50L, 50L);
+    }
+
+    @Test
+    void bulkPublishCostsTheSameStatementsWhateverItsSize() {
+        BulkPublishConfigRequestDto small = bulkPublish(2);
+        BulkPublishConfigRequestDto large = bulkPublish(40);
+        long few = sqlStatements.count(() -> configVersionService.publishVersions(projectId, small));
+        AtomicReference<List<ConfigVersionResponseDto>> published = new AtomicReference<>();
+        long many = sqlStatements.count(() -> published.set(configVersionService.publishVersions(projectId, large)));
+
+        assertThat(published.get()).hasSize(40).extracting(ConfigVersionResponseDto::getId).doesNotHaveDuplicates();
+        // Rows are inserted in batches; the only extra statements are id block fetches, at most one per sequence
+        assertThat(many).isBetween(few - 2, few + 2);
+    }
+
+    @Test
+    void batchedInsertsReachTheServerAsMultiRowStatements() throws Exception {
+        // reWriteBatchedInserts: the driver sends a batch of inserts as multi-row INSERTs rather than one per row, and
+        // then cannot tell the rows each statement inserted
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE batched (id BIGINT)");
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO batched (id) VALUES (?)")) {
+                for (long id = 1; id <= 4; id++) { // The driver rewrites batches in chunks of powers of two
+                    insert.setLong(1, id);
+                    insert.addBatch();
+                }
+                assertThat(insert.executeBatch()).containsOnly(Statement.SUCCESS_NO_INFO);
+            } finally {
+                statement.execute("DROP TABLE batched");
+            }
+        }
+    }
+
+    @Test
+    void historyIsPagedByCursorNewestFirst() {
+        Long itemId = fixtures.item(projectId, "history", ConfigDataType.INTEGER);
+        for (int i = 1; i <= 5; i++) {
+            fixtures.publish(projectId, environmentId, itemId, String.valueOf(i), rule(1, "['n'] == " + i, "0"));
+        }
+
+        List<Integer> versionNumbers = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ConfigVersionHistoryPageDto page = configVersionService.getConfigVersionHistoryPage(projectId, environmentId, itemId, cursor, 2, true);
+            page.getVersions().forEach(version -> {
+                versionNumbers.add(version.getVersionNumber());
+                assertThat(version.getRules()).hasSize(1);
+            });
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(versionNumbers).containsExactly(5, 4, 3, 2, 1);
+        assertThat(pages).isEqualTo(3);
+    }
+
+    @Test
+    void historyPageWithoutRulesLeavesThemOut() {
+        Long itemId = fixtures.item(projectId, "history", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, itemId, "a", rule(1, "['tier'] == 'gold'", "b"));
+
+        ConfigVersionHistoryPageDto page = configVersionService.getConfigVersionHistoryPage(projectId, environmentId, itemId, null, 10, false);
+
+        assertThat(page.getVersions()).singleElement().satisfies(version -> assertThat(version.getRules()).isNull());
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void invalidHistoryCursorsAndLimitsAreRejected() {
+        Long itemId = fixtures.item(projectId, "history", ConfigDataType.STRING);
+
+        assertThatThrownBy(() -> configVersionService.getConfigVersionHistoryPage(projectId, environmentId, itemId, "not a cursor", 10, true))
+                .isInstanceOf(IllegalArgumentException.class);
+        String notAVersion = Base64.getUrlEncoder().encodeToString("v:x".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> configVersionService.getConfigVersionHistoryPage(projectId, environmentId, itemId, notAVersion, 10, true))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> configVersionService.getConfigVersionHistoryPage(projectId, environmentId, itemId, null, 0, true))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> configVersionService.getConfigVersionHistoryPage(
+                projectId, environmentId, itemId, null, ConfigVersionService.MAX_HISTORY_PAGE_SIZE + 1, true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void keyDeletedAndReAddedIsOnlyReportedAsChanged() {
+        Long removedId = fixtures.item(projectId, "removed", ConfigDataType.STRING);
+        Long recreatedId = fixtures.item(projectId, "recreated", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, removedId, "a");
+        fixtures.publish(projectId, environmentId, recreatedId, "a");
+        long sinceRevision = revision();
+
+        configItemService.deleteConfigItem(projectId, removedId);
+        configItemService.deleteConfigItem(projectId, recreatedId);
+        fixtures.publish(projectId, environmentId, fixtures.item(projectId, "recreated", ConfigDataType.STRING), "b");
+
+        ConfigChangesResponseDto changes = configVersionService.getChangesSince(projectId, environmentId, sinceRevision, revision());
+
+        assertThat(changes.isFullSnapshot()).isFalse();
+        assertThat(changes.getDeletedConfigKeys()).containsExactly("removed");
+        assertThat(changes.getConfigs()).singleElement()
+                .satisfies(config -> assertThat(config.getConfigItemKey()).isEqualTo("recreated"))
+                .satisfies(config -> assertThat(config.getValue()).isEqualTo("b"));
+    }
+
+    @Test
+    void concurrentPublishersGetGaplessVersionNumbers() throws Exception {
+        Long itemId = fixtures.item(projectId, "contended", ConfigDataType.INTEGER);
+        int publishers = 8;
+        int publishesEach = 5;
+        ExecutorService executor = Executors.newFixedThreadPool(publishers);
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<Integer> versionNumbers = new ConcurrentLinkedQueue<>();
+        AtomicInteger conflicts = new AtomicInteger();
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int p = 0; p < publishers; p++) {
+                int publisher = p;
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < publishesEach; i++) {
+                        try {
+                            versionNumbers.add(fixtures.publish(projectId, environmentId, itemId, publisher + "" + i).getVersionNumber());
+                        } catch (ConcurrencyFailureException e) {
+                            conflicts.incrementAndGet(); // Still conflicting after the last attempt: a 409 for the client
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Integer> published = versionNumbers.stream().sorted().toList();
+        assertThat(published.size() + conflicts.get()).isEqualTo(publishers * publishesEach);
+        assertThat(published).isEqualTo(IntStream.rangeClosed(1, published.size()).boxed().toList());
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT version_number FROM confx_schema.config_versions WHERE config_item_id = ? ORDER BY version_number", Integer.class, itemId))
+                .isEqualTo(published);
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT version_number FROM confx_schema.config_versions WHERE config_item_id = ? AND is_active", Integer.class, itemId))
+                .containsExactly(published.size());
+    }
+
+    @Test
+    void firstPublishRacingWithAnotherIsRetried() throws Exception {
+        Long itemId = fixtures.item(projectId, "raced", ConfigDataType.STRING);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection other = dataSource.getConnection()) {
+            // Another first publish, which created the head but has not committed yet
+            other.setAutoCommit(false);
+            try (PreparedStatement insert = other.prepareStatement(
+                    "INSERT INTO confx_schema.config_heads (config_item_id, environment_id, last_version_number) VALUES (?, ?, 1)")) {
+                insert.setLong(1, itemId);
+                insert.setLong(2, environmentId);
+                insert.executeUpdate();
+            }
+            Future<ConfigVersionResponseDto> publish = executor.submit(() -> fixtures.publish(projectId, environmentId, itemId, "mine"));
+            await().atMost(Duration.ofSeconds(10)).until(() -> jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock' AND query ILIKE '%config_heads%'", Long.class) > 0);
+            other.commit(); // The publish's head insert now fails on the duplicate key
+
+            assertThat(publish.get(10, TimeUnit.SECONDS).getVersionNumber()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long revision() {
+        return jdbcTemplate.queryForObject("SELECT revision FROM confx_schema.environments WHERE id = ?", Long.class, environmentId);
+    }
+
+    private BulkPublishConfigRequestDto bulkPublish(int size) {
+        List<BulkPublishConfigRequestDto.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            BulkPublishConfigRequestDto.Entry entry = new BulkPublishConfigRequestDto.Entry();
+            entry.setConfigItemId(fixtures.item(projectId, "bulk-" + UUID.randomUUID(), ConfigDataType.STRING));
+            entry.setEnvironmentId(environmentId);
+            entry.setValue("value" + i);
+            entry.setRules(List.of(rule(1, "['tier'] == 'gold'", "gold" + i)));
+            entries.add(entry);
+        }
+        BulkPublishConfigRequestDto dto = new BulkPublishConfigRequestDto();
+        dto.setVersions(entries);
+        return dto;
+    }
+}
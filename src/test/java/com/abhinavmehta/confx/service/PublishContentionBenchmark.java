@@ -0,0 +1,120 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Publish throughput and latency against the number of concurrent publishers, each publishing in a loop. With one
+ * shared config, every publish claims the same {@code config_heads} row and races lose, to be retried; with a
+ * config per publisher, heads never conflict and only the database itself is shared. Latency is that of a whole
+ * {@link ConfigVersionService#publishNewVersion}, retries and their pauses included; beyond the connection pool's
+ * size, publishers also wait for a connection. Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class PublishContentionBenchmark extends IntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PublishContentionBenchmark.class);
+    private static final int[] PUBLISHER_COUNTS = {1, 2, 4, 8, 16, 32};
+    private static final int PUBLISHES_PER_PUBLISHER = 50;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void publishThroughputAgainstConcurrentPublishers() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        run(projectId, environmentId, 4, true); // Warm-up
+
+        log.info(String.format("%-10s %10s %12s %9s %9s %9s %9s %9s %10s", "heads", "publishers", "publishes/s",
+                "p50 ms", "p95 ms", "p99 ms", "max ms", "retries", "conflicts"));
+        for (boolean shared : new boolean[] {true, false}) {
+            for (int publishers : PUBLISHER_COUNTS) {
+                Round round = run(projectId, environmentId, publishers, shared);
+                long[] latencies = round.latencyNanos();
+                Arrays.sort(latencies);
+                log.info(String.format("%-10s %10d %12.0f %9.1f %9.1f %9.1f %9.1f %9d %10d", shared ? "shared" : "own",
+                        publishers, latencies.length * 1e9 / round.elapsedNanos(), millis(latencies, 0.50),
+                        millis(latencies, 0.95), millis(latencies, 0.99), millis(latencies, 1.0), round.retries(), round.conflicts()));
+                assertThat(latencies.length + round.conflicts()).isEqualTo(publishers * PUBLISHES_PER_PUBLISHER);
+            }
+        }
+    }
+
+    /**
+     * All publishers start together and publish {@link #PUBLISHES_PER_PUBLISHER} times each, to one new config
+     * (shared) or one new config each. Publishes that still conflict after the service's retries are counted, not
+     * timed.
+     */
+    private Round run(Long projectId, Long environmentId, int publishers, boolean shared) throws Exception {
+        List<Long> itemIds = new ArrayList<>();
+        for (int p = 0; p < (shared ? 1 : publishers); p++) {
+            itemIds.add(fixtures.item(projectId, "contended-" + UUID.randomUUID(), ConfigDataType.INTEGER));
+        }
+        long[] latencies = new long[publishers * PUBLISHES_PER_PUBLISHER];
+        AtomicInteger timed = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        double retriesBefore = meterRegistry.counter("confx.publish.retries").count();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(publishers);
+        long elapsedNanos;
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int p = 0; p < publishers; p++) {
+                Long itemId = itemIds.get(shared ? 0 : p);
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < PUBLISHES_PER_PUBLISHER; i++) {
+                        long before = System.nanoTime();
+                        try {
+                            fixtures.publish(projectId, environmentId, itemId, String.valueOf(i));
+                            latencies[timed.getAndIncrement()] = System.nanoTime() - before;
+                        } catch (ConcurrencyFailureException e) {
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get();
+            }
+            elapsedNanos = System.nanoTime() - startedAt;
+        } finally {
+            executor.shutdownNow();
+        }
+        long retries = (long) (meterRegistry.counter("confx.publish.retries").count() - retriesBefore);
+        return new Round(Arrays.copyOf(latencies, timed.get()), elapsedNanos, retries, conflicts.get());
+    }
+
+    private static double millis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private record Round(long[] latencyNanos, long elapsedNanos, long retries, int conflicts) {}
+}
@@ -0,0 +1,101 @@
+package com.abhinavmehta.confx.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleEvaluationServiceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void parsedExpressionsAreCachedAndCounted() {
+        RuleEvaluationService service = service(10, SpelCompilerMode.OFF);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.evaluateSingleCondition("['region'] == 'EU'", Map.of("region", "EU"))).isTrue();
+            assertThat(service.evaluateSingleCondition("['region'] == 'EU'", Map.of("region", "US"))).isFalse();
+        }
+
+        assertThat(counter("confx.rules.expression.cache.misses")).isEqualTo(1);
+        assertThat(counter("confx.rules.expression.cache.hits")).isEqualTo(5);
+    }
+
+    @Test
+    void leastRecentlyUsedExpressionIsEvicted() {
+        RuleEvaluationService service = service(2, SpelCompilerMode.OFF);
+
+        service.evaluateSingleCondition("['a'] == 1", Map.of("a", 1));
+        service.evaluateSingleCondition("['b'] == 1", Map.of("b", 1));
+        service.evaluateSingleCondition("['a'] == 1", Map.of("a", 1)); // Hit, 'b' is now the least recently used
+        service.evaluateSingleCondition("['c'] == 1", Map.of("c", 1)); // Evicts 'b'
+        service.evaluateSingleCondition("['a'] == 1", Map.of("a", 1));
+        service.evaluateSingleCondition("['b'] == 1", Map.of("b", 1));
+
+        assertThat(counter("confx.rules.expression.cache.misses")).isEqualTo(4); // a, b, c, then b again
+        assertThat(counter("confx.rules.expression.cache.hits")).isEqualTo(2);
+    }
+
+    @Test
+    void malformedExpressionsAreParsedOnceAndNeverMatch() {
+        RuleEvaluationService service = service(10, SpelCompilerMode.MIXED);
+
+        assertThat(service.evaluateSingleCondition("['region'] ==", Map.of("region", "EU"))).isFalse();
+        assertThat(service.evaluateSingleCondition("['region'] ==", Map.of("region", "EU"))).isFalse();
+
+        assertThat(counter("confx.rules.expression.cache.misses")).isEqualTo(1);
+        assertThat(counter("confx.rules.expression.compile.failures")).isZero(); // Never parsed, so never compiled
+    }
+
+    @Test
+    void compileFailuresAreCountedOncePerExpression() {
+        RuleEvaluationService service = service(10, SpelCompilerMode.MIXED);
+
+        for (int i = 0; i < 3; i++) {
+            // The matches operator has no bytecode form, the expression stays interpreted
+            assertThat(service.evaluateSingleCondition("['email'] matches '.*@example\\.com'", Map.of("email", "a@example.com"))).isTrue();
+            assertThat(service.evaluateSingleCondition("['tier'] == 'gold'", Map.of("tier", "gold"))).isTrue();
+        }
+
+        assertThat(counter("confx.rules.expression.compile.failures")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentEvaluationsOfSharedExpressionsAgree() throws Exception {
+        RuleEvaluationService service = service(10, SpelCompilerMode.MIXED);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String region = i % 2 == 0 ? "EU" : "US";
+                results.add(executor.submit(() -> service.evaluateSingleCondition(
+                        "['region'] == 'EU' && ['age'] > 21", Map.of("region", region, "age", 30)) == region.equals("EU")));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RuleEvaluationService service(int cacheSize, SpelCompilerMode compilerMode) {
+        RuleEvaluationService service = new RuleEvaluationService(meterRegistry, cacheSize, compilerMode);
+        service.registerMeters();
+        return service;
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).functionCounter().count();
+    }
+}
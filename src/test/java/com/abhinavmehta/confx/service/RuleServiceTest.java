@@ -0,0 +1,68 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.dto.RuleDto;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.abhinavmehta.confx.support.TestFixtures.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional // The service joins the caller's transaction; rolled back after each test
+class RuleServiceTest extends IntegrationTest {
+
+    // The rule set built and hashed by the V12 backfill, over rows shaped like the former rules table
+    private static final String BACKFILL_HASH = """
+            SELECT encode(sha256(convert_to(rules::text, 'UTF8')), 'hex')
+            FROM (
+                SELECT jsonb_strip_nulls(jsonb_agg(jsonb_build_object(
+                           'priority', priority,
+                           'conditionExpression', condition_expression,
+                           'valueToServe', value_to_serve,
+                           'description', description) ORDER BY priority)) AS rules
+                FROM (VALUES (2, '[''country''] == ''DE''', 'de', CAST(NULL AS TEXT)),
+                             (1, '[''tier''] == ''gold''', 'gold', 'Gold customers'))
+                    AS r(priority, condition_expression, value_to_serve, description)
+            ) per_version
+            """;
+
+    @Autowired
+    private RuleService ruleService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void storedRuleSetsHashLikeTheBackfill() {
+        RuleDto gold = rule(1, "['tier'] == 'gold'", "gold");
+        gold.setDescription("Gold customers");
+        List<RuleDto> rules = List.of(rule(2, "['country'] == 'DE'", "de"), gold); // Out of order, null description
+
+        String stored = ruleService.storeRuleSet(rules).hash();
+
+        assertThat(stored).isEqualTo(jdbcTemplate.queryForObject(BACKFILL_HASH, String.class));
+    }
+
+    @Test
+    void identicalRuleSetsAreStoredOnce() {
+        String condition = "['id'] == '" + System.nanoTime() + "'";
+        List<List<RuleDto>> ruleSets = new ArrayList<>();
+        ruleSets.add(List.of(rule(1, condition, "a")));
+        ruleSets.add(null);
+        ruleSets.add(List.of(rule(1, condition, "a")));
+
+        List<RuleService.StoredRuleSet> stored = ruleService.storeRuleSets(ruleSets);
+
+        assertThat(stored.get(0).hash()).isNotNull().isEqualTo(stored.get(2).hash());
+        assertThat(stored.get(1).hash()).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM confx_schema.rule_sets WHERE hash = ?", Long.class, stored.get(0).hash()))
+                .isEqualTo(1L);
+        assertThat(ruleService.getRuleSet(stored.get(0).hash())).singleElement()
+                .satisfies(rule -> assertThat(rule.getConditionExpression()).isEqualTo(condition));
+    }
+}
@@ -0,0 +1,126 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.dto.sse.ConfigUpdateSseDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import com.abhinavmehta.confx.support.SseConnections;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.List;
+
+import static com.abhinavmehta.confx.support.TestFixtures.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * CPU spent per publish on the SSE fan-out, against the number of subscribers of the environment. Subscribers are
+ * real connections to this server. A publish is timed from {@link SseService#sendUpdateToClients} until its frame is
+ * written to every subscriber: the CPU of the publishing thread (encoding the frame once, queuing it per
+ * subscriber) and of the fan-out threads (the socket writes). Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class SseFanoutBenchmark extends IntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SseFanoutBenchmark.class);
+    private static final int[] SUBSCRIBER_COUNTS = {1, 10, 100, 1000, 4000}; // Each costs two sockets in this JVM
+    private static final int WARMUP_PUBLISHES = 20;
+    private static final int MEASURED_PUBLISHES = 50;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Autowired
+    private SseService sseService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EnvironmentRevisionService environmentRevisionService;
+
+    private long revision;
+
+    @Test
+    void publishCpuAgainstSubscriberCount() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        Long itemId = fixtures.item(projectId, "checkout.banner", ConfigDataType.STRING);
+        ConfigVersionResponseDto version = fixtures.publish(projectId, environmentId, itemId, "Free shipping",
+                rule(1, "['region'] == 'EU'", "Livraison gratuite"), rule(2, "['tier'] == 'gold'", "Gold members ship free"));
+        ConfigUpdateSseDto payload = new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_CONFIG_VERSION_UPDATED, version);
+        revision = environmentRevisionService.getRevision(projectId, environmentId);
+
+        long before = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < 1000; i++) {
+            objectMapper.writeValueAsBytes(payload);
+        }
+        long serializationNanos = (threads.getCurrentThreadCpuTime() - before) / 1000;
+        log.info(String.format("One serialization of the payload: %.1f us of CPU, paid once per publish", serializationNanos / 1000.0));
+        log.info(String.format("%12s %16s %16s %16s %20s", "subscribers", "publisher us", "fan-out us", "total us", "us per subscriber"));
+
+        try (SseConnections connections = new SseConnections(port, projectId, environmentId, true)) {
+            for (int subscribers : SUBSCRIBER_COUNTS) {
+                connections.openUpTo(subscribers);
+                publish(projectId, environmentId, payload, subscribers, WARMUP_PUBLISHES);
+
+                long fanoutBefore = fanoutCpuNanos();
+                long publisherNanos = publish(projectId, environmentId, payload, subscribers, MEASURED_PUBLISHES);
+                long fanoutNanos = fanoutCpuNanos() - fanoutBefore;
+
+                long publisherPerPublish = publisherNanos / MEASURED_PUBLISHES;
+                long fanoutPerPublish = fanoutNanos / MEASURED_PUBLISHES;
+                long totalPerPublish = publisherPerPublish + fanoutPerPublish;
+                log.info(String.format("%12d %16.1f %16.1f %16.1f %20.2f", subscribers, publisherPerPublish / 1000.0,
+                        fanoutPerPublish / 1000.0, totalPerPublish / 1000.0, totalPerPublish / 1000.0 / subscribers));
+            }
+            assertThat(connections.size()).isEqualTo(SUBSCRIBER_COUNTS[SUBSCRIBER_COUNTS.length - 1]);
+        }
+    }
+
+    /**
+     * Publishes one at a time, each waiting until its frame is written to every subscriber, so queues never overflow.
+     * @return The CPU the publishing thread spent in the publishes, waits excluded.
+     */
+    private long publish(Long projectId, Long environmentId, ConfigUpdateSseDto payload, int subscribers, int publishes) {
+        long publisherNanos = 0;
+        for (int i = 0; i < publishes; i++) {
+            long written = writtenFrames(projectId, environmentId);
+            long before = threads.getCurrentThreadCpuTime();
+            sseService.sendUpdateToClients(projectId, environmentId, ++revision, List.of("checkout.banner"), payload);
+            publisherNanos += threads.getCurrentThreadCpuTime() - before;
+            await().atMost(Duration.ofSeconds(30)).pollInterval(Duration.ofMillis(1))
+                    .until(() -> writtenFrames(projectId, environmentId) >= written + subscribers);
+        }
+        return publisherNanos;
+    }
+
+    // Frames written so far (heartbeats included, though with events flowing none are queued)
+    private long writtenFrames(Long projectId, Long environmentId) {
+        return meterRegistry.get("confx.sse.fanout.latency")
+                .tags("project", String.valueOf(projectId), "environment", String.valueOf(environmentId))
+                .timer().count();
+    }
+
+    private long fanoutCpuNanos() {
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("sse-fanout-")) {
+                total += Math.max(0, threads.getThreadCpuTime(thread.threadId()));
+            }
+        }
+        return total;
+    }
+}
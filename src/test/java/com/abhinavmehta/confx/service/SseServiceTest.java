@@ -0,0 +1,280 @@
+package com.abhinavmehta.confx.service;
+
+import com.abhinavmehta.confx.dto.sse.ConfigUpdateSseDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The update stream as its clients see it. Streams are opened through MockMvc, whose response collects every frame
+ * written to the emitter; publishes reach them through the outbox relay, so deliveries are awaited. Streams are
+ * completed after each test, so later tests do not keep writing to them.
+ */
+class SseServiceTest extends IntegrationTest {
+
+    private static final Pattern EVENT = Pattern.compile("(?:id:(\\d+)\\n)?event:(\\w+)\\n");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EnvironmentRevisionService environmentRevisionService;
+
+    @Autowired
+    private SseService sseService;
+
+    private final List<MvcResult> streams = new ArrayList<>();
+    private Long projectId;
+    private Long environmentId;
+
+    @BeforeEach
+    void setUp() {
+        projectId = fixtures.project();
+        environmentId = fixtures.environment(projectId);
+    }
+
+    @AfterEach
+    void closeStreams() {
+        for (MvcResult stream : streams) {
+            if (stream.getRequest().isAsyncStarted()) {
+                stream.getRequest().getAsyncContext().complete();
+            }
+        }
+    }
+
+    @Test
+    void reconnectingClientsGetTheEventsTheyMissed() throws Exception {
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        MockHttpServletResponse live = stream(null);
+        for (String value : List.of("one", "two", "three")) {
+            fixtures.publish(projectId, environmentId, itemId, value);
+        }
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(live, "CONFIG_VERSION_UPDATED").size() == 3);
+        List<String> ids = events(live, "CONFIG_VERSION_UPDATED");
+
+        MockHttpServletResponse resumed = stream(ids.get(0));
+
+        assertThat(events(resumed, "CONFIG_VERSION_UPDATED")).containsExactly(ids.get(1), ids.get(2));
+        assertThat(resumed.getContentAsString()).contains("\"value\":\"two\"", "\"value\":\"three\"").doesNotContain("\"value\":\"one\"");
+        assertThat(resumed.getContentAsString().indexOf("event:connection_established"))
+                .isGreaterThan(resumed.getContentAsString().indexOf("\"value\":\"three\""));
+    }
+
+    @Test
+    void reconnectingClientsThatAreUpToDateGetNothingToReplay() throws Exception {
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, itemId, "one");
+        long revision = environmentRevisionService.getRevision(projectId, environmentId);
+
+        MockHttpServletResponse resumed = stream(String.valueOf(revision));
+
+        assertThat(events(resumed, null)).isEmpty();
+        assertThat(resumed.getContentAsString()).contains("event:connection_established");
+    }
+
+    @Test
+    void eventsStillOnTheirWayAreNotSentAgainToClientsThatReplayedThem() throws Exception {
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, itemId, "one");
+        long revision = environmentRevisionService.getRevision(projectId, environmentId);
+        MockHttpServletResponse resumed = stream(String.valueOf(revision));
+
+        // As if the relay delivered the event of the resumed revision only now, then the next one
+        ConfigUpdateSseDto update = new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_CONFIG_VERSION_UPDATED, Map.of());
+        sseService.sendUpdateToClients(projectId, environmentId, revision, List.of("banner"), update);
+        sseService.sendUpdateToClients(projectId, environmentId, revision + 1, List.of("banner"), update);
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> !events(resumed, "CONFIG_VERSION_UPDATED").isEmpty());
+        assertThat(events(resumed, "CONFIG_VERSION_UPDATED")).containsExactly(String.valueOf(revision + 1));
+    }
+
+    @Test
+    void eventsDeliveredAgainAreNotSentTwice() throws Exception {
+        MockHttpServletResponse live = stream(null);
+        long revision = Long.parseLong(connectionId(live));
+        ConfigUpdateSseDto update = new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_CONFIG_VERSION_UPDATED, Map.of());
+
+        // As if the outbox relay or the cluster bus delivered events again, one of them within a later batch
+        sseService.sendUpdateToClients(projectId, environmentId, revision + 1, List.of("banner"), update);
+        sseService.sendUpdateToClients(projectId, environmentId, revision + 1, List.of("banner"), update);
+        sseService.sendUpdateToClients(projectId, environmentId, revision + 1, revision + 3, List.of("banner"), update);
+        sseService.sendUpdateToClients(projectId, environmentId, revision + 2, List.of("banner"), update);
+        sseService.sendUpdateToClients(projectId, environmentId, revision + 4, List.of("banner"), update);
+
+        String last = String.valueOf(revision + 4);
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(live, "CONFIG_VERSION_UPDATED").contains(last));
+        assertThat(events(live, "CONFIG_VERSION_UPDATED")).containsExactly(String.valueOf(revision + 1), String.valueOf(revision + 3), last);
+    }
+
+    @Test
+    void reconnectingClientsAreAskedToResyncWhenTheirEventsAreNotBuffered() throws Exception {
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        MockHttpServletResponse live = stream(null); // Buffering starts from the revision this client connected at
+        String connectedAt = connectionId(live);
+        fixtures.publish(projectId, environmentId, itemId, "one");
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(live, "CONFIG_VERSION_UPDATED").size() == 1);
+
+        for (String lastEventId : List.of(String.valueOf(Long.parseLong(connectedAt) - 1), "not-a-revision", "999999999")) {
+            MockHttpServletResponse resumed = stream(lastEventId);
+            assertThat(events(resumed, "RESYNC")).as(lastEventId).hasSize(1);
+            assertThat(events(resumed, "CONFIG_VERSION_UPDATED")).as(lastEventId).isEmpty();
+        }
+    }
+
+    @Test
+    void filteredStreamsOnlyReceiveTheKeysTheyFollow() throws Exception {
+        Long cart = fixtures.item(projectId, "checkout.cart", ConfigDataType.STRING);
+        Long banner = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        Long theme = fixtures.item(projectId, "theme", ConfigDataType.STRING);
+        MockHttpServletResponse filtered = open(get("/api/v1/stream/projects/{projectId}/environments/{environmentId}", projectId, environmentId)
+                .param("keys", "theme")
+                .param("keyPrefixes", "checkout.")).getResponse();
+        MockHttpServletResponse unfiltered = stream(null);
+
+        for (Long itemId : List.of(cart, banner, theme)) {
+            fixtures.publish(projectId, environmentId, itemId, "on");
+        }
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(unfiltered, "CONFIG_VERSION_UPDATED").size() == 3
+                && events(filtered, "CONFIG_VERSION_UPDATED").size() == 2);
+        assertThat(filtered.getContentAsString()).contains("\"configItemKey\":\"checkout.cart\"", "\"configItemKey\":\"theme\"")
+                .doesNotContain("\"configItemKey\":\"banner\"");
+    }
+
+    @Test
+    void updatesAreFollowedByTheirTransitiveDependents() throws Exception {
+        Long parent = fixtures.item(projectId, "parent", ConfigDataType.STRING);
+        Long child = fixtures.item(projectId, "child", ConfigDataType.STRING);
+        Long grandchild = fixtures.item(projectId, "grandchild", ConfigDataType.STRING);
+        fixtures.dependency(projectId, child, parent, "on");
+        fixtures.dependency(projectId, grandchild, child, "on");
+        MockHttpServletResponse unfiltered = stream(null);
+        MockHttpServletResponse grandchildOnly = open(get("/api/v1/stream/projects/{projectId}/environments/{environmentId}", projectId, environmentId)
+                .param("keys", "grandchild")).getResponse();
+        String connectedAt = connectionId(grandchildOnly);
+
+        fixtures.publish(projectId, environmentId, parent, "on");
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(unfiltered, "DEPENDENTS_AFFECTED").size() == 1
+                && events(grandchildOnly, "DEPENDENTS_AFFECTED").size() == 1);
+        assertThat(events(unfiltered, null)).hasSize(2);
+        assertThat(unfiltered.getContentAsString().indexOf("event:DEPENDENTS_AFFECTED"))
+                .isGreaterThan(unfiltered.getContentAsString().indexOf("event:CONFIG_VERSION_UPDATED"));
+        assertThat(events(grandchildOnly, "CONFIG_VERSION_UPDATED")).isEmpty(); // Only told its prerequisites changed
+        assertThat(grandchildOnly.getContentAsString())
+                .contains("\"configKeys\":[\"parent\"]")
+                .containsPattern("\"affectedKeys\":\\[(\"child\",\"grandchild\"|\"grandchild\",\"child\")]");
+
+        // Replayed along with the update to a client that missed it
+        MockHttpServletResponse resumed = open(get("/api/v1/stream/projects/{projectId}/environments/{environmentId}", projectId, environmentId)
+                .param("keys", "grandchild")
+                .header("Last-Event-ID", connectedAt)).getResponse();
+        assertThat(events(resumed, null)).containsExactly("");
+        assertThat(resumed.getContentAsString()).contains("event:DEPENDENTS_AFFECTED");
+    }
+
+    @Test
+    void updatesWithoutDependentsAreNotFollowed() throws Exception {
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        MockHttpServletResponse live = stream(null);
+
+        fixtures.publish(projectId, environmentId, itemId, "one");
+        fixtures.publish(projectId, environmentId, itemId, "two");
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(live, "CONFIG_VERSION_UPDATED").size() == 2);
+        assertThat(events(live, "DEPENDENTS_AFFECTED")).isEmpty();
+    }
+
+    @Test
+    void deletedConfigItemsAreAnnouncedInEveryEnvironmentOfTheirProjectOnly() throws Exception {
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        Long otherEnvironmentId = fixtures.environment(projectId);
+        Long otherProjectId = fixtures.project();
+        MockHttpServletResponse live = stream(null);
+        MockHttpServletResponse otherEnvironment = open(projectId, otherEnvironmentId).getResponse();
+        MockHttpServletResponse otherProject = open(otherProjectId, fixtures.environment(otherProjectId)).getResponse();
+
+        mockMvc.perform(delete("/api/v1/projects/{projectId}/configs/{configItemId}", projectId, itemId))
+                .andExpect(status().isNoContent());
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(live, "CONFIG_ITEM_DELETED").size() == 1
+                && events(otherEnvironment, "CONFIG_ITEM_DELETED").size() == 1);
+        assertThat(events(otherProject, null)).isEmpty();
+    }
+
+    @Test
+    void deletingAnEnvironmentClosesItsStreamsOnly() throws Exception {
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        Long otherEnvironmentId = fixtures.environment(projectId);
+        MvcResult deleted = open(projectId, environmentId);
+        MvcResult kept = open(projectId, otherEnvironmentId);
+
+        mockMvc.perform(delete("/api/v1/projects/{projectId}/environments/{environmentId}", projectId, environmentId))
+                .andExpect(status().isNoContent());
+
+        deleted.getAsyncResult(10_000); // Completed
+        assertThat(events(deleted.getResponse(), null)).containsExactly("");
+        assertThat(deleted.getResponse().getContentAsString()).contains("event:ENVIRONMENT_DELETED");
+        fixtures.publish(projectId, otherEnvironmentId, itemId, "one");
+        await().atMost(Duration.ofSeconds(10)).until(() -> events(kept.getResponse(), "CONFIG_VERSION_UPDATED").size() == 1);
+        assertThat(kept.getResponse().getContentAsString()).doesNotContain("ENVIRONMENT_DELETED");
+    }
+
+    private MockHttpServletResponse stream(String lastEventId) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/v1/stream/projects/{projectId}/environments/{environmentId}", projectId, environmentId);
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return open(request).getResponse();
+    }
+
+    private MvcResult open(Long projectId, Long environmentId) throws Exception {
+        return open(get("/api/v1/stream/projects/{projectId}/environments/{environmentId}", projectId, environmentId));
+    }
+
+    private MvcResult open(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult stream = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+        streams.add(stream);
+        return stream;
+    }
+
+    // The ids of the events of the given type (any type: null) written so far, in order; "" for events without id.
+    private static List<String> events(MockHttpServletResponse response, String type) throws Exception {
+        List<String> ids = new ArrayList<>();
+        Matcher matcher = EVENT.matcher(response.getContentAsString());
+        while (matcher.find()) {
+            if (!matcher.group(2).equals("connection_established") && (type == null || matcher.group(2).equals(type))) {
+                ids.add(matcher.group(1) != null ? matcher.group(1) : "");
+            }
+        }
+        return ids;
+    }
+
+    private static String connectionId(MockHttpServletResponse response) throws Exception {
+        Matcher matcher = Pattern.compile("event:connection_established\\n(?:data:[^\\n]*\\n)*id:(\\d+)").matcher(response.getContentAsString());
+        assertThat(matcher.find()).isTrue();
+        return matcher.group(1);
+    }
+}
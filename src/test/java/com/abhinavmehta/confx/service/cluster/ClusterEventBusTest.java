@@ -0,0 +1,181 @@
+package com.abhinavmehta.confx.service.cluster;
+
+import com.abhinavmehta.confx.ConfxApplication;
+import com.abhinavmehta.confx.events.ConfigItemUpdatedEvent;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.service.snapshot.EvaluationSnapshotService;
+import com.abhinavmehta.confx.support.TestDatabase;
+import com.abhinavmehta.confx.support.TestFixtures;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Two application nodes on one database, talking through the cluster bus. Only the publishing node relays its own
+ * outbox entries here (the relays only run after a local commit), so whatever the other node sees came through
+ * {@code LISTEN/NOTIFY}.
+ */
+class ClusterEventBusTest {
+
+    private static final String CHANNEL = "confx_cluster_test_events";
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+        // The buses start listening on their own threads once the nodes are ready
+        JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+        await().atMost(Duration.ofSeconds(30)).until(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_stat_activity WHERE query = ?", Integer.class, "LISTEN " + CHANNEL) == 2);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void publishingOnOneNodeReachesTheOtherNodesCachesAndClients() throws Exception {
+        TestFixtures fixtures = nodeA.getBean(TestFixtures.class);
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        Long itemId = fixtures.item(projectId, "banner", ConfigDataType.STRING);
+        fixtures.publish(projectId, environmentId, itemId, "before");
+        EnvironmentRevisionService revisionsB = nodeB.getBean(EnvironmentRevisionService.class);
+        EvaluationSnapshotService snapshotsB = nodeB.getBean(EvaluationSnapshotService.class);
+        long revisionBefore = revisionsB.getRevision(projectId, environmentId); // Caches node B's revision (its ETag) and snapshot
+        assertThat(snapshotsB.getSnapshot(projectId, environmentId).getItem("banner").activeVersion().value()).isEqualTo("before");
+        String value = "after-" + UUID.randomUUID();
+
+        try (EventStream streamA = new EventStream(nodeA, projectId, environmentId);
+             EventStream streamB = new EventStream(nodeB, projectId, environmentId)) {
+            fixtures.publish(projectId, environmentId, itemId, value);
+
+            await().atMost(Duration.ofSeconds(10)).until(() -> streamB.count(value) == 1);
+            long revisionA = nodeA.getBean(EnvironmentRevisionService.class).getRevision(projectId, environmentId);
+            assertThat(revisionA).isGreaterThan(revisionBefore);
+            assertThat(revisionsB.getRevision(projectId, environmentId)).isEqualTo(revisionA);
+            assertThat(snapshotsB.getSnapshot(projectId, environmentId).getItem("banner").activeVersion().value()).isEqualTo(value);
+
+            // Node A heard its own notification too, by now, and must not have handled it again
+            Thread.sleep(1_000);
+            assertThat(streamA.count(value)).isEqualTo(1);
+            assertThat(streamB.count(value)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void messagesPackedUpToThePayloadLimitArriveIntact() throws Exception {
+        Long projectId = nodeA.getBean(TestFixtures.class).project();
+        List<String> sentKeys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            sentKeys.add("clé-" + i + "-" + "é".repeat(100 + i)); // Two bytes per character, so bytes and characters differ
+        }
+        List<String> receivedKeys = new CopyOnWriteArrayList<>();
+        nodeB.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+            if (event instanceof ConfigItemUpdatedEvent updated && updated.getProjectId().equals(projectId)) {
+                receivedKeys.add(updated.getConfigKey());
+            }
+        });
+
+        try (Connection listener = DriverManager.getConnection(TestDatabase.jdbcUrl(), TestDatabase.username(), TestDatabase.password())) {
+            try (Statement statement = listener.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+            }
+            ClusterEventBus busA = nodeA.getBean(ClusterEventBus.class);
+            for (int i = 0; i < sentKeys.size(); i++) {
+                nodeA.publishEvent(new ConfigItemUpdatedEvent(this, projectId, (long) i, sentKeys.get(i)));
+            }
+            busA.flush(); // All queued, so packed together, unless the scheduled flush took some already
+
+            await().atMost(Duration.ofSeconds(10)).until(() -> receivedKeys.size() >= sentKeys.size());
+            assertThat(receivedKeys).containsExactlyElementsOf(sentKeys);
+
+            List<Integer> payloadBytes = new ArrayList<>();
+            PGNotification[] notifications;
+            while ((notifications = listener.unwrap(PGConnection.class).getNotifications(500)) != null && notifications.length > 0) {
+                for (PGNotification notification : notifications) {
+                    payloadBytes.add(notification.getParameter().getBytes(StandardCharsets.UTF_8).length);
+                }
+            }
+            assertThat(payloadBytes).hasSizeGreaterThan(1).allSatisfy(bytes -> assertThat(bytes).isLessThanOrEqualTo(7900));
+            assertThat(payloadBytes.stream().mapToInt(Integer::intValue).max().orElse(0)).isGreaterThan(7000);
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        // As arguments, which take precedence over application.properties
+        return new SpringApplicationBuilder(ConfxApplication.class, TestFixtures.class)
+                .run("--spring.datasource.url=" + TestDatabase.jdbcUrl(),
+                        "--spring.datasource.username=" + TestDatabase.username(),
+                        "--spring.datasource.password=" + TestDatabase.password(),
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--server.port=0",
+                        "--confx.outbox.poll-interval-ms=3600000",
+                        "--confx.cluster.enabled=true",
+                        "--confx.cluster.channel=" + CHANNEL);
+    }
+
+    /**
+     * A node's SSE stream for one environment, its lines collected as they arrive.
+     */
+    private static final class EventStream implements AutoCloseable {
+
+        private final HttpClient client = HttpClient.newHttpClient();
+        private final List<String> lines = new CopyOnWriteArrayList<>();
+
+        EventStream(ConfigurableApplicationContext node, Long projectId, Long environmentId) {
+            String port = node.getEnvironment().getProperty("local.server.port");
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/stream/projects/"
+                    + projectId + "/environments/" + environmentId)).header("Accept", "text/event-stream").build();
+            Thread.ofVirtual().name("sse-test-client").start(() -> {
+                try (Stream<String> body = client.send(request, HttpResponse.BodyHandlers.ofLines()).body()) {
+                    body.forEach(lines::add);
+                } catch (Exception ignored) {
+                    // Closed by the test
+                }
+            });
+            await().atMost(Duration.ofSeconds(10)).until(() -> count("connection_established") > 0);
+        }
+
+        long count(String text) {
+            return lines.stream().filter(line -> line.contains(text)).count();
+        }
+
+        @Override
+        public void close() {
+            client.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.abhinavmehta.confx.service.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightCacheTest {
+
+    private final SingleFlightCache<String, Integer> cache = new SingleFlightCache<>();
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> cache.get("env", key -> {
+                    loads.incrementAndGet();
+                    loadStarted.countDown();
+                    await(releaseLoad);
+                    return 42;
+                })));
+            }
+            assertThat(loadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(100); // Let the other callers reach the cache while the load is blocked
+            releaseLoad.countDown();
+            for (Future<Integer> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void loadRacingWithEvictionIsNotKept() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> staleLoad = executor.submit(() -> cache.get("env", key -> {
+                loadStarted.countDown();
+                await(releaseLoad);
+                return 1;
+            }));
+            assertThat(loadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            cache.evict("env");
+            releaseLoad.countDown();
+            assertThat(staleLoad.get(5, TimeUnit.SECONDS)).isEqualTo(1); // Its own caller still gets an answer
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.get("env", key -> 2)).isEqualTo(2);
+    }
+
+    @Test
+    void evictionOnlyAffectsItsKey() {
+        cache.get("a", key -> 1);
+        cache.get("b", key -> 1);
+
+        cache.evict("a");
+
+        assertThat(cache.get("a", key -> 2)).isEqualTo(2);
+        assertThat(cache.get("b", key -> 2)).isEqualTo(1);
+    }
+
+    @Test
+    void failedLoadIsThrownAndNotCached() {
+        assertThatThrownBy(() -> cache.get("env", key -> {
+            throw new IllegalStateException("down");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("down");
+
+        assertThat(cache.get("env", key -> 3)).isEqualTo(3);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
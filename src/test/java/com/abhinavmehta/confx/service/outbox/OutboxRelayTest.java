@@ -0,0 +1,139 @@
+package com.abhinavmehta.confx.service.outbox;
+
+import com.abhinavmehta.confx.events.ConfigDependenciesChangedEvent;
+import com.abhinavmehta.confx.events.ConfigItemUpdatedEvent;
+import com.abhinavmehta.confx.events.EnvironmentUpdatedEvent;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class OutboxRelayTest extends IntegrationTest {
+
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
+    @Autowired
+    private ApplicationEventMulticaster eventMulticaster;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Queue<ApplicationEvent> received = new ConcurrentLinkedQueue<>();
+    private Long projectId;
+
+    // Runs first and fails on the first event of the batch
+    private final OrderedListener failing = new OrderedListener(Ordered.HIGHEST_PRECEDENCE) {
+        @Override
+        public void onApplicationEvent(ApplicationEvent event) {
+            if (event instanceof ConfigItemUpdatedEvent e && e.getProjectId().equals(projectId)) {
+                throw new IllegalStateException("Listener failure for the test");
+            }
+        }
+    };
+
+    // Runs last and records what it gets
+    private final OrderedListener recording = new OrderedListener(Ordered.LOWEST_PRECEDENCE) {
+        @Override
+        public void onApplicationEvent(ApplicationEvent event) {
+            if (event instanceof ConfigItemUpdatedEvent e && e.getProjectId().equals(projectId)
+                    || event instanceof ConfigDependenciesChangedEvent d && d.getProjectId().equals(projectId)
+                    || event instanceof EnvironmentUpdatedEvent u && u.getProjectId().equals(projectId)) {
+                received.add(event);
+            }
+        }
+    };
+
+    @AfterEach
+    void removeListeners() {
+        eventMulticaster.removeApplicationListener(failing);
+        eventMulticaster.removeApplicationListener(recording);
+    }
+
+    @Test
+    void failingListenerDoesNotHoldUpTheBatch() {
+        projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        double failuresBefore = dispatchFailures();
+        eventMulticaster.addApplicationListener(failing);
+        eventMulticaster.addApplicationListener(recording);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            changeOutbox.append(new ConfigItemUpdatedEvent(this, projectId, 1L, "failing"));
+            changeOutbox.append(new ConfigDependenciesChangedEvent(this, projectId));
+            changeOutbox.append(new EnvironmentUpdatedEvent(this, projectId, environmentId));
+        });
+
+        // The listeners after the failing one miss its event; the entries behind it are relayed
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertThat(received).hasSize(2));
+        assertThat(received).map(event -> event.getClass().getSimpleName())
+                .containsExactly("ConfigDependenciesChangedEvent", "EnvironmentUpdatedEvent");
+        assertThat(dispatchFailures()).isEqualTo(failuresBefore + 1);
+        await().atMost(Duration.ofSeconds(10)).until(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM confx_schema.config_event_outbox WHERE project_id = ?", Long.class, projectId) == 0);
+    }
+
+    @Test
+    void entriesAreKeptUntilTheirEventsAreDispatched() {
+        projectId = fixtures.project();
+        Queue<Long> outboxSizes = new ConcurrentLinkedQueue<>();
+        OrderedListener checking = new OrderedListener(Ordered.LOWEST_PRECEDENCE) {
+            @Override
+            public void onApplicationEvent(ApplicationEvent event) {
+                if (event instanceof ConfigDependenciesChangedEvent d && d.getProjectId().equals(projectId)) {
+                    // Read on another connection: the relay's transaction has not deleted the entry yet
+                    outboxSizes.add(jdbcTemplate.queryForObject(
+                            "SELECT count(*) FROM confx_schema.config_event_outbox WHERE project_id = ?", Long.class, projectId));
+                    received.add(event);
+                }
+            }
+        };
+        eventMulticaster.addApplicationListener(checking);
+        try {
+            transactionTemplate.executeWithoutResult(status -> changeOutbox.append(new ConfigDependenciesChangedEvent(this, projectId)));
+            await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertThat(received).hasSize(1));
+        } finally {
+            eventMulticaster.removeApplicationListener(checking);
+        }
+        assertThat(outboxSizes).containsExactly(1L);
+    }
+
+    private double dispatchFailures() {
+        Counter failures = meterRegistry.find("confx.outbox.dispatch.failures").tag("event", "ConfigItemUpdatedEvent").counter();
+        return failures != null ? failures.count() : 0;
+    }
+
+    private abstract static class OrderedListener implements ApplicationListener<ApplicationEvent>, Ordered {
+        private final int order;
+
+        OrderedListener(int order) {
+            this.order = order;
+        }
+
+        @Override
+        public int getOrder() {
+            return order;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.abhinavmehta.confx.service.sse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ticks are driven with made-up times, relative to when the subscribers were created (their last write). Queued
+ * heartbeats are never written, so those stay their last write.
+ */
+class HeartbeatWheelTest {
+
+    private static final int SLOTS = 10;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HeartbeatWheel wheel = new HeartbeatWheel(SLOTS, 1_000, ":ping\n\n".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void newSubscribersGetAHeartbeatOneIntervalAfterConnecting() {
+        SseSubscriber subscriber = subscriber();
+        long connectedAt = subscriber.getLastWriteNanos();
+        wheel.add(subscriber);
+
+        // Ticks half a tick apart from the connection, as a fixed-rate scheduler would run them
+        assertThat(ticksWithHeartbeats(30, connectedAt + TICK_NANOS / 2)).containsExactly(9, 19, 29);
+    }
+
+    @Test
+    void subscribersWrittenToAfterTheirSlotPassedAreMovedToWhenTheyAreDue() {
+        SseSubscriber subscriber = subscriber();
+        long lastWrite = subscriber.getLastWriteNanos();
+        wheel.add(subscriber);
+
+        // As if the subscriber had connected 1.5 ticks before its last write: when its slot is visited (tick 9),
+        // it is not due for another 2.5 ticks, and is visited again then instead of a whole rotation later
+        assertThat(ticksWithHeartbeats(30, lastWrite - 3 * TICK_NANOS / 2)).containsExactly(12, 22);
+    }
+
+    @Test
+    void subscribersConnectingAtDifferentTicksAreVisitedAtDifferentTicks() {
+        SseSubscriber first = subscriber();
+        long connectedAt = first.getLastWriteNanos();
+        wheel.add(first);
+        for (int tick = 0; tick < 3; tick++) {
+            wheel.tick(connectedAt + tick * TICK_NANOS);
+        }
+        wheel.add(subscriber()); // Connected at tick 3, as far as the wheel knows
+
+        assertThat(ticksWithHeartbeats(3, 30, connectedAt + TICK_NANOS / 2)).containsExactly(9, 12, 19, 22, 29);
+        assertThat(wheel.size()).isEqualTo(2);
+    }
+
+    @Test
+    void closedSubscribersAreDroppedWhenTheirSlotIsVisited() {
+        SseSubscriber closed = subscriber();
+        wheel.add(closed);
+        wheel.add(subscriber());
+        closed.close();
+        long now = System.nanoTime();
+
+        for (int tick = 0; tick < SLOTS - 1; tick++) {
+            wheel.tick(now);
+        }
+        assertThat(wheel.size()).isEqualTo(2);
+
+        wheel.tick(now); // Both are in the slot of tick 9
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    private List<Integer> ticksWithHeartbeats(int ticks, long firstTickAt) {
+        return ticksWithHeartbeats(0, ticks, firstTickAt);
+    }
+
+    // Runs ticks from..to-1, tick n at firstTickAt + n ticks
+    private List<Integer> ticksWithHeartbeats(int from, int to, long firstTickAt) {
+        List<Integer> ticksWithHeartbeats = new ArrayList<>();
+        for (int tick = from; tick < to; tick++) {
+            if (wheel.tick(firstTickAt + tick * TICK_NANOS) > 0) {
+                ticksWithHeartbeats.add(tick);
+            }
+        }
+        return ticksWithHeartbeats;
+    }
+
+    private SseSubscriber subscriber() {
+        return new SseSubscriber(new SseEmitter(), "1/1", Set.of(), Set.of(), 4, 1_000, task -> { },
+                meterRegistry.counter("dropped"), meterRegistry.timer("latency"), s -> { }, s -> { });
+    }
+}
@@ -0,0 +1,86 @@
+package com.abhinavmehta.confx.service.sse;
+
+import com.abhinavmehta.confx.dto.sse.ConfigUpdateSseDto;
+import com.abhinavmehta.confx.service.SseService;
+import com.abhinavmehta.confx.service.revision.EnvironmentRevisionService;
+import com.abhinavmehta.confx.support.IntegrationTest;
+import com.abhinavmehta.confx.support.SseConnections;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * A client that stops reading, next to one that keeps up. With a single fan-out thread, a write blocked on the
+ * stalled client holds up every other client until it is evicted; its connection closes once that write times out.
+ */
+@TestPropertySource(properties = {
+        "confx.sse.fanout-threads=1",
+        "confx.sse.slow-subscriber-timeout-ms=1000",
+        "server.tomcat.connection-timeout=2s"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS) // Its own relay must not outlive it
+class SlowSubscriberTest extends IntegrationTest {
+
+    private static final ConfigUpdateSseDto LARGE_EVENT = new ConfigUpdateSseDto(ConfigUpdateSseDto.TYPE_RESYNC,
+            Map.of("filler", "x".repeat(256 * 1024)));
+
+    @Autowired
+    private SseService sseService;
+
+    @Autowired
+    private EnvironmentRevisionService environmentRevisionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void clientThatStopsReadingIsDisconnectedAndTheOthersKeepReceiving() throws Exception {
+        Long projectId = fixtures.project();
+        Long environmentId = fixtures.environment(projectId);
+        AtomicLong revision = new AtomicLong(environmentRevisionService.getRevision(projectId, environmentId));
+
+        try (SseConnections stalled = new SseConnections(port, projectId, environmentId, false);
+             SseConnections healthy = new SseConnections(port, projectId, environmentId, true)) {
+            stalled.openUpTo(1);
+            healthy.openUpTo(1);
+
+            // Fills the stalled client's socket buffers until a write to it blocks; publishing stops at the eviction,
+            // slowly enough that the healthy client's queue does not overflow before
+            await().atMost(Duration.ofSeconds(60)).pollInterval(Duration.ofMillis(100)).until(() -> {
+                if (meterValue(projectId, environmentId, "confx.sse.subscribers.evicted") > 0) {
+                    return true;
+                }
+                sseService.sendUpdateToClients(projectId, environmentId, revision.incrementAndGet(), null, LARGE_EVENT);
+                return false;
+            });
+            long evictedAt = System.nanoTime();
+
+            long written = meterValue(projectId, environmentId, "confx.sse.fanout.latency");
+            for (int i = 0; i < 3; i++) {
+                sseService.sendUpdateToClients(projectId, environmentId, revision.incrementAndGet(), null, LARGE_EVENT);
+            }
+            await().atMost(Duration.ofSeconds(10))
+                    .until(() -> meterValue(projectId, environmentId, "confx.sse.fanout.latency") >= written + 3);
+            assertThat(Duration.ofNanos(System.nanoTime() - evictedAt)).isLessThan(Duration.ofSeconds(2)); // Before the write times out
+            assertThat(stalled.awaitClosedByServer(Duration.ofSeconds(10))).isTrue();
+            assertThat(meterValue(projectId, environmentId, "confx.sse.subscribers.evicted")).isEqualTo(1);
+        }
+    }
+
+    private long meterValue(Long projectId, Long environmentId, String name) {
+        var meter = meterRegistry.find(name).tags("project", String.valueOf(projectId), "environment", String.valueOf(environmentId));
+        if (meter.timer() != null) {
+            return meter.timer().count();
+        }
+        return meter.counter() != null ? (long) meter.counter().count() : 0; // Removed with the environment's last client
+    }
+}
@@ -0,0 +1,181 @@
+package com.abhinavmehta.confx.service.sse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * A subscriber's queue on its own: frames are written by whatever executor it is given, here one whose tasks only
+ * run when the test says so, and the emitter records what would have been sent.
+ */
+class SseSubscriberTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Counter droppedEvents = meterRegistry.counter("dropped");
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final List<SseSubscriber> closed = new CopyOnWriteArrayList<>();
+    private final RecordingEmitter emitter = new RecordingEmitter();
+
+    @Test
+    void framesAreWrittenInOrderByTheExecutor() {
+        SseSubscriber subscriber = subscriber(4, 60_000, tasks::add);
+
+        assertThat(subscriber.offer(frame("a"), frame("resync"))).isEqualTo(SseSubscriber.OfferResult.QUEUED);
+        assertThat(subscriber.offer(frame("b"), frame("resync"))).isEqualTo(SseSubscriber.OfferResult.QUEUED);
+        assertThat(emitter.sent).isEmpty();
+        assertThat(tasks).hasSize(1); // One drain for both
+
+        runTasks();
+
+        assertThat(emitter.sent).containsExactly("a", "b");
+        assertThat(subscriber.isDraining()).isFalse();
+    }
+
+    @Test
+    void overflowCoalescesEverythingPendingIntoOneResync() {
+        SseSubscriber subscriber = subscriber(2, 60_000, tasks::add);
+        subscriber.offer(frame("a"), frame("resync"));
+        subscriber.offer(frame("b"), frame("resync"));
+
+        assertThat(subscriber.offer(frame("c"), frame("resync"))).isEqualTo(SseSubscriber.OfferResult.COALESCED);
+        assertThat(subscriber.offer(frame("d"), frame("resync"))).isEqualTo(SseSubscriber.OfferResult.QUEUED);
+        runTasks();
+
+        assertThat(emitter.sent).containsExactly("resync", "d");
+        assertThat(droppedEvents.count()).isEqualTo(3); // a, b and c
+        assertThat(closed).isEmpty();
+    }
+
+    @Test
+    void overflowingForTooLongStallsUntilTheQueueDrains() {
+        SseSubscriber subscriber = subscriber(1, 1_000, tasks::add);
+        subscriber.offer(frame("a"), frame("resync"));
+        subscriber.offer(frame("b"), frame("resync"));
+        long later = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+
+        assertThat(subscriber.isStalled(System.nanoTime())).isFalse();
+        assertThat(subscriber.isStalled(later)).isTrue();
+
+        runTasks();
+        assertThat(subscriber.isStalled(later)).isFalse();
+    }
+
+    @Test
+    void evictingAnIdleSubscriberCompletesItsEmitterRightAway() {
+        SseSubscriber subscriber = subscriber(1, 1_000, tasks::add);
+        subscriber.offer(frame("a"), frame("resync"));
+        subscriber.offer(frame("b"), frame("resync"));
+        AtomicInteger borrowed = new AtomicInteger();
+
+        subscriber.evict(() -> {
+            borrowed.incrementAndGet();
+            return () -> { };
+        });
+        runTasks();
+
+        assertThat(emitter.completed).isTrue();
+        assertThat(emitter.sent).isEmpty(); // The pending resync is dropped
+        assertThat(borrowed).hasValue(0);
+        assertThat(closed).containsExactly(subscriber);
+        assertThat(subscriber.offer(frame("c"), frame("resync"))).isEqualTo(SseSubscriber.OfferResult.CLOSED);
+    }
+
+    @Test
+    void evictingDuringABlockedWriteLeavesTheEmitterToTheDrain() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SseSubscriber subscriber = subscriber(4, 100, executor);
+            emitter.blockFirstSend = true;
+            subscriber.offer(frame("a"), frame("resync"));
+            subscriber.offer(frame("b"), frame("resync"));
+            assertThat(emitter.writing.await(10, TimeUnit.SECONDS)).isTrue();
+            await().atMost(Duration.ofSeconds(10)).until(() -> subscriber.isStalled(System.nanoTime()));
+            AtomicInteger borrowed = new AtomicInteger();
+
+            // Returns while the write is still blocked, though the emitter is held by it
+            subscriber.evict(() -> {
+                borrowed.incrementAndGet();
+                return borrowed::decrementAndGet;
+            });
+
+            assertThat(borrowed).hasValue(1);
+            assertThat(emitter.completed).isFalse();
+            assertThat(closed).containsExactly(subscriber);
+
+            emitter.release.countDown(); // The client takes the write after all
+            await().atMost(Duration.ofSeconds(10)).until(() -> emitter.completed);
+            assertThat(borrowed).hasValue(0);
+            assertThat(emitter.sent).containsExactly("a");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SseSubscriber subscriber(int capacity, long maxOverflowMs, Executor executor) {
+        return new SseSubscriber(emitter, "1/1", Set.of(), Set.of(), capacity, maxOverflowMs, executor,
+                droppedEvents, meterRegistry.timer("latency"), closed::add, s -> { });
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static byte[] frame(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records the frames sent. The first send can be made to block until released, like a write to a client that
+     * stopped reading; it holds the emitter's monitor meanwhile, as a real send does.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean blockFirstSend;
+        volatile boolean completed;
+
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) {
+            if (blockFirstSend && writing.getCount() > 0) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (DataWithMediaType item : items) {
+                sent.add(new String((byte[]) item.getData(), StandardCharsets.UTF_8));
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.abhinavmehta.confx.service.sse;
+
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.dto.sse.ConfigUpdateSseDto;
+import com.abhinavmehta.confx.service.SseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class SseUpdateCoalescerTest {
+
+    private static final long PROJECT_ID = 1L;
+    private static final long ENVIRONMENT_ID = 2L;
+
+    private final SseService sseService = mock(SseService.class);
+    private SseUpdateCoalescer coalescer;
+
+    @AfterEach
+    void shutdown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void updatesWithinTheWindowAreSentAsOneBatchOfTheLatestVersionPerKey() {
+        coalescer = new SseUpdateCoalescer(sseService, true, 200, 10_000);
+
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 1, version("a", 1), List.of());
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 2, version("b", 1), List.of());
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 3, version("a", 2), List.of());
+
+        ArgumentCaptor<ConfigUpdateSseDto> update = ArgumentCaptor.forClass(ConfigUpdateSseDto.class);
+        verify(sseService, timeout(5_000)).sendUpdateToClients(eq(PROJECT_ID), eq(ENVIRONMENT_ID), eq(0L), eq(3L),
+                eq(List.of("b", "a")), update.capture(), eq(List.of()), isNull());
+        assertThat(update.getValue().getType()).isEqualTo(ConfigUpdateSseDto.TYPE_CONFIG_BATCH_UPDATED);
+        assertThat(update.getValue().getPayload()).isEqualTo(List.of(version("b", 1), version("a", 2)));
+    }
+
+    @Test
+    void batchesOfASingleKeyAreSentAsAPlainUpdate() {
+        coalescer = new SseUpdateCoalescer(sseService, true, 200, 10_000);
+
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 1, version("a", 1), List.of());
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 2, version("a", 2), List.of());
+
+        ArgumentCaptor<ConfigUpdateSseDto> update = ArgumentCaptor.forClass(ConfigUpdateSseDto.class);
+        verify(sseService, timeout(5_000)).sendUpdateToClients(eq(PROJECT_ID), eq(ENVIRONMENT_ID), eq(0L), eq(2L),
+                eq(List.of("a")), update.capture(), eq(List.of()), isNull());
+        assertThat(update.getValue().getType()).isEqualTo(ConfigUpdateSseDto.TYPE_CONFIG_VERSION_UPDATED);
+        assertThat(update.getValue().getPayload()).isEqualTo(version("a", 2));
+    }
+
+    @Test
+    void olderVersionsArrivingLateDoNotReplaceNewerOnes() {
+        coalescer = new SseUpdateCoalescer(sseService, true, 200, 10_000);
+
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 2, version("a", 2), List.of());
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 1, version("a", 1), List.of());
+
+        ArgumentCaptor<ConfigUpdateSseDto> update = ArgumentCaptor.forClass(ConfigUpdateSseDto.class);
+        verify(sseService, timeout(5_000)).sendUpdateToClients(eq(PROJECT_ID), eq(ENVIRONMENT_ID), eq(0L), eq(2L),
+                eq(List.of("a")), update.capture(), eq(List.of()), isNull());
+        assertThat(update.getValue().getPayload()).isEqualTo(version("a", 2));
+    }
+
+    @Test
+    void batchesMissingRevisionsOnlyAccountForTheirLastOne() {
+        coalescer = new SseUpdateCoalescer(sseService, true, 200, 10_000);
+
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 1, version("a", 1), List.of());
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 3, version("b", 1), List.of()); // Revision 2 was another change
+
+        verify(sseService, timeout(5_000)).sendUpdateToClients(eq(PROJECT_ID), eq(ENVIRONMENT_ID), eq(2L), eq(3L),
+                eq(List.of("a", "b")), any(), eq(List.of()), isNull());
+    }
+
+    @Test
+    void dependentsOfTheWholeBatchFollowItInOneEvent() {
+        coalescer = new SseUpdateCoalescer(sseService, true, 200, 10_000);
+
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 1, version("a", 1), List.of("child"));
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 2, version("b", 1), List.of("child", "grandchild"));
+
+        ArgumentCaptor<ConfigUpdateSseDto> followUp = ArgumentCaptor.forClass(ConfigUpdateSseDto.class);
+        verify(sseService, timeout(5_000)).sendUpdateToClients(eq(PROJECT_ID), eq(ENVIRONMENT_ID), eq(0L), eq(2L),
+                eq(List.of("a", "b")), any(), eq(List.of("child", "grandchild")), followUp.capture());
+        assertThat(followUp.getValue().getType()).isEqualTo(ConfigUpdateSseDto.TYPE_DEPENDENTS_AFFECTED);
+        assertThat(followUp.getValue().getPayload())
+                .isEqualTo(Map.of("configKeys", List.of("a", "b"), "affectedKeys", List.of("child", "grandchild")));
+    }
+
+    @Test
+    void updatesThatKeepComingAreSentAfterTheMaximumDelay() throws Exception {
+        coalescer = new SseUpdateCoalescer(sseService, true, 200, 500);
+
+        // Each update comes within the window of the previous one, for longer than the maximum delay
+        for (int revision = 1; revision <= 20; revision++) {
+            coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, revision, version("a", revision), List.of());
+            Thread.sleep(50);
+        }
+
+        verify(sseService, atLeastOnce()).sendUpdateToClients(eq(PROJECT_ID), eq(ENVIRONMENT_ID), eq(0L), anyLong(),
+                eq(List.of("a")), any(), eq(List.of()), isNull());
+    }
+
+    @Test
+    void discardedEnvironmentsSendNothing() {
+        coalescer = new SseUpdateCoalescer(sseService, true, 100, 10_000);
+
+        coalescer.publish(PROJECT_ID, ENVIRONMENT_ID, 1, version("a", 1), List.of());
+        coalescer.discardEnvironment(PROJECT_ID, ENVIRONMENT_ID);
+
+        verify(sseService, after(500).never()).sendUpdateToClients(anyLong(), anyLong(), anyLong(), anyLong(), any(), any(), any(), any());
+    }
+
+    @Test
+    void withoutCoalescingUpdatesAreSentRightAway() {
+        coalescer = new SseUpdateCoalescer(sseService, false, 200, 10_000);
+
+        coalescer.publishAll(PROJECT_ID, ENVIRONMENT_ID, 4, List.of(version("a", 1), version("b", 1)), List.of());
+
+        verify(sseService).sendUpdateToClients(eq(PROJECT_ID), eq(ENVIRONMENT_ID), eq(4L), eq(6L),
+                eq(List.of("a", "b")), any(), eq(List.of()), isNull());
+    }
+
+    private static ConfigVersionResponseDto version(String key, int versionNumber) {
+        return ConfigVersionResponseDto.builder()
+                .configItemKey(key)
+                .environmentId(ENVIRONMENT_ID)
+                .value(key + versionNumber)
+                .versionNumber(versionNumber)
+                .build();
+    }
+}
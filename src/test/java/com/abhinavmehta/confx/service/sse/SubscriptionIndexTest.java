@@ -0,0 +1,117 @@
+package com.abhinavmehta.confx.service.sse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriptionIndexTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SubscriptionIndex index = new SubscriptionIndex();
+
+    @Test
+    void unfilteredSubscribersReceiveEveryEvent() {
+        SseSubscriber first = subscriber(Set.of(), Set.of());
+        SseSubscriber second = subscriber(Set.of(), Set.of());
+        index.add(first);
+        index.add(second);
+
+        assertThat(index.route(List.of("banner"))).containsExactlyInAnyOrder(first, second);
+        assertThat(index.route(List.of())).containsExactlyInAnyOrder(first, second);
+    }
+
+    @Test
+    void removedSubscribersReceiveNothingMore() {
+        SseSubscriber unfiltered = subscriber(Set.of(), Set.of());
+        SseSubscriber byKey = subscriber(Set.of("banner"), Set.of());
+        SseSubscriber byPrefix = subscriber(Set.of(), Set.of("ban"));
+        index.add(unfiltered);
+        index.add(byKey);
+        index.add(byPrefix);
+
+        index.remove(byKey);
+        index.remove(byPrefix);
+        assertThat(index.route(List.of("banner"))).containsExactly(unfiltered);
+
+        index.remove(unfiltered);
+        assertThat(index.route(List.of("banner"))).isEmpty();
+    }
+
+    @Test
+    void removingOneSubscriberKeepsTheOthersOnTheSameKeys() {
+        SseSubscriber first = subscriber(Set.of("banner"), Set.of("ban"));
+        SseSubscriber second = subscriber(Set.of("banner"), Set.of("ban"));
+        index.add(first);
+        index.add(second);
+
+        index.remove(first);
+
+        assertThat(index.route(List.of("banner"))).containsExactly(second);
+        assertThat(index.route(List.of("band"))).containsExactly(second);
+    }
+
+    @Test
+    void subscribersMatchingAnEventSeveralWaysReceiveItOnce() {
+        SseSubscriber subscriber = subscriber(Set.of("banner", "theme"), Set.of("b", "ban"));
+        index.add(subscriber);
+
+        assertThat(index.route(List.of("banner", "theme"))).containsExactly(subscriber);
+    }
+
+    @Test
+    void subscribersByKeyOnlyReceiveEventsAboutTheirKeys() {
+        SseSubscriber subscriber = subscriber(Set.of("banner", "theme"), Set.of());
+        index.add(subscriber);
+
+        assertThat(index.route(List.of("theme"))).containsExactly(subscriber);
+        assertThat(index.route(List.of("checkout", "banner"))).containsExactly(subscriber);
+        assertThat(index.route(List.of("bannerColor"))).isEmpty();
+        assertThat(index.route(List.of("checkout"))).isEmpty();
+    }
+
+    @Test
+    void subscribersByPrefixReceiveEventsAboutKeysStartingWithIt() {
+        SseSubscriber checkout = subscriber(Set.of(), Set.of("checkout."));
+        SseSubscriber checkoutPayment = subscriber(Set.of(), Set.of("checkout.payment."));
+        index.add(checkout);
+        index.add(checkoutPayment);
+
+        assertThat(index.route(List.of("checkout.payment.provider"))).containsExactlyInAnyOrder(checkout, checkoutPayment);
+        assertThat(index.route(List.of("checkout.cart"))).containsExactly(checkout);
+        assertThat(index.route(List.of("checkout."))).containsExactly(checkout); // A prefix matches the key itself
+        assertThat(index.route(List.of("checkout"))).isEmpty();
+        assertThat(index.route(List.of("search.checkout.cart"))).isEmpty();
+    }
+
+    @Test
+    void theEmptyPrefixMatchesEveryKey() {
+        SseSubscriber subscriber = subscriber(Set.of(), Set.of(""));
+        index.add(subscriber);
+
+        assertThat(index.route(List.of("banner"))).containsExactly(subscriber);
+        assertThat(index.route(List.of(""))).containsExactly(subscriber);
+    }
+
+    @Test
+    void unfilteredAndFilteredSubscribersAreRoutedTogether() {
+        SseSubscriber unfiltered = subscriber(Set.of(), Set.of());
+        SseSubscriber byKey = subscriber(Set.of("banner"), Set.of());
+        SseSubscriber byPrefix = subscriber(Set.of(), Set.of("check"));
+        index.add(unfiltered);
+        index.add(byKey);
+        index.add(byPrefix);
+
+        assertThat(index.route(List.of("banner", "checkout"))).containsExactlyInAnyOrder(unfiltered, byKey, byPrefix);
+        assertThat(index.route(List.of("theme"))).containsExactly(unfiltered);
+    }
+
+    private SseSubscriber subscriber(Set<String> configKeys, Set<String> configKeyPrefixes) {
+        return new SseSubscriber(new SseEmitter(), "1/1", configKeys, configKeyPrefixes, 4, 1_000, Runnable::run,
+                meterRegistry.counter("dropped"), meterRegistry.timer("latency"), s -> { }, s -> { });
+    }
+}
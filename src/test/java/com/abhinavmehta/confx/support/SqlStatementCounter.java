@@ -0,0 +1,47 @@
+package com.abhinavmehta.confx.support;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the calling thread, so background work (the outbox relay,
+ * listeners) does not blur the count. A JDBC batch counts once, however many rows it carries. Statements run
+ * outside of Hibernate (JdbcTemplate) are not counted.
+ */
+@TestComponent
+public class SqlStatementCounter implements HibernatePropertiesCustomizer, StatementInspector {
+
+    private final ThreadLocal<long[]> counts = new ThreadLocal<>();
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        long[] count = counts.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    /**
+     * @return The number of statements the action prepared.
+     */
+    public long count(Runnable action) {
+        long[] count = new long[1];
+        counts.set(count);
+        try {
+            action.run();
+        } finally {
+            counts.remove();
+        }
+        return count[0];
+    }
+}
@@ -0,0 +1,117 @@
+package com.abhinavmehta.confx.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many SSE connections to one environment's update stream, as plain sockets so each costs the test next to nothing.
+ * A connection counts once the server has sent its {@code connection_established} event. Clients that are sent events
+ * must read them, or their socket buffers fill up and the server's writes stall: with {@code drain}, each connection
+ * is read (and discarded) by a virtual thread.
+ */
+public final class SseConnections implements AutoCloseable {
+
+    private static final byte[] ESTABLISHED = "connection_established".getBytes(StandardCharsets.US_ASCII);
+
+    private final int port;
+    private final String request;
+    private final boolean drain;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    public SseConnections(int port, Long projectId, Long environmentId, boolean drain) {
+        this.port = port;
+        this.request = "GET /api/v1/stream/projects/" + projectId + "/environments/" + environmentId + " HTTP/1.1\r\n"
+                + "Host: localhost:" + port + "\r\n"
+                + "Accept: text/event-stream\r\n\r\n";
+        this.drain = drain;
+    }
+
+    /**
+     * Opens connections, one at a time, until {@code count} are established.
+     */
+    public void openUpTo(int count) throws IOException {
+        while (sockets.size() < count) {
+            Socket socket = new Socket("localhost", port);
+            sockets.add(socket);
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            awaitEstablished(socket.getInputStream());
+            if (drain) {
+                Thread.ofVirtual().name("sse-test-client").start(() -> discard(socket));
+            }
+        }
+    }
+
+    public int size() {
+        return sockets.size();
+    }
+
+    /**
+     * Reads (and discards) every connection until the server closes it.
+     * @return Whether the server closed them all within the timeout.
+     */
+    public boolean awaitClosedByServer(Duration timeout) throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        byte[] buffer = new byte[8192];
+        for (Socket socket : sockets) {
+            InputStream in = socket.getInputStream();
+            while (true) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return false;
+                }
+                socket.setSoTimeout((int) remainingMs);
+                try {
+                    if (in.read(buffer) < 0) {
+                        break;
+                    }
+                } catch (SocketTimeoutException e) {
+                    return false;
+                } catch (SocketException e) {
+                    break; // Reset by the server
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        sockets.clear();
+    }
+
+    private static void awaitEstablished(InputStream in) throws IOException {
+        int matched = 0;
+        for (int b; (b = in.read()) >= 0; ) {
+            matched = b == ESTABLISHED[matched] ? matched + 1 : (b == ESTABLISHED[0] ? 1 : 0);
+            if (matched == ESTABLISHED.length) {
+                return;
+            }
+        }
+        throw new IOException("Stream closed before the connection was established");
+    }
+
+    private static void discard(Socket socket) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = socket.getInputStream()) {
+            while (in.read(buffer) >= 0) {
+                // Only read so the server's writes never stall
+            }
+        } catch (IOException ignored) {
+            // Closed by the test
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.abhinavmehta.confx.support;
+
+import com.abhinavmehta.confx.dto.ConfigDependencyRequestDto;
+import com.abhinavmehta.confx.dto.ConfigVersionResponseDto;
+import com.abhinavmehta.confx.dto.CreateConfigItemRequestDto;
+import com.abhinavmehta.confx.dto.CreateEnvironmentRequestDto;
+import com.abhinavmehta.confx.dto.CreateProjectRequestDto;
+import com.abhinavmehta.confx.dto.PublishConfigRequestDto;
+import com.abhinavmehta.confx.dto.RuleDto;
+import com.abhinavmehta.confx.model.enums.ConfigDataType;
+import com.abhinavmehta.confx.service.ConfigDependencyService;
+import com.abhinavmehta.confx.service.ConfigItemService;
+import com.abhinavmehta.confx.service.ConfigVersionService;
+import com.abhinavmehta.confx.service.EnvironmentService;
+import com.abhinavmehta.confx.service.ProjectService;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Creates test data through the services, the way the API would. Names are unique, so tests sharing the database
+ * never collide.
+ */
+@TestComponent
+public class TestFixtures {
+
+    private final ProjectService projectService;
+    private final EnvironmentService environmentService;
+    private final ConfigItemService configItemService;
+    private final ConfigVersionService configVersionService;
+    private final ConfigDependencyService configDependencyService;
+
+    public TestFixtures(ProjectService projectService, EnvironmentService environmentService, ConfigItemService configItemService,
+                        ConfigVersionService configVersionService, ConfigDependencyService configDependencyService) {
+        this.projectService = projectService;
+        this.environmentService = environmentService;
+        this.configItemService = configItemService;
+        this.configVersionService = configVersionService;
+        this.configDependencyService = configDependencyService;
+    }
+
+    public Long project() {
+        CreateProjectRequestDto dto = new CreateProjectRequestDto();
+        dto.setName("project-" + UUID.randomUUID());
+        return projectService.createProject(dto).getId();
+    }
+
+    public Long environment(Long projectId) {
+        CreateEnvironmentRequestDto dto = new CreateEnvironmentRequestDto();
+        dto.setName("env-" + UUID.randomUUID());
+        return environmentService.createEnvironment(projectId, dto).getId();
+    }
+
+    public Long item(Long projectId, String configKey, ConfigDataType dataType) {
+        CreateConfigItemRequestDto dto = new CreateConfigItemRequestDto();
+        dto.setConfigKey(configKey);
+        dto.setDataType(dataType);
+        return configItemService.createConfigItem(projectId, dto).getId();
+    }
+
+    public ConfigVersionResponseDto publish(Long projectId, Long environmentId, Long configItemId, String value, RuleDto... rules) {
+        PublishConfigRequestDto dto = new PublishConfigRequestDto();
+        dto.setValue(value);
+        dto.setRules(List.of(rules));
+        return configVersionService.publishNewVersion(projectId, environmentId, configItemId, dto);
+    }
+
+    public void dependency(Long projectId, Long dependentItemId, Long prerequisiteItemId, String expectedValue) {
+        ConfigDependencyRequestDto dto = new ConfigDependencyRequestDto();
+        dto.setPrerequisiteConfigItemId(prerequisiteItemId);
+        dto.setPrerequisiteExpectedValue(expectedValue);
+        configDependencyService.addDependency(projectId, dependentItemId, dto);
+    }
+
+    public static RuleDto rule(int priority, String conditionExpression, String valueToServe) {
+        return RuleDto.builder().priority(priority).conditionExpression(conditionExpression).valueToServe(valueToServe).build();
+    }
+}